@@ -0,0 +1,52 @@
+package archivosfragmentados.benchmark;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.service.AnalizadorDatos;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide {@link AnalizadorDatos#analizarYEliminarDuplicados(List)} (conteo,
+ * eliminacion de duplicados y ordenamiento) con distintos tamanos y
+ * proporciones de lineas repetidas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalisisDuplicadosBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int cantidad;
+
+    @Param({"0.0", "0.2", "0.8"})
+    private double proporcionDuplicados;
+
+    private List<String> lineas;
+    private AnalizadorDatos analizador;
+
+    @Setup
+    public void preparar() {
+        lineas = GeneradorLineas.generar(cantidad, proporcionDuplicados, new Random(42));
+        analizador = new AnalizadorDatos(new ConfiguracionProceso());
+    }
+
+    @Benchmark
+    public AnalizadorDatos.ResultadoAnalisis analizarYEliminarDuplicados() {
+        return analizador.analizarYEliminarDuplicados(lineas);
+    }
+}
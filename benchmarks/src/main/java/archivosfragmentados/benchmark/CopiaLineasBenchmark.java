@@ -0,0 +1,68 @@
+package archivosfragmentados.benchmark;
+
+import archivosfragmentados.model.ArenaLineas;
+import archivosfragmentados.model.Entidad;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compara la copia de {@link Entidad#getLineasDatos()} con recorrer la vista
+ * sin copiar y con {@link Entidad#recorrerLineas}, con las lineas en el heap
+ * o fuera de el.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopiaLineasBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int cantidad;
+
+    @Param({"heap", "fuera-heap"})
+    private String almacen;
+
+    private Entidad entidad;
+
+    @Setup
+    public void preparar() {
+        entidad = almacen.equals("heap")
+                ? new Entidad("entidad")
+                : new Entidad("entidad", new ArenaLineas());
+        for (String linea : GeneradorLineas.generar(cantidad, 0.0, new Random(42))) {
+            entidad.agregarLineaRecortada(linea);
+        }
+    }
+
+    @Benchmark
+    public List<String> copiar() {
+        return entidad.getLineasDatos();
+    }
+
+    @Benchmark
+    public void recorrerVista(Blackhole agujero) {
+        for (String linea : entidad.getVistaLineas()) {
+            agujero.consume(linea);
+        }
+    }
+
+    @Benchmark
+    public void recorrerLineas(Blackhole agujero) {
+        entidad.recorrerLineas(agujero::consume);
+    }
+}
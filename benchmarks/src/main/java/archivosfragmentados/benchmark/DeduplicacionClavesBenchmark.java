@@ -0,0 +1,63 @@
+package archivosfragmentados.benchmark;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.service.AnalizadorDatos;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara la deduplicacion por linea completa con la deduplicacion por
+ * columnas clave, que divide cada linea con el tokenizador CSV.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeduplicacionClavesBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int cantidad;
+
+    private List<String> lineas;
+    private AnalizadorDatos porLinea;
+    private AnalizadorDatos porClave;
+
+    @Setup
+    public void preparar() {
+        lineas = GeneradorLineas.generar(cantidad, 0.2, new Random(42));
+        porLinea = new AnalizadorDatos(new ConfiguracionProceso());
+        porClave = new AnalizadorDatos(ConfiguracionProceso.desdeArgumentos(new String[] {"--clave=codigo,nombre"}));
+    }
+
+    @Benchmark
+    public AnalizadorDatos.ResultadoAnalisis lineaCompleta() {
+        AnalizadorDatos.AcumuladorDuplicados acumulador = porLinea.crearAcumulador();
+        for (String linea : lineas) {
+            acumulador.agregar(linea);
+        }
+        return acumulador.obtenerResultado();
+    }
+
+    @Benchmark
+    public AnalizadorDatos.ResultadoAnalisis columnasClave() {
+        AnalizadorDatos.AcumuladorDuplicados acumulador = porClave.crearAcumulador(() -> GeneradorLineas.CABECERA);
+        for (String linea : lineas) {
+            acumulador.agregar(linea);
+        }
+        return acumulador.obtenerResultado();
+    }
+}
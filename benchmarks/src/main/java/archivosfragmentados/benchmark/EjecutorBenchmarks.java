@@ -0,0 +1,70 @@
+package archivosfragmentados.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Punto de entrada de {@code benchmarks.jar}. Acepta las mismas opciones que
+ * JMH, pero por defecto agrega el perfilador de GC (tasa de asignacion por
+ * operacion) y guarda los resultados en JSON dentro de {@code resultados/},
+ * con la fecha en el nombre, para comparar versiones.
+ */
+public final class EjecutorBenchmarks {
+
+    private static final Path DIRECTORIO_RESULTADOS = Paths.get("resultados");
+
+    private EjecutorBenchmarks() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        CommandLineOptions opciones;
+        try {
+            opciones = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Opciones no validas: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        // Ayuda y listados no ejecutan benchmarks: los atiende JMH tal cual.
+        if (opciones.shouldHelp() || opciones.shouldList() || opciones.shouldListWithParams()
+                || opciones.shouldListProfilers() || opciones.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        OptionsBuilder constructor = new OptionsBuilder();
+        constructor.parent(opciones);
+        if (opciones.getProfilers().stream().noneMatch(EjecutorBenchmarks::esPerfiladorGc)) {
+            constructor.addProfiler(GCProfiler.class);
+        }
+        if (!opciones.getResultFormat().hasValue()) {
+            constructor.resultFormat(ResultFormatType.JSON);
+        }
+        if (!opciones.getResult().hasValue()) {
+            Files.createDirectories(DIRECTORIO_RESULTADOS);
+            String fecha = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            String extension = opciones.getResultFormat().orElse(ResultFormatType.JSON).toString().toLowerCase();
+            constructor.result(DIRECTORIO_RESULTADOS.resolve("jmh-" + fecha + "." + extension).toString());
+        }
+
+        new Runner(constructor.build()).run();
+    }
+
+    private static boolean esPerfiladorGc(ProfilerConfig perfilador) {
+        return perfilador.getKlass().equals("gc") || perfilador.getKlass().equals(GCProfiler.class.getName());
+    }
+}
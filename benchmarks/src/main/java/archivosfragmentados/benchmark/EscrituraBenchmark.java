@@ -0,0 +1,66 @@
+package archivosfragmentados.benchmark;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.service.EscritorArchivos;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide la escritura del archivo final con {@link EscritorArchivos}, incluidos
+ * la sincronizacion con el disco y el renombrado atomico, sin comprimir y con
+ * gzip de nivel 1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EscrituraBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int cantidad;
+
+    @Param({"ninguna", "gzip"})
+    private String compresion;
+
+    private List<String> lineas;
+    private Path directorio;
+    private EscritorArchivos escritor;
+
+    @Setup
+    public void preparar() throws IOException {
+        lineas = GeneradorLineas.generar(cantidad, 0.0, new Random(42));
+        directorio = Files.createTempDirectory("benchmark-escritura");
+        String[] argumentos = compresion.equals("gzip")
+                ? new String[] {"--comprimir", "--nivel-gzip=1"}
+                : new String[0];
+        escritor = new EscritorArchivos(ConfiguracionProceso.desdeArgumentos(argumentos));
+    }
+
+    @TearDown
+    public void limpiar() throws IOException {
+        GeneradorLineas.borrar(directorio);
+    }
+
+    @Benchmark
+    public EscritorArchivos.ResultadoEscritura escribir() throws IOException {
+        return escritor.escribirArchivo(directorio.resolve("entidad_rec.csv"), GeneradorLineas.CABECERA, lineas);
+    }
+}
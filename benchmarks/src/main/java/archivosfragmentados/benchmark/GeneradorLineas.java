@@ -0,0 +1,106 @@
+package archivosfragmentados.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Genera lineas CSV sinteticas parecidas a las de los fragmentos reales.
+ */
+final class GeneradorLineas {
+
+    static final String CABECERA = "codigo,nombre,departamento,fecha,estado";
+
+    private static final String[] DEPARTAMENTOS = {
+        "Finanzas", "Recursos Humanos", "Marketing", "TI", "Legal", "Operaciones"
+    };
+
+    private GeneradorLineas() {
+    }
+
+    /**
+     * Genera lineas en orden aleatorio.
+     *
+     * @param cantidad Numero de lineas
+     * @param proporcionDuplicados Fraccion de lineas que repiten una anterior (0 a 1)
+     * @param aleatorio Fuente de aleatoriedad con semilla fija
+     * @return Lineas generadas
+     */
+    static List<String> generar(int cantidad, double proporcionDuplicados, Random aleatorio) {
+        List<String> lineas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            if (i > 0 && aleatorio.nextDouble() < proporcionDuplicados) {
+                lineas.add(lineas.get(aleatorio.nextInt(i)));
+            } else {
+                lineas.add(String.format("%08d,Empleado %d,%s,2023-%02d-%02d,%s",
+                        aleatorio.nextInt(100_000_000), aleatorio.nextInt(1_000_000),
+                        DEPARTAMENTOS[aleatorio.nextInt(DEPARTAMENTOS.length)],
+                        1 + aleatorio.nextInt(12), 1 + aleatorio.nextInt(28),
+                        aleatorio.nextBoolean() ? "Activo" : "Inactivo"));
+            }
+        }
+        return lineas;
+    }
+
+    /**
+     * Reparte las lineas en fragmentos {@code entidad_N.csv} (o
+     * {@code .csv.gz}) con cabecera, en el directorio indicado.
+     *
+     * @param directorio Directorio de destino
+     * @param lineas Lineas a repartir
+     * @param fragmentos Cantidad de fragmentos
+     * @param comprimir true para escribir gzip
+     * @return Fragmentos creados, en orden
+     * @throws IOException Si no se puede escribir
+     */
+    static List<Path> escribirFragmentos(Path directorio, List<String> lineas, int fragmentos,
+                                         boolean comprimir) throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        int porFragmento = (lineas.size() + fragmentos - 1) / fragmentos;
+        for (int f = 0; f < fragmentos; f++) {
+            Path archivo = directorio.resolve("entidad_" + (f + 1) + (comprimir ? ".csv.gz" : ".csv"));
+            try (Writer writer = abrir(archivo, comprimir)) {
+                writer.write(CABECERA);
+                writer.write('\n');
+                for (int i = f * porFragmento; i < Math.min(lineas.size(), (f + 1) * porFragmento); i++) {
+                    writer.write(lineas.get(i));
+                    writer.write('\n');
+                }
+            }
+            archivos.add(archivo);
+        }
+        return archivos;
+    }
+
+    /**
+     * Borra un directorio temporal de benchmark con su contenido.
+     *
+     * @param directorio Directorio a borrar
+     * @throws IOException Si no se puede borrar
+     */
+    static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+
+    private static Writer abrir(Path archivo, boolean comprimir) throws IOException {
+        if (!comprimir) {
+            return Files.newBufferedWriter(archivo, StandardCharsets.UTF_8);
+        }
+        return new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(archivo)), StandardCharsets.UTF_8));
+    }
+}
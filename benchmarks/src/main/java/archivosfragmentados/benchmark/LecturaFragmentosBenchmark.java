@@ -0,0 +1,82 @@
+package archivosfragmentados.benchmark;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.model.Entidad;
+import archivosfragmentados.service.LectorArchivos;
+import archivosfragmentados.util.DestinoRegistro;
+import archivosfragmentados.util.NivelRegistro;
+import archivosfragmentados.util.Registro;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mide la lectura de fragmentos con {@link LectorArchivos}: guardando las
+ * lineas por entidad (modo memoria) o pasandolas a un consumidor (modo flujo),
+ * sobre archivos planos o comprimidos con gzip. Los archivos quedan en la
+ * cache del sistema, asi que se mide el analisis y no el disco.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LecturaFragmentosBenchmark {
+
+    private static final int FRAGMENTOS = 10;
+
+    @Param({"100000", "1000000"})
+    private int cantidad;
+
+    @Param({"csv", "gzip"})
+    private String formato;
+
+    private Path directorio;
+    private List<Path> fragmentos;
+
+    @Setup
+    public void preparar() throws IOException {
+        directorio = Files.createTempDirectory("benchmark-lectura");
+        List<String> lineas = GeneradorLineas.generar(cantidad, 0.2, new Random(42));
+        fragmentos = GeneradorLineas.escribirFragmentos(directorio, lineas, FRAGMENTOS, formato.equals("gzip"));
+
+        // El lector informa cada fragmento procesado; se silencia para no
+        // mezclar esos mensajes con la salida de JMH.
+        Registro.configurar(NivelRegistro.SILENCIO, DestinoRegistro.consola());
+    }
+
+    @TearDown
+    public void limpiar() throws IOException {
+        Registro.configurar(NivelRegistro.DETALLE, DestinoRegistro.consola());
+        GeneradorLineas.borrar(directorio);
+    }
+
+    @Benchmark
+    public Map<String, Entidad> memoria() throws IOException {
+        return new LectorArchivos(new ConfiguracionProceso()).leerArchivosSeleccionados(fragmentos);
+    }
+
+    @Benchmark
+    public Map<String, Entidad> flujo(Blackhole agujero) throws IOException {
+        return new LectorArchivos(new ConfiguracionProceso())
+                .leerArchivosEnFlujo(fragmentos, (entidad, linea) -> agujero.consume(linea));
+    }
+}
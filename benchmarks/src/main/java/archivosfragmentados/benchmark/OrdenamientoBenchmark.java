@@ -0,0 +1,65 @@
+package archivosfragmentados.benchmark;
+
+import archivosfragmentados.util.OrdenadorParalelo;
+import archivosfragmentados.util.OrdenadorRadix;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara el ordenamiento por comparacion actual con el radix MSD sobre
+ * bytes UTF-8 y con el ordenamiento paralelo para el paso final de
+ * ordenamiento de lineas unicas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrdenamientoBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int cantidad;
+
+    private List<String> lineas;
+
+    @Setup
+    public void preparar() {
+        lineas = GeneradorLineas.generar(cantidad, 0.0, new Random(42));
+    }
+
+    @Benchmark
+    public List<String> comparacion() {
+        List<String> copia = new ArrayList<>(lineas);
+        Collections.sort(copia);
+        return copia;
+    }
+
+    @Benchmark
+    public List<String> radix() {
+        List<String> copia = new ArrayList<>(lineas);
+        new OrdenadorRadix().ordenar(copia);
+        return copia;
+    }
+
+    @Benchmark
+    public List<String> paralelo() {
+        List<String> copia = new ArrayList<>(lineas);
+        new OrdenadorParalelo(Runtime.getRuntime().availableProcessors()).ordenar(copia);
+        return copia;
+    }
+}
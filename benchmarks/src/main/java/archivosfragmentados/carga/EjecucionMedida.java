@@ -0,0 +1,99 @@
+package archivosfragmentados.carga;
+
+import archivosfragmentados.ArchivosFragmentados;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Ejecuta el programa completo en esta JVM y, al terminar, guarda sus
+ * metricas en el archivo indicado por la propiedad {@code carga.metricas}
+ * con el formato {@code clave=valor}. {@link PruebaCarga} la lanza en un
+ * proceso aparte por ejecucion, para que el pico de memoria sea solo suyo.
+ */
+public final class EjecucionMedida {
+
+    static final String PROPIEDAD_METRICAS = "carga.metricas";
+
+    private EjecucionMedida() {
+    }
+
+    /**
+     * @param args Argumentos para el programa (ej: --modo=flujo)
+     */
+    public static void main(String[] args) throws IOException {
+        Path archivoMetricas = Paths.get(System.getProperty(PROPIEDAD_METRICAS, "metricas.txt"));
+
+        long inicio = System.nanoTime();
+        ArchivosFragmentados.main(args);
+        long nanosegundos = System.nanoTime() - inicio;
+
+        long recolecciones = 0;
+        long milisegundosGc = 0;
+        for (GarbageCollectorMXBean recolector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            recolecciones += Math.max(0, recolector.getCollectionCount());
+            milisegundosGc += Math.max(0, recolector.getCollectionTime());
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(archivoMetricas, StandardCharsets.UTF_8)) {
+            escribir(writer, "milisegundos", nanosegundos / 1_000_000);
+            escribir(writer, "rss_pico_bytes", leerRssPico());
+            escribir(writer, "heap_pico_bytes", calcularHeapPico());
+            escribir(writer, "heap_maximo_bytes", Runtime.getRuntime().maxMemory());
+            escribir(writer, "gc_recolecciones", recolecciones);
+            escribir(writer, "gc_milisegundos", milisegundosGc);
+        }
+
+        // Los hilos de escritura y lectura son demonios, pero se sale
+        // explicitamente por si el programa dejo alguno vivo.
+        System.exit(0);
+    }
+
+    private static void escribir(BufferedWriter writer, String clave, long valor) throws IOException {
+        writer.write(clave + "=" + valor);
+        writer.newLine();
+    }
+
+    /**
+     * Suma los picos de uso de las zonas del heap. Cada zona registra su
+     * propio pico, asi que la suma es una cota superior del pico real.
+     */
+    private static long calcularHeapPico() {
+        long total = 0;
+        for (MemoryPoolMXBean zona : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (zona.getType() == MemoryType.HEAP && zona.getPeakUsage() != null) {
+                total += zona.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Lee el pico de memoria residente del proceso (VmHWM). Solo existe en
+     * Linux; en otros sistemas devuelve -1.
+     */
+    private static long leerRssPico() {
+        Path estado = Paths.get("/proc/self/status");
+        if (!Files.isReadable(estado)) {
+            return -1;
+        }
+        try {
+            for (String linea : Files.readAllLines(estado, StandardCharsets.UTF_8)) {
+                if (linea.startsWith("VmHWM:")) {
+                    String[] partes = linea.substring("VmHWM:".length()).trim().split("\\s+");
+                    return Long.parseLong(partes[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+}
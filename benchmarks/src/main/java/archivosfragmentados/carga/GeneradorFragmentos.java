@@ -0,0 +1,342 @@
+package archivosfragmentados.carga;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generador determinista de conjuntos de fragmentos {@code <entidad>_<n>.csv}
+ * para pruebas de carga. Con la misma semilla y los mismos parametros produce
+ * exactamente los mismos archivos.
+ *
+ * <p>Cada entidad numera sus filas distintas con una clave creciente; el
+ * texto de la fila se deriva de la entidad y la clave, asi que dos filas son
+ * iguales solo si comparten ambas. Cada fila nueva de un fragmento es:</p>
+ * <ul>
+ *   <li>con probabilidad {@code duplicados}, una repeticion de una fila ya
+ *       escrita en el mismo fragmento;</li>
+ *   <li>con probabilidad {@code solapamiento}, una fila de un fragmento
+ *       anterior de la misma entidad;</li>
+ *   <li>si no, una fila nueva.</li>
+ * </ul>
+ *
+ * <p>Las filas se escriben en flujo, sin guardarlas, por lo que se pueden
+ * generar miles de millones. Los fragmentos ordenados solo guardan sus claves
+ * (8 bytes por fila): la clave va al inicio de la fila con ancho fijo, asi que
+ * ordenar las claves ordena las lineas.</p>
+ */
+public class GeneradorFragmentos {
+
+    static final String CABECERA = "codigo,nombre,departamento,fecha,monto,descripcion";
+
+    private static final String[] NOMBRES = {
+        "Ana", "Luis", "Carmen", "Jorge", "Sofia", "Miguel", "Lucia", "Pedro", "Elena", "Raul"
+    };
+    private static final String[] APELLIDOS = {
+        "Garcia", "Lopez", "Martinez", "Perez", "Gomez", "Hernandez", "Ramirez", "Cruz", "Morales", "Ortiz"
+    };
+    private static final String[] DEPARTAMENTOS = {
+        "Finanzas", "Recursos Humanos", "Marketing", "TI", "Legal", "Operaciones"
+    };
+    private static final int ANCHO_CLAVE = 12;
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    private Path destino = Paths.get("fragmentos");
+    private int entidades = 4;
+    private int fragmentos = 10;
+    private long filas = 1_000_000;
+    private int ancho = 100;
+    private double duplicados = 0.1;
+    private double solapamiento = 0.1;
+    private double ordenados = 0.0;
+    private long semilla = 42;
+    private boolean comprimir = false;
+
+    /**
+     * Construye el generador a partir de opciones {@code --opcion=valor}.
+     *
+     * @param args Opciones del generador
+     * @return Generador configurado
+     * @throws IllegalArgumentException Si alguna opcion no es valida
+     */
+    public static GeneradorFragmentos desdeArgumentos(String[] args) {
+        GeneradorFragmentos generador = new GeneradorFragmentos();
+        for (String argumento : args) {
+            String[] partes = argumento.split("=", 2);
+            String opcion = partes[0].trim().toLowerCase();
+            String valor = partes.length > 1 ? partes[1].trim() : "";
+
+            switch (opcion) {
+                case "--destino":
+                    generador.destino = Paths.get(valor);
+                    break;
+                case "--entidades":
+                    generador.entidades = (int) leerCantidad(opcion, valor);
+                    break;
+                case "--fragmentos":
+                    generador.fragmentos = (int) leerCantidad(opcion, valor);
+                    break;
+                case "--filas":
+                    generador.filas = leerCantidad(opcion, valor);
+                    break;
+                case "--ancho":
+                    generador.ancho = (int) leerCantidad(opcion, valor);
+                    break;
+                case "--duplicados":
+                    generador.duplicados = leerProporcion(opcion, valor);
+                    break;
+                case "--solapamiento":
+                    generador.solapamiento = leerProporcion(opcion, valor);
+                    break;
+                case "--ordenados":
+                    generador.ordenados = leerProporcion(opcion, valor);
+                    break;
+                case "--semilla":
+                    generador.semilla = Long.parseLong(valor);
+                    break;
+                case "--gzip":
+                    generador.comprimir = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opcion desconocida: " + argumento);
+            }
+        }
+        if (generador.duplicados + generador.solapamiento > 1.0) {
+            throw new IllegalArgumentException("--duplicados y --solapamiento no pueden sumar mas de 1");
+        }
+        return generador;
+    }
+
+    /**
+     * Genera el conjunto de fragmentos en el directorio de destino.
+     *
+     * @return Totales de lo generado
+     * @throws IOException Si no se puede escribir algun fragmento
+     */
+    public ResumenGeneracion generar() throws IOException {
+        Files.createDirectories(destino);
+        long filasPorFragmento = Math.max(1, (filas + (long) entidades * fragmentos - 1) / ((long) entidades * fragmentos));
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        long filasEscritas = 0;
+        long filasDistintas = 0;
+        long bytes = 0;
+
+        for (int e = 0; e < entidades; e++) {
+            SplittableRandom aleatorio = raiz.split();
+            String nombreEntidad = String.format("entidad%02d", e + 1);
+            long siguienteClave = 0;
+
+            for (int f = 0; f < fragmentos && filasEscritas < filas; f++) {
+                long cantidad = Math.min(filasPorFragmento, filas - filasEscritas);
+                boolean ordenado = aleatorio.nextDouble() < ordenados;
+                long inicioFragmento = siguienteClave;
+                long[] claves = ordenado ? new long[Math.toIntExact(cantidad)] : null;
+                Path archivo = destino.resolve(nombreEntidad + "_" + (f + 1) + (comprimir ? ".csv.gz" : ".csv"));
+                StringBuilder fila = new StringBuilder(ancho + 32);
+
+                try (Writer writer = abrir(archivo)) {
+                    writer.write(CABECERA);
+                    writer.write('\n');
+                    for (long i = 0; i < cantidad; i++) {
+                        double sorteo = aleatorio.nextDouble();
+                        long clave;
+                        if (siguienteClave > inicioFragmento && sorteo < duplicados) {
+                            clave = aleatorio.nextLong(inicioFragmento, siguienteClave);
+                        } else if (inicioFragmento > 0 && sorteo < duplicados + solapamiento) {
+                            clave = aleatorio.nextLong(inicioFragmento);
+                        } else {
+                            clave = siguienteClave++;
+                        }
+
+                        if (claves != null) {
+                            claves[(int) i] = clave;
+                        } else {
+                            bytes += escribirFila(writer, fila, e, clave);
+                        }
+                    }
+                    if (claves != null) {
+                        Arrays.sort(claves);
+                        for (long clave : claves) {
+                            bytes += escribirFila(writer, fila, e, clave);
+                        }
+                    }
+                }
+                filasEscritas += cantidad;
+            }
+            filasDistintas += siguienteClave;
+        }
+
+        return new ResumenGeneracion(filasEscritas, filasDistintas, bytes);
+    }
+
+    private Writer abrir(Path archivo) throws IOException {
+        if (!comprimir) {
+            return Files.newBufferedWriter(archivo, StandardCharsets.UTF_8);
+        }
+        return new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(archivo), TAMANO_BUFFER), StandardCharsets.UTF_8),
+                TAMANO_BUFFER);
+    }
+
+    /**
+     * Escribe la fila de una clave y devuelve cuantos caracteres ocupo.
+     */
+    private int escribirFila(Writer writer, StringBuilder fila, int entidad, long clave) throws IOException {
+        fila.setLength(0);
+        long h = mezclar(semilla ^ ((long) entidad << 48) ^ clave);
+
+        // La clave con ancho fijo al inicio hace que el orden de las claves
+        // sea el orden de las lineas.
+        fila.append('E').append(entidad + 1).append('-');
+        String numero = Long.toString(clave);
+        for (int i = numero.length(); i < ANCHO_CLAVE; i++) {
+            fila.append('0');
+        }
+        fila.append(numero).append(',');
+        fila.append(NOMBRES[(int) Long.remainderUnsigned(h, NOMBRES.length)]).append(' ')
+            .append(APELLIDOS[(int) Long.remainderUnsigned(h >>> 8, APELLIDOS.length)]).append(',');
+        fila.append(DEPARTAMENTOS[(int) Long.remainderUnsigned(h >>> 16, DEPARTAMENTOS.length)]).append(',');
+        int mes = 1 + (int) ((h >>> 24) % 12);
+        int dia = 1 + (int) ((h >>> 28) % 28);
+        fila.append("2023-").append(mes < 10 ? "0" : "").append(mes).append('-')
+            .append(dia < 10 ? "0" : "").append(dia).append(',');
+        long centavos = (h >>> 33) % 10_000_000;
+        fila.append(centavos / 100).append('.').append(centavos % 100 < 10 ? "0" : "").append(centavos % 100).append(',');
+
+        long estado = h;
+        while (fila.length() < ancho) {
+            estado = mezclar(estado);
+            fila.append((char) ('a' + Long.remainderUnsigned(estado, 26)));
+        }
+
+        writer.append(fila).append('\n');
+        return fila.length() + 1;
+    }
+
+    /** Mezclador de 64 bits (finalizador de SplitMix64). */
+    private static long mezclar(long valor) {
+        valor = (valor ^ (valor >>> 30)) * 0xBF58476D1CE4E5B9L;
+        valor = (valor ^ (valor >>> 27)) * 0x94D049BB133111EBL;
+        return valor ^ (valor >>> 31);
+    }
+
+    private static long leerCantidad(String opcion, String valor) {
+        String texto = valor.toLowerCase();
+        long multiplicador = 1;
+        if (texto.endsWith("k")) {
+            multiplicador = 1_000L;
+        } else if (texto.endsWith("m")) {
+            multiplicador = 1_000_000L;
+        } else if (texto.endsWith("b")) {
+            multiplicador = 1_000_000_000L;
+        }
+        if (multiplicador > 1) {
+            texto = texto.substring(0, texto.length() - 1);
+        }
+        try {
+            long cantidad = Long.parseLong(texto) * multiplicador;
+            if (cantidad <= 0) {
+                throw new IllegalArgumentException(opcion + " debe ser mayor que cero: " + valor);
+            }
+            return cantidad;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(opcion + " requiere un numero (sufijos k, m, b): " + valor);
+        }
+    }
+
+    private static double leerProporcion(String opcion, String valor) {
+        try {
+            double proporcion = Double.parseDouble(valor);
+            if (proporcion < 0 || proporcion > 1) {
+                throw new IllegalArgumentException(opcion + " debe estar entre 0 y 1: " + valor);
+            }
+            return proporcion;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(opcion + " requiere un numero entre 0 y 1: " + valor);
+        }
+    }
+
+    public Path getDestino() { return destino; }
+    public long getFilas() { return filas; }
+
+    /**
+     * Cambia el directorio de destino.
+     *
+     * @param destino Directorio donde se escriben los fragmentos
+     */
+    public void setDestino(Path destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Cambia el total de filas a generar.
+     *
+     * @param filas Filas de datos, repartidas entre todos los fragmentos
+     */
+    public void setFilas(long filas) {
+        this.filas = filas;
+    }
+
+    /**
+     * Describe los parametros en una linea, para nombrar y registrar conjuntos.
+     *
+     * @return Parametros de generacion
+     */
+    public String describir() {
+        return String.format("filas=%d entidades=%d fragmentos=%d ancho=%d duplicados=%s solapamiento=%s ordenados=%s semilla=%d%s",
+                filas, entidades, fragmentos, ancho, duplicados, solapamiento, ordenados, semilla,
+                comprimir ? " gzip" : "");
+    }
+
+    /**
+     * Genera un conjunto desde la linea de comandos.
+     *
+     * @param args Opciones del generador (ej: --filas=10m --entidades=8)
+     */
+    public static void main(String[] args) throws IOException {
+        GeneradorFragmentos generador;
+        try {
+            generador = desdeArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR EN LOS ARGUMENTOS: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        ResumenGeneracion resumen = generador.generar();
+        System.out.println("GENERADO EN " + generador.getDestino().toAbsolutePath());
+        System.out.println(generador.describir());
+        System.out.printf("Filas: %d, distintas: %d, bytes: %d, %d ms%n", resumen.getFilas(),
+                resumen.getFilasDistintas(), resumen.getBytes(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Totales de un conjunto generado.
+     */
+    public static class ResumenGeneracion {
+        private final long filas;
+        private final long filasDistintas;
+        private final long bytes;
+
+        public ResumenGeneracion(long filas, long filasDistintas, long bytes) {
+            this.filas = filas;
+            this.filasDistintas = filasDistintas;
+            this.bytes = bytes;
+        }
+
+        public long getFilas() { return filas; }
+        /** Lineas que debe tener la salida reconstruida, sin contar la cabecera. */
+        public long getFilasDistintas() { return filasDistintas; }
+        /** Caracteres de datos escritos, sin cabeceras y antes de comprimir. */
+        public long getBytes() { return bytes; }
+    }
+}
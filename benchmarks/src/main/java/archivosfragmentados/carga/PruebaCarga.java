@@ -0,0 +1,324 @@
+package archivosfragmentados.carga;
+
+import archivosfragmentados.util.ContadorLineas;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Prueba de carga del flujo completo de {@code ProcesadorDatos}. Por cada
+ * tamano genera (o reutiliza) un conjunto de fragmentos y ejecuta el programa
+ * sin intervencion, en una JVM aparte, contestando las preguntas con los
+ * valores por defecto. Registra tiempo, pico de memoria residente y de heap y
+ * tiempo de GC, y comprueba que la salida tenga tantas lineas como filas
+ * distintas genero el generador.
+ *
+ * <p>Las opciones propias son {@code --base}, {@code --tamanos},
+ * {@code --xmx}, {@code --programa}, {@code --repeticiones} e
+ * {@code --informe}; el resto se pasa a {@link GeneradorFragmentos}.</p>
+ */
+public final class PruebaCarga {
+
+    private static final String ARCHIVO_GENERACION = ".generado";
+    private static final String CABECERA_INFORME = "fecha,filas,filas_distintas,bytes,programa,repeticion,"
+            + "milisegundos,milisegundos_proceso,rss_pico_mb,heap_pico_mb,heap_maximo_mb,"
+            + "gc_recolecciones,gc_milisegundos,lineas_salida,verificado,codigo_salida";
+    /** Respuestas por defecto a las preguntas del programa, con lineas de sobra. */
+    private static final String RESPUESTAS = "\n\n\n\nn\n\n\n\n";
+
+    private Path base = Paths.get("carga");
+    private final List<Long> tamanos = new ArrayList<>();
+    private String xmx = "2g";
+    private String programa = "";
+    private int repeticiones = 1;
+    private Path informe = null;
+    private final List<String> opcionesGenerador = new ArrayList<>();
+
+    private PruebaCarga() {
+    }
+
+    /**
+     * @param args Opciones de la prueba y del generador
+     *             (ej: --tamanos=1m,10m,100m --programa="--modo=flujo" --xmx=4g)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        PruebaCarga prueba;
+        try {
+            prueba = desdeArgumentos(args);
+            // Valida las opciones del generador antes de empezar.
+            GeneradorFragmentos.desdeArgumentos(prueba.opcionesGenerador.toArray(new String[0]));
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR EN LOS ARGUMENTOS: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        prueba.ejecutar();
+    }
+
+    private static PruebaCarga desdeArgumentos(String[] args) {
+        PruebaCarga prueba = new PruebaCarga();
+        for (String argumento : args) {
+            String[] partes = argumento.split("=", 2);
+            String opcion = partes[0].trim().toLowerCase();
+            String valor = partes.length > 1 ? partes[1].trim() : "";
+
+            switch (opcion) {
+                case "--base":
+                    prueba.base = Paths.get(valor);
+                    break;
+                case "--tamanos":
+                    for (String tamano : valor.split(",")) {
+                        if (!tamano.isBlank()) {
+                            GeneradorFragmentos generador = GeneradorFragmentos.desdeArgumentos(
+                                    new String[] {"--filas=" + tamano.trim()});
+                            prueba.tamanos.add(generador.getFilas());
+                        }
+                    }
+                    break;
+                case "--xmx":
+                    prueba.xmx = valor;
+                    break;
+                case "--programa":
+                    prueba.programa = valor;
+                    break;
+                case "--repeticiones":
+                    prueba.repeticiones = Integer.parseInt(valor);
+                    if (prueba.repeticiones <= 0) {
+                        throw new IllegalArgumentException("--repeticiones debe ser mayor que cero: " + valor);
+                    }
+                    break;
+                case "--informe":
+                    prueba.informe = Paths.get(valor);
+                    break;
+                default:
+                    prueba.opcionesGenerador.add(argumento);
+            }
+        }
+        if (prueba.tamanos.isEmpty()) {
+            prueba.tamanos.add(1_000_000L);
+        }
+        if (prueba.informe == null) {
+            prueba.informe = prueba.base.resolve("informe.csv");
+        }
+        return prueba;
+    }
+
+    private void ejecutar() throws IOException, InterruptedException {
+        Files.createDirectories(base);
+        System.out.println("PRUEBA DE CARGA: " + tamanos.size() + " TAMANOS, -Xmx" + xmx
+                + ", programa: " + (programa.isEmpty() ? "(por defecto)" : programa));
+        System.out.printf("%-12s %-4s %10s %10s %10s %10s %8s %s%n",
+                "FILAS", "REP", "MS", "RSS MB", "HEAP MB", "GC MS", "GC", "VERIFICADO");
+
+        for (long filas : tamanos) {
+            GeneradorFragmentos generador = crearGenerador(filas);
+            Path conjunto = base.resolve(String.format("conjunto-%d-%08x", filas, generador.describir().hashCode()));
+            Map<String, String> generacion = prepararConjunto(generador, conjunto);
+
+            for (int repeticion = 1; repeticion <= repeticiones; repeticion++) {
+                Map<String, String> fila = ejecutarPrograma(conjunto, repeticion);
+                fila.putAll(generacion);
+                registrar(fila);
+                System.out.printf("%-12d %-4d %10s %10s %10s %10s %8s %s%n", filas, repeticion,
+                        fila.get("milisegundos"), fila.get("rss_pico_mb"), fila.get("heap_pico_mb"),
+                        fila.get("gc_milisegundos"), fila.get("gc_recolecciones"), fila.get("verificado"));
+            }
+        }
+        System.out.println("INFORME: " + informe.toAbsolutePath());
+    }
+
+    private GeneradorFragmentos crearGenerador(long filas) {
+        GeneradorFragmentos generador = GeneradorFragmentos.desdeArgumentos(opcionesGenerador.toArray(new String[0]));
+        generador.setFilas(filas);
+        return generador;
+    }
+
+    /**
+     * Genera el conjunto en {@code <conjunto>/csv}, salvo que ya exista uno
+     * generado con los mismos parametros.
+     */
+    private Map<String, String> prepararConjunto(GeneradorFragmentos generador, Path conjunto) throws IOException {
+        Path registro = conjunto.resolve(ARCHIVO_GENERACION);
+        if (Files.isRegularFile(registro)) {
+            Map<String, String> previo = leerClaveValor(registro);
+            if (generador.describir().equals(previo.get("parametros"))) {
+                System.out.println("Conjunto reutilizado: " + conjunto);
+                return previo;
+            }
+        }
+
+        System.out.println("Generando " + generador.describir() + " en " + conjunto + "...");
+        generador.setDestino(conjunto.resolve("csv"));
+        GeneradorFragmentos.ResumenGeneracion resumen = generador.generar();
+
+        Map<String, String> generacion = new HashMap<>();
+        generacion.put("parametros", generador.describir());
+        generacion.put("filas", Long.toString(resumen.getFilas()));
+        generacion.put("filas_distintas", Long.toString(resumen.getFilasDistintas()));
+        generacion.put("bytes", Long.toString(resumen.getBytes()));
+        try (BufferedWriter writer = Files.newBufferedWriter(registro, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entrada : generacion.entrySet()) {
+                writer.write(entrada.getKey() + "=" + entrada.getValue());
+                writer.newLine();
+            }
+        }
+        return generacion;
+    }
+
+    /**
+     * Ejecuta el programa en una JVM nueva con el conjunto como directorio de
+     * trabajo y devuelve sus metricas.
+     */
+    private Map<String, String> ejecutarPrograma(Path conjunto, int repeticion) throws IOException, InterruptedException {
+        limpiarSalidas(conjunto);
+        Path metricas = conjunto.resolve("metricas-" + repeticion + ".txt").toAbsolutePath();
+        Path registro = conjunto.resolve("ejecucion-" + repeticion + ".log");
+        Files.deleteIfExists(metricas);
+
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        comando.add("-Xmx" + xmx);
+        comando.add("-D" + EjecucionMedida.PROPIEDAD_METRICAS + "=" + metricas);
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(EjecucionMedida.class.getName());
+        // Informe por etapas de cada repeticion; una --metricas en el programa lo reemplaza.
+        comando.add("--metricas=" + conjunto.resolve("etapas-" + repeticion + ".json").toAbsolutePath());
+        for (String argumento : programa.split("\\s+")) {
+            if (!argumento.isEmpty()) {
+                comando.add(argumento);
+            }
+        }
+
+        long inicio = System.nanoTime();
+        Process proceso = new ProcessBuilder(comando)
+                .directory(conjunto.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(registro.toFile())
+                .start();
+        try (OutputStream entrada = proceso.getOutputStream()) {
+            entrada.write(RESPUESTAS.getBytes(StandardCharsets.UTF_8));
+        }
+        int codigo = proceso.waitFor();
+        long milisegundosProceso = (System.nanoTime() - inicio) / 1_000_000;
+
+        Map<String, String> fila = new HashMap<>();
+        fila.put("fecha", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        fila.put("programa", programa);
+        fila.put("repeticion", Integer.toString(repeticion));
+        fila.put("milisegundos_proceso", Long.toString(milisegundosProceso));
+        fila.put("codigo_salida", Integer.toString(codigo));
+
+        if (Files.isRegularFile(metricas)) {
+            Map<String, String> medidas = leerClaveValor(metricas);
+            fila.put("milisegundos", medidas.get("milisegundos"));
+            fila.put("rss_pico_mb", enMegabytes(medidas.get("rss_pico_bytes")));
+            fila.put("heap_pico_mb", enMegabytes(medidas.get("heap_pico_bytes")));
+            fila.put("heap_maximo_mb", enMegabytes(medidas.get("heap_maximo_bytes")));
+            fila.put("gc_recolecciones", medidas.get("gc_recolecciones"));
+            fila.put("gc_milisegundos", medidas.get("gc_milisegundos"));
+        } else {
+            // Sin metricas el proceso no termino bien (p. ej. OutOfMemoryError).
+            System.out.println("La ejecucion no dejo metricas; ver " + registro);
+        }
+
+        long lineasSalida = contarLineasSalida(conjunto);
+        fila.put("lineas_salida", lineasSalida < 0 ? "" : Long.toString(lineasSalida));
+        fila.put("verificado", lineasSalida < 0 ? "-" : "pendiente");
+        limpiarSalidas(conjunto);
+        return fila;
+    }
+
+    /**
+     * Cuenta las lineas de datos de las salidas ({@code *_rec.csv} o
+     * {@code *_rec.csv.gz}) o devuelve -1 si el modo no escribio ninguna.
+     */
+    private static long contarLineasSalida(Path conjunto) throws IOException {
+        long lineas = -1;
+        for (Path salida : listarSalidas(conjunto)) {
+            long lineasArchivo = Math.max(0, ContadorLineas.contarLineas(salida) - 1);
+            lineas = Math.max(0, lineas) + lineasArchivo;
+        }
+        return lineas;
+    }
+
+    /**
+     * Borra las salidas y sus manifiestos, para que cada ejecucion parta de
+     * cero y el conjunto no crezca en disco.
+     */
+    private static void limpiarSalidas(Path conjunto) throws IOException {
+        for (Path salida : listarSalidas(conjunto)) {
+            Files.delete(salida);
+            Files.deleteIfExists(salida.resolveSibling(salida.getFileName() + ".manifiesto"));
+        }
+    }
+
+    private static List<Path> listarSalidas(Path conjunto) throws IOException {
+        try (Stream<Path> archivos = Files.list(conjunto)) {
+            return archivos.filter(archivo -> {
+                String nombre = archivo.getFileName().toString();
+                return nombre.endsWith("_rec.csv") || nombre.endsWith("_rec.csv.gz");
+            }).toList();
+        }
+    }
+
+    /**
+     * Agrega una fila al informe CSV, escribiendo la cabecera si es nuevo.
+     */
+    private void registrar(Map<String, String> fila) throws IOException {
+        String distintas = fila.get("filas_distintas");
+        if ("pendiente".equals(fila.get("verificado"))) {
+            fila.put("verificado", fila.get("lineas_salida").equals(distintas) ? "si" : "no");
+        }
+
+        boolean nuevo = !Files.exists(informe);
+        try (BufferedWriter writer = Files.newBufferedWriter(informe, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (nuevo) {
+                writer.write(CABECERA_INFORME);
+                writer.newLine();
+            }
+            StringBuilder linea = new StringBuilder();
+            for (String columna : CABECERA_INFORME.split(",")) {
+                if (linea.length() > 0) {
+                    linea.append(',');
+                }
+                String valor = fila.getOrDefault(columna, "");
+                linea.append(valor == null ? "" : valor.contains(",") || valor.contains(" ") ? "\"" + valor + "\"" : valor);
+            }
+            writer.write(linea.toString());
+            writer.newLine();
+        }
+    }
+
+    private static Map<String, String> leerClaveValor(Path archivo) throws IOException {
+        Map<String, String> valores = new HashMap<>();
+        for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+            int separador = linea.indexOf('=');
+            if (separador > 0) {
+                valores.put(linea.substring(0, separador), linea.substring(separador + 1));
+            }
+        }
+        return valores;
+    }
+
+    private static String enMegabytes(String bytes) {
+        if (bytes == null) {
+            return "";
+        }
+        long valor = Long.parseLong(bytes);
+        return valor < 0 ? "" : Long.toString(valor / (1024 * 1024));
+    }
+}
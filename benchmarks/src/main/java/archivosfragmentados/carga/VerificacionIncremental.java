@@ -0,0 +1,235 @@
+package archivosfragmentados.carga;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.service.ActualizadorIncremental;
+import archivosfragmentados.service.EscritorArchivos;
+import archivosfragmentados.util.ArchivosGzip;
+import archivosfragmentados.util.DestinoRegistro;
+import archivosfragmentados.util.NivelRegistro;
+import archivosfragmentados.util.Registro;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Comprueba que la actualizacion incremental deje el mismo maestro que una
+ * reconstruccion completa. Genera un conjunto con {@link GeneradorFragmentos},
+ * lo agrega al directorio de entrada en varios pasos actualizando el maestro
+ * despues de cada uno, y al final agrega un fragmento vacio y otro con una
+ * cabecera distinta, en pasos separados. Luego reconstruye desde cero con
+ * los mismos fragmentos y compara las dos salidas linea por linea.
+ *
+ * <p>Las opciones propias son {@code --base}, {@code --pasos} y
+ * {@code --programa} (opciones del programa, ej: {@code --modo=externo
+ * --comprimir}); el resto se pasa a {@link GeneradorFragmentos}. Termina con
+ * codigo 1 si las salidas difieren.</p>
+ */
+public final class VerificacionIncremental {
+
+    /** Cabecera con otro separador que la del generador, para el ultimo paso. */
+    private static final String CABECERA_DISTINTA = GeneradorFragmentos.CABECERA.replace(',', ';');
+
+    private Path base = Paths.get("verificacion-incremental");
+    private int pasos = 3;
+    private String programa = "";
+    private final List<String> opcionesGenerador = new ArrayList<>();
+
+    private VerificacionIncremental() {
+    }
+
+    /**
+     * @param args Opciones de la verificacion y del generador
+     *             (ej: --pasos=4 --programa="--modo=externo" --filas=100k)
+     */
+    public static void main(String[] args) throws IOException {
+        VerificacionIncremental verificacion;
+        GeneradorFragmentos generador;
+        ConfiguracionProceso configuracion;
+        try {
+            verificacion = desdeArgumentos(args);
+            List<String> opciones = new ArrayList<>(List.of("--filas=20000", "--entidades=3", "--fragmentos=4"));
+            opciones.addAll(verificacion.opcionesGenerador);
+            opciones.add("--destino=" + verificacion.base.resolve("generado"));
+            generador = GeneradorFragmentos.desdeArgumentos(opciones.toArray(new String[0]));
+            configuracion = ConfiguracionProceso.desdeArgumentos(
+                    verificacion.programa.isBlank() ? new String[0] : verificacion.programa.trim().split("\\s+"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR EN LOS ARGUMENTOS: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Registro.configurar(NivelRegistro.SILENCIO, DestinoRegistro.consola());
+        boolean iguales = verificacion.ejecutar(generador, configuracion);
+        System.exit(iguales ? 0 : 1);
+    }
+
+    private static VerificacionIncremental desdeArgumentos(String[] args) {
+        VerificacionIncremental verificacion = new VerificacionIncremental();
+        for (String argumento : args) {
+            String[] partes = argumento.split("=", 2);
+            String opcion = partes[0].trim().toLowerCase();
+            String valor = partes.length > 1 ? partes[1].trim() : "";
+
+            switch (opcion) {
+                case "--base":
+                    verificacion.base = Paths.get(valor);
+                    break;
+                case "--pasos":
+                    verificacion.pasos = Integer.parseInt(valor);
+                    if (verificacion.pasos <= 0) {
+                        throw new IllegalArgumentException("--pasos debe ser mayor que cero: " + valor);
+                    }
+                    break;
+                case "--programa":
+                    verificacion.programa = valor;
+                    break;
+                default:
+                    verificacion.opcionesGenerador.add(argumento);
+            }
+        }
+        return verificacion;
+    }
+
+    private boolean ejecutar(GeneradorFragmentos generador, ConfiguracionProceso configuracion) throws IOException {
+        borrar(base);
+        generador.generar();
+        List<Path> generados = listar(generador.getDestino());
+
+        Path entrada = Files.createDirectories(base.resolve("entrada"));
+        EscritorArchivos nombres = new EscritorArchivos(configuracion);
+        Path salidaIncremental = nombres.ajustarNombre(
+                Files.createDirectories(base.resolve("incremental")).resolve("entidad_rec.csv"));
+        Path salidaCompleta = nombres.ajustarNombre(
+                Files.createDirectories(base.resolve("completa")).resolve("entidad_rec.csv"));
+
+        System.out.println("VERIFICACION INCREMENTAL: " + generados.size() + " fragmentos en " + pasos
+                + " pasos, programa: " + (programa.isEmpty() ? "(por defecto)" : programa));
+
+        for (int paso = 0; paso < pasos; paso++) {
+            int desde = generados.size() * paso / pasos;
+            int hasta = generados.size() * (paso + 1) / pasos;
+            for (Path fragmento : generados.subList(desde, hasta)) {
+                Files.copy(fragmento, entrada.resolve(fragmento.getFileName()));
+            }
+            actualizar(configuracion, entrada, salidaIncremental, "paso " + (paso + 1));
+        }
+
+        // Un fragmento vacio no aporta cabecera, y uno con otra cabecera no
+        // debe reemplazar la del maestro.
+        String extension = generados.get(0).getFileName().toString().endsWith(ArchivosGzip.EXTENSION)
+                ? ".csv" + ArchivosGzip.EXTENSION : ".csv";
+        Path vacio = entrada.resolve("zz_vacio_1" + extension);
+        if (extension.endsWith(ArchivosGzip.EXTENSION)) {
+            new GZIPOutputStream(Files.newOutputStream(vacio)).close();
+        } else {
+            Files.createFile(vacio);
+        }
+        actualizar(configuracion, entrada, salidaIncremental, "fragmento vacio");
+        escribirFragmento(entrada.resolve("zz_distinta_1" + extension), generados.get(0));
+        actualizar(configuracion, entrada, salidaIncremental, "otra cabecera");
+
+        new ActualizadorIncremental(configuracion).actualizar(listar(entrada), salidaCompleta);
+
+        long diferencia = compararLineas(salidaIncremental, salidaCompleta);
+        if (diferencia < 0) {
+            System.out.println("VERIFICADO: la salida incremental es igual a la reconstruccion completa");
+            return true;
+        }
+        System.out.println("DIFERENCIA en la linea " + diferencia + " entre " + salidaIncremental
+                + " y " + salidaCompleta);
+        return false;
+    }
+
+    private static void actualizar(ConfiguracionProceso configuracion, Path entrada, Path salida, String paso)
+            throws IOException {
+        ActualizadorIncremental.ResumenActualizacion resumen =
+                new ActualizadorIncremental(configuracion).actualizar(listar(entrada), salida);
+        System.out.printf("  %-16s %s, %d fragmentos leidos, %d lineas%n", paso,
+                resumen.isReconstruccionCompleta() ? "completa" : "incremental",
+                resumen.getFragmentosLeidos(), resumen.getLineasFinales());
+    }
+
+    /**
+     * Copia las primeras filas de un fragmento generado con
+     * {@link #CABECERA_DISTINTA} como cabecera.
+     */
+    private static void escribirFragmento(Path destino, Path origen) throws IOException {
+        List<String> filas = new ArrayList<>();
+        try (BufferedReader reader = ArchivosGzip.abrirLector(origen, ArchivosGzip.TAMANO_BUFFER_DEFECTO)) {
+            reader.readLine();
+            String linea;
+            while (filas.size() < 10 && (linea = reader.readLine()) != null) {
+                filas.add(linea);
+            }
+        }
+        filas.add("zz-fila-solo-en-el-ultimo-fragmento");
+
+        boolean comprimido = destino.getFileName().toString().endsWith(ArchivosGzip.EXTENSION);
+        try (BufferedWriter writer = comprimido
+                ? new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(destino)), StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(destino, StandardCharsets.UTF_8)) {
+            writer.write(CABECERA_DISTINTA);
+            writer.newLine();
+            for (String fila : filas) {
+                writer.write(fila);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Compara dos salidas descomprimidas.
+     *
+     * @return Numero de la primera linea distinta (desde 1), o -1 si son iguales
+     */
+    private static long compararLineas(Path primera, Path segunda) throws IOException {
+        try (BufferedReader a = ArchivosGzip.abrirLector(primera, ArchivosGzip.TAMANO_BUFFER_DEFECTO);
+             BufferedReader b = ArchivosGzip.abrirLector(segunda, ArchivosGzip.TAMANO_BUFFER_DEFECTO)) {
+            long numero = 1;
+            while (true) {
+                String lineaA = a.readLine();
+                String lineaB = b.readLine();
+                if (!Objects.equals(lineaA, lineaB)) {
+                    return numero;
+                }
+                if (lineaA == null) {
+                    return -1;
+                }
+                numero++;
+            }
+        }
+    }
+
+    /**
+     * Borra lo que dejo una verificacion anterior.
+     */
+    private static void borrar(Path directorio) throws IOException {
+        if (!Files.exists(directorio)) {
+            return;
+        }
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+
+    private static List<Path> listar(Path directorio) throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+}
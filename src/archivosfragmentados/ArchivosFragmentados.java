@@ -1,9 +1,20 @@
 package archivosfragmentados;
 
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.monitoreo.MetricasProceso;
 import archivosfragmentados.service.LectorArchivos;
 import archivosfragmentados.service.ProcesadorDatos;
 import archivosfragmentados.service.EscritorArchivos;
 import archivosfragmentados.service.GestorRutas;
+import archivosfragmentados.service.VigilanteDirectorio;
+import archivosfragmentados.service.VisualizadorResultados;
+import archivosfragmentados.service.EjecutorLotes;
+import archivosfragmentados.util.DestinoAsincrono;
+import archivosfragmentados.util.DestinoRegistro;
+import archivosfragmentados.util.Registro;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Programa principal para reconstruir archivos fragmentados de entidades.
@@ -13,14 +24,119 @@ import archivosfragmentados.service.GestorRutas;
 public class ArchivosFragmentados {
 
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments (ej: --modo=flujo)
      */
     public static void main(String[] args) {
-        GestorRutas gestorRutas = new GestorRutas();
-        LectorArchivos lector = new LectorArchivos();
-        ProcesadorDatos procesador = new ProcesadorDatos();
-        EscritorArchivos escritor = new EscritorArchivos();
+        ConfiguracionProceso configuracion;
+        try {
+            configuracion = ConfiguracionProceso.desdeArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            Registro.error("ERROR EN LOS ARGUMENTOS: " + e.getMessage());
+            return;
+        }
+        
+        try {
+            Registro.configurar(configuracion.getNivelRegistro(), crearDestinoRegistro(configuracion));
+        } catch (IOException e) {
+            Registro.error("ERROR AL ABRIR EL ARCHIVO DE REGISTRO: " + e.getMessage());
+            return;
+        }
+        
+        try {
+            ejecutar(configuracion);
+        } finally {
+            Registro.cerrar();
+        }
+    }
+    
+    /**
+     * Ejecuta el modo pedido: vigilancia, lotes o el proceso interactivo.
+     * 
+     * @param configuracion Configuracion del proceso
+     */
+    private static void ejecutar(ConfiguracionProceso configuracion) {
+        MetricasProceso.getInstancia().publicar();
+        
+        // En vigilancia no hay un final: las metricas se consultan por JMX.
+        if (configuracion.getDirectorioVigilado() != null) {
+            try {
+                new VigilanteDirectorio(configuracion).ejecutar();
+            } catch (IOException e) {
+                Registro.error("ERROR EN MODO VIGILANCIA: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        
+        if (configuracion.isModoLote()) {
+            try {
+                new VisualizadorResultados().mostrarResumenLotes(new EjecutorLotes(configuracion).ejecutar());
+            } catch (IOException e) {
+                Registro.error("ERROR EN MODO POR LOTES: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            guardarMetricas(configuracion);
+            return;
+        }
+        
+        GestorRutas gestorRutas = new GestorRutas(configuracion.isRecursivo());
+        LectorArchivos lector = new LectorArchivos(configuracion);
+        ProcesadorDatos procesador = new ProcesadorDatos(configuracion);
+        EscritorArchivos escritor = new EscritorArchivos(configuracion);
         
         procesador.procesarArchivosFragmentados(gestorRutas, lector, escritor);
+        guardarMetricas(configuracion);
+    }
+    
+    /**
+     * Crea el destino de los mensajes: la consola o un archivo, detras de un
+     * hilo de registro salvo que se pida escribirlos de forma sincrona.
+     * 
+     * @param configuracion Configuracion del proceso
+     * @return Destino de los mensajes
+     * @throws IOException Si no se puede crear el archivo de registro
+     */
+    private static DestinoRegistro crearDestinoRegistro(ConfiguracionProceso configuracion) throws IOException {
+        DestinoRegistro destino = configuracion.getArchivoRegistro() != null
+                ? DestinoRegistro.archivo(configuracion.getArchivoRegistro())
+                : DestinoRegistro.consola();
+        if (configuracion.isRegistroSincrono()) {
+            return destino;
+        }
+        return new DestinoAsincrono(destino, DestinoAsincrono.CAPACIDAD_DEFECTO);
+    }
+    
+    /**
+     * Muestra las metricas por etapa y guarda el informe JSON. Sin
+     * {@code --metricas}, el informe va junto al archivo de salida, o en el
+     * directorio de la primera salida si hubo varias; si no se escribio
+     * ninguna salida no se guarda.
+     * 
+     * @param configuracion Configuracion del proceso
+     */
+    private static void guardarMetricas(ConfiguracionProceso configuracion) {
+        MetricasProceso metricas = MetricasProceso.getInstancia();
+        new VisualizadorResultados().mostrarMetricasEtapas(metricas);
+        
+        Path informe = configuracion.getArchivoMetricas();
+        List<Path> salidas = metricas.getSalidas();
+        if (informe == null && salidas.size() == 1) {
+            informe = salidas.get(0).resolveSibling(salidas.get(0).getFileName() + ".metricas.json");
+        } else if (informe == null && !salidas.isEmpty()) {
+            Path directorio = salidas.get(0).toAbsolutePath().getParent();
+            informe = directorio.resolve("metricas_proceso.json");
+        }
+        if (informe == null) {
+            return;
+        }
+        
+        try {
+            metricas.escribirInforme(informe);
+            Registro.resumen("Informe de metricas: " + informe);
+        } catch (IOException e) {
+            Registro.error("ERROR AL GUARDAR LAS METRICAS: " + e.getMessage());
+        }
     }
 }
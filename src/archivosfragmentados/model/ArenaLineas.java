@@ -0,0 +1,178 @@
+package archivosfragmentados.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Almacen de lineas de solo agregado fuera del heap. El texto se guarda en
+ * UTF-8 dentro de bloques de memoria directa y solo se mantiene en el heap un
+ * indice primitivo de posiciones y longitudes, asi millones de lineas no
+ * generan millones de objetos para el recolector de basura.
+ *
+ * <p>La memoria directa no cuenta en el heap: su limite es
+ * {@code -XX:MaxDirectMemorySize}, que por defecto vale lo mismo que el heap
+ * maximo. El recolector solo la devuelve cuando limpia los bloques, asi que
+ * {@link #liberar()} los deja en una reserva compartida y el siguiente almacen
+ * los reutiliza en lugar de reservar memoria nueva.</p>
+ */
+public class ArenaLineas {
+
+    private static final int TAMANO_BLOQUE = 16 * 1024 * 1024;
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    /** Bloques liberados que se conservan para reutilizar (256 MB). */
+    private static final int MAXIMO_BLOQUES_LIBRES = 16;
+    private static final Deque<ByteBuffer> BLOQUES_LIBRES = new ArrayDeque<>();
+
+    private final List<ByteBuffer> bloques = new ArrayList<>();
+    private ByteBuffer bloqueActual;
+    private long[] posiciones = new long[CAPACIDAD_INICIAL];
+    private int[] longitudes = new int[CAPACIDAD_INICIAL];
+    private int cantidad = 0;
+    private long bytesUsados = 0;
+
+    /**
+     * Agrega una linea al final del almacen.
+     *
+     * @param linea Linea a guardar
+     */
+    public void agregar(String linea) {
+        byte[] bytes = linea.getBytes(StandardCharsets.UTF_8);
+
+        if (bloqueActual == null || bloqueActual.remaining() < bytes.length) {
+            bloqueActual = tomarBloque(bytes.length);
+            bloques.add(bloqueActual);
+        }
+
+        if (cantidad == posiciones.length) {
+            posiciones = Arrays.copyOf(posiciones, cantidad * 2);
+            longitudes = Arrays.copyOf(longitudes, cantidad * 2);
+        }
+
+        int desplazamiento = bloqueActual.position();
+        bloqueActual.put(bytes);
+        posiciones[cantidad] = ((long) (bloques.size() - 1) << 32) | desplazamiento;
+        longitudes[cantidad] = bytes.length;
+        cantidad++;
+        bytesUsados += bytes.length;
+    }
+
+    /**
+     * Obtiene la cantidad de lineas guardadas.
+     *
+     * @return Numero de lineas
+     */
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Obtiene los bytes de texto ocupados fuera del heap.
+     *
+     * @return Bytes usados en los bloques
+     */
+    public long getBytesUsados() {
+        return bytesUsados;
+    }
+
+    /**
+     * Decodifica la linea en la posicion indicada.
+     *
+     * @param indice Posicion de la linea
+     * @return Linea como texto
+     */
+    public String obtener(int indice) {
+        if (indice < 0 || indice >= cantidad) {
+            throw new IndexOutOfBoundsException("Indice: " + indice + ", cantidad: " + cantidad);
+        }
+        byte[] bytes = new byte[longitudes[indice]];
+        copiarBytes(indice, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Obtiene la longitud en bytes UTF-8 de una linea.
+     *
+     * @param indice Posicion de la linea
+     * @return Longitud en bytes
+     */
+    public int getLongitud(int indice) {
+        return longitudes[indice];
+    }
+
+    /**
+     * Copia los bytes UTF-8 de una linea al arreglo destino, sin decodificar.
+     *
+     * @param indice Posicion de la linea
+     * @param destino Arreglo con al menos {@link #getLongitud(int)} bytes
+     */
+    public void copiarBytes(int indice, byte[] destino) {
+        long posicion = posiciones[indice];
+        ByteBuffer bloque = bloques.get((int) (posicion >>> 32));
+        bloque.get((int) posicion, destino, 0, longitudes[indice]);
+    }
+
+    /**
+     * Recorre todas las lineas en orden de insercion, decodificandolas una a
+     * una. Cada linea se entrega como una cadena nueva: solo queda en el heap
+     * si la accion la conserva.
+     *
+     * @param accion Accion a ejecutar por cada linea
+     */
+    public void recorrer(Consumer<String> accion) {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < cantidad; i++) {
+            int longitud = longitudes[i];
+            if (longitud > bytes.length) {
+                bytes = new byte[Math.max(longitud, bytes.length * 2)];
+            }
+            long posicion = posiciones[i];
+            bloques.get((int) (posicion >>> 32)).get((int) posicion, bytes, 0, longitud);
+            accion.accept(new String(bytes, 0, longitud, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Libera las lineas guardadas. Los bloques vuelven a la reserva compartida
+     * hasta llenarla; el resto queda para el recolector. Despues de liberar el
+     * almacen queda vacio y se puede volver a usar.
+     */
+    public void liberar() {
+        synchronized (BLOQUES_LIBRES) {
+            for (ByteBuffer bloque : bloques) {
+                if (bloque.capacity() == TAMANO_BLOQUE && BLOQUES_LIBRES.size() < MAXIMO_BLOQUES_LIBRES) {
+                    bloque.clear();
+                    BLOQUES_LIBRES.push(bloque);
+                }
+            }
+        }
+        bloques.clear();
+        bloqueActual = null;
+        posiciones = new long[CAPACIDAD_INICIAL];
+        longitudes = new int[CAPACIDAD_INICIAL];
+        cantidad = 0;
+        bytesUsados = 0;
+    }
+
+    /**
+     * Obtiene un bloque para una linea, de la reserva si hay uno libre. Las
+     * lineas mas grandes que un bloque reciben uno a su medida.
+     */
+    private static ByteBuffer tomarBloque(int longitud) {
+        if (longitud <= TAMANO_BLOQUE) {
+            synchronized (BLOQUES_LIBRES) {
+                ByteBuffer libre = BLOQUES_LIBRES.poll();
+                if (libre != null) {
+                    return libre;
+                }
+            }
+        }
+        return ByteBuffer.allocateDirect(Math.max(TAMANO_BLOQUE, longitud));
+    }
+}
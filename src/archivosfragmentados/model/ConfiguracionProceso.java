@@ -0,0 +1,488 @@
+package archivosfragmentados.model;
+
+import archivosfragmentados.util.NivelRegistro;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opciones de ejecucion del procesador, obtenidas de la linea de comandos.
+ */
+public class ConfiguracionProceso {
+
+    /**
+     * Estrategias disponibles para reconstruir el archivo maestro.
+     */
+    public enum ModoProcesamiento {
+        /** Carga todas las lineas en memoria antes de analizarlas. */
+        MEMORIA,
+        /** Las lineas fluyen del lector al analizador sin guardarse por entidad. */
+        FLUJO,
+        /** Ordenamiento externo en disco respetando un presupuesto de memoria. */
+        EXTERNO,
+        /** Solo estima las estadisticas de duplicados en memoria fija, sin reconstruir. */
+        APROXIMADO
+    }
+
+    /**
+     * Estructuras disponibles para detectar lineas duplicadas.
+     */
+    public enum ModoDeduplicacion {
+        /** Mapa con cada linea distinta como clave. */
+        EXACTO,
+        /** Tabla primitiva de huellas de 64 bits con verificacion exacta en colisiones. */
+        HUELLAS
+    }
+
+    /**
+     * Algoritmos disponibles para ordenar las lineas unicas.
+     */
+    public enum ModoOrden {
+        /** Ordenamiento por comparacion de {@code String.compareTo}. */
+        COMPARACION,
+        /** Radix MSD sobre los bytes UTF-8 de cada linea. */
+        RADIX,
+        /** Fusion de los fragmentos que ya vienen ordenados; solo se ordenan los demas. */
+        FUSION,
+        /** Deduplicacion por particiones y ordenamiento en paralelo. */
+        PARALELO
+    }
+
+    private static final long PRESUPUESTO_MEMORIA_DEFECTO = 256L * 1024 * 1024;
+    private static final int VENTANA_VIGILANCIA_DEFECTO = 10;
+    private static final int PRECISION_DEFECTO = 14;
+    private static final int LINEAS_FRECUENTES_DEFECTO = 10;
+    private static final int NIVEL_GZIP_DEFECTO = 6;
+
+    private ModoProcesamiento modo = ModoProcesamiento.MEMORIA;
+    private long presupuestoMemoria = PRESUPUESTO_MEMORIA_DEFECTO;
+    private Path directorioTemporal = Paths.get(System.getProperty("java.io.tmpdir"));
+    private int hilosLectura = 1;
+    private boolean hilosVirtuales = false;
+    private ModoDeduplicacion modoDeduplicacion = ModoDeduplicacion.EXACTO;
+    private ModoOrden modoOrden = ModoOrden.COMPARACION;
+    private boolean lineasFueraDelHeap = false;
+    private boolean incremental = false;
+    private long umbralMapeo = 0;
+    private int hilosMapeo = Runtime.getRuntime().availableProcessors();
+    private Path directorioVigilado = null;
+    private Path archivoSalida = null;
+    private int ventanaVigilancia = VENTANA_VIGILANCIA_DEFECTO;
+    private Path archivoTrabajos = null;
+    private final List<Path> directoriosLote = new ArrayList<>();
+    private int trabajosSimultaneos = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private boolean porEntidad = false;
+    private int hilosEntidades = Runtime.getRuntime().availableProcessors();
+    private final List<String> columnasClave = new ArrayList<>();
+    private boolean conservarUltima = false;
+    private int paralelismo = Runtime.getRuntime().availableProcessors();
+    private int precisionAproximada = PRECISION_DEFECTO;
+    private int lineasFrecuentes = LINEAS_FRECUENTES_DEFECTO;
+    private int bufferEscritura = 1 << 20;
+    private boolean hilosLecturaIndicados = false;
+    private boolean comprimirSalida = false;
+    private int nivelGzip = NIVEL_GZIP_DEFECTO;
+    private int bufferGzip = 64 * 1024;
+    private Path archivoMetricas = null;
+    private NivelRegistro nivelRegistro = NivelRegistro.DETALLE;
+    private Path archivoRegistro = null;
+    private boolean registroSincrono = false;
+    private boolean recursivo = false;
+
+    /**
+     * Construye la configuracion a partir de los argumentos del programa.
+     *
+     * @param args Argumentos de la linea de comandos (ej: --modo=flujo)
+     * @return Configuracion resultante
+     * @throws IllegalArgumentException Si algun argumento no es valido
+     */
+    public static ConfiguracionProceso desdeArgumentos(String[] args) {
+        ConfiguracionProceso configuracion = new ConfiguracionProceso();
+
+        for (String argumento : args) {
+            String[] partes = argumento.split("=", 2);
+            String opcion = partes[0].trim().toLowerCase();
+            String valor = partes.length > 1 ? partes[1].trim() : "";
+
+            switch (opcion) {
+                case "--modo":
+                    configuracion.modo = leerModo(valor);
+                    break;
+                case "--flujo":
+                    configuracion.modo = ModoProcesamiento.FLUJO;
+                    break;
+                case "--externo":
+                    configuracion.modo = ModoProcesamiento.EXTERNO;
+                    break;
+                case "--aproximado":
+                    configuracion.modo = ModoProcesamiento.APROXIMADO;
+                    break;
+                case "--precision":
+                    configuracion.precisionAproximada = leerEnteroPositivo(opcion, valor);
+                    if (configuracion.precisionAproximada < 4 || configuracion.precisionAproximada > 18) {
+                        throw new IllegalArgumentException("--precision debe estar entre 4 y 18: " + valor);
+                    }
+                    break;
+                case "--buffer-escritura":
+                    long buffer = leerTamano(valor);
+                    if (buffer > Integer.MAX_VALUE / 2) {
+                        throw new IllegalArgumentException("--buffer-escritura es demasiado grande: " + valor);
+                    }
+                    configuracion.bufferEscritura = (int) buffer;
+                    break;
+                case "--comprimir":
+                    configuracion.comprimirSalida = true;
+                    break;
+                case "--nivel-gzip":
+                    configuracion.nivelGzip = leerEnteroPositivo(opcion, valor);
+                    if (configuracion.nivelGzip > 9) {
+                        throw new IllegalArgumentException("--nivel-gzip debe estar entre 1 y 9: " + valor);
+                    }
+                    break;
+                case "--buffer-gzip":
+                    long bufferGzip = leerTamano(valor);
+                    if (bufferGzip > Integer.MAX_VALUE / 2) {
+                        throw new IllegalArgumentException("--buffer-gzip es demasiado grande: " + valor);
+                    }
+                    configuracion.bufferGzip = (int) bufferGzip;
+                    break;
+                case "--metricas":
+                    configuracion.archivoMetricas = Paths.get(valor);
+                    break;
+                case "--registro":
+                    configuracion.nivelRegistro = leerNivelRegistro(valor);
+                    break;
+                case "--silencio":
+                    configuracion.nivelRegistro = NivelRegistro.SILENCIO;
+                    break;
+                case "--registro-archivo":
+                    configuracion.archivoRegistro = Paths.get(valor);
+                    break;
+                case "--registro-sincrono":
+                    configuracion.registroSincrono = true;
+                    break;
+                case "--top":
+                    configuracion.lineasFrecuentes = leerEnteroPositivo(opcion, valor);
+                    break;
+                case "--memoria":
+                    configuracion.presupuestoMemoria = leerTamano(valor);
+                    break;
+                case "--temporal":
+                    configuracion.directorioTemporal = Paths.get(valor);
+                    break;
+                case "--hilos-lectura":
+                    configuracion.hilosLectura = leerEnteroPositivo(opcion, valor);
+                    configuracion.hilosLecturaIndicados = true;
+                    break;
+                case "--hilos-virtuales":
+                    configuracion.hilosVirtuales = true;
+                    break;
+                case "--dedup":
+                    configuracion.modoDeduplicacion = leerModoDeduplicacion(valor);
+                    break;
+                case "--orden":
+                    configuracion.modoOrden = leerModoOrden(valor);
+                    break;
+                case "--fuera-heap":
+                    configuracion.lineasFueraDelHeap = true;
+                    break;
+                case "--incremental":
+                    configuracion.incremental = true;
+                    break;
+                case "--umbral-mapeo":
+                    configuracion.umbralMapeo = leerTamano(valor);
+                    break;
+                case "--hilos-mapeo":
+                    configuracion.hilosMapeo = leerEnteroPositivo(opcion, valor);
+                    break;
+                case "--vigilar":
+                    configuracion.directorioVigilado = Paths.get(valor);
+                    break;
+                case "--salida":
+                    configuracion.archivoSalida = Paths.get(valor);
+                    break;
+                case "--ventana":
+                    configuracion.ventanaVigilancia = leerEnteroPositivo(opcion, valor);
+                    break;
+                case "--lote":
+                    configuracion.archivoTrabajos = Paths.get(valor);
+                    break;
+                case "--directorios":
+                    for (String directorio : valor.split(",")) {
+                        if (!directorio.isBlank()) {
+                            configuracion.directoriosLote.add(Paths.get(directorio.trim()));
+                        }
+                    }
+                    break;
+                case "--trabajos":
+                    configuracion.trabajosSimultaneos = leerEnteroPositivo(opcion, valor);
+                    break;
+                case "--por-entidad":
+                    configuracion.porEntidad = true;
+                    break;
+                case "--recursivo":
+                    configuracion.recursivo = true;
+                    break;
+                case "--hilos-entidades":
+                    configuracion.hilosEntidades = leerEnteroPositivo(opcion, valor);
+                    break;
+                case "--clave":
+                    for (String columna : valor.split(",")) {
+                        if (!columna.isBlank()) {
+                            configuracion.columnasClave.add(columna.trim());
+                        }
+                    }
+                    break;
+                case "--paralelismo":
+                    configuracion.paralelismo = leerEnteroPositivo(opcion, valor);
+                    break;
+                case "--conservar":
+                    configuracion.conservarUltima = leerPoliticaConservacion(valor);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opcion desconocida: " + argumento);
+            }
+        }
+
+        if (!configuracion.columnasClave.isEmpty()
+                && (configuracion.modo == ModoProcesamiento.EXTERNO || configuracion.incremental
+                    || configuracion.directorioVigilado != null)) {
+            // El orden externo y la fusion incremental comparan lineas completas.
+            throw new IllegalArgumentException("--clave no se puede usar con el modo externo, incremental ni --vigilar");
+        }
+        if (configuracion.modoOrden == ModoOrden.RADIX
+                && (configuracion.incremental || configuracion.directorioVigilado != null)) {
+            // La fusion incremental compara con compareTo; el orden por bytes UTF-8
+            // difiere para caracteres suplementarios y dejaria el maestro desordenado.
+            throw new IllegalArgumentException("--orden=radix no se puede usar con --incremental ni --vigilar");
+        }
+        if (configuracion.modo == ModoProcesamiento.APROXIMADO
+                && (!configuracion.columnasClave.isEmpty() || configuracion.incremental || configuracion.porEntidad
+                    || configuracion.directorioVigilado != null || configuracion.isModoLote())) {
+            // El modo aproximado no escribe archivo maestro que actualizar o repartir.
+            throw new IllegalArgumentException(
+                "--aproximado no se puede usar con --clave, --incremental, --por-entidad, --vigilar ni --lote");
+        }
+        if (configuracion.porEntidad && (configuracion.incremental || configuracion.directorioVigilado != null)) {
+            // El manifiesto y la fusion incremental trabajan sobre un unico archivo maestro.
+            throw new IllegalArgumentException("--por-entidad no se puede usar con --incremental ni --vigilar");
+        }
+        if (configuracion.porEntidad
+                && (configuracion.modo == ModoProcesamiento.EXTERNO || configuracion.modo == ModoProcesamiento.FLUJO)) {
+            // Cada entidad se guarda completa en memoria antes de reconstruirla.
+            throw new IllegalArgumentException("--por-entidad no se puede usar con el modo externo ni flujo");
+        }
+        if (configuracion.recursivo && configuracion.directorioVigilado != null) {
+            // El vigilante solo recibe eventos del directorio registrado, no de sus subdirectorios.
+            throw new IllegalArgumentException("--recursivo no se puede usar con --vigilar");
+        }
+        if (configuracion.directorioVigilado != null && configuracion.archivoSalida == null) {
+            configuracion.archivoSalida = configuracion.directorioVigilado.resolve("entidad_rec.csv");
+        }
+
+        return configuracion;
+    }
+
+    /**
+     * Interpreta el nombre de un modo de procesamiento.
+     *
+     * @param valor Nombre del modo (memoria, flujo, externo o aproximado)
+     * @return Modo correspondiente
+     */
+    private static ModoProcesamiento leerModo(String valor) {
+        switch (valor.toLowerCase()) {
+            case "memoria":
+                return ModoProcesamiento.MEMORIA;
+            case "flujo":
+                return ModoProcesamiento.FLUJO;
+            case "externo":
+                return ModoProcesamiento.EXTERNO;
+            case "aproximado":
+                return ModoProcesamiento.APROXIMADO;
+            default:
+                throw new IllegalArgumentException("Modo de procesamiento no valido: " + valor);
+        }
+    }
+
+    /**
+     * Interpreta el nombre de un modo de deduplicacion.
+     *
+     * @param valor Nombre del modo (exacto o huellas)
+     * @return Modo correspondiente
+     */
+    private static ModoDeduplicacion leerModoDeduplicacion(String valor) {
+        switch (valor.toLowerCase()) {
+            case "exacto":
+                return ModoDeduplicacion.EXACTO;
+            case "huellas":
+                return ModoDeduplicacion.HUELLAS;
+            default:
+                throw new IllegalArgumentException("Modo de deduplicacion no valido: " + valor);
+        }
+    }
+
+    /**
+     * Interpreta el nombre de un algoritmo de ordenamiento.
+     *
+     * @param valor Nombre del algoritmo (comparacion, radix, fusion o paralelo)
+     * @return Modo correspondiente
+     */
+    private static ModoOrden leerModoOrden(String valor) {
+        switch (valor.toLowerCase()) {
+            case "comparacion":
+                return ModoOrden.COMPARACION;
+            case "radix":
+                return ModoOrden.RADIX;
+            case "fusion":
+                return ModoOrden.FUSION;
+            case "paralelo":
+                return ModoOrden.PARALELO;
+            default:
+                throw new IllegalArgumentException("Modo de ordenamiento no valido: " + valor);
+        }
+    }
+
+    /**
+     * Interpreta el nivel de detalle de los mensajes.
+     *
+     * @param valor Nombre del nivel (silencio, resumen, normal o detalle)
+     * @return Nivel correspondiente
+     */
+    private static NivelRegistro leerNivelRegistro(String valor) {
+        switch (valor.toLowerCase()) {
+            case "silencio":
+                return NivelRegistro.SILENCIO;
+            case "resumen":
+                return NivelRegistro.RESUMEN;
+            case "normal":
+                return NivelRegistro.NORMAL;
+            case "detalle":
+                return NivelRegistro.DETALLE;
+            default:
+                throw new IllegalArgumentException("Nivel de registro no valido: " + valor);
+        }
+    }
+
+    /**
+     * Interpreta que fila se conserva de cada clave duplicada.
+     *
+     * @param valor Politica (primero o ultimo)
+     * @return true si se conserva la ultima fila
+     */
+    private static boolean leerPoliticaConservacion(String valor) {
+        switch (valor.toLowerCase()) {
+            case "primero":
+                return false;
+            case "ultimo":
+                return true;
+            default:
+                throw new IllegalArgumentException("Politica de conservacion no valida: " + valor);
+        }
+    }
+
+    /**
+     * Interpreta un tamano en bytes con sufijo opcional k, m o g.
+     *
+     * @param valor Tamano a interpretar (ej: 512m)
+     * @return Cantidad de bytes
+     */
+    private static long leerTamano(String valor) {
+        String texto = valor.toLowerCase();
+        long multiplicador = 1;
+
+        if (texto.endsWith("k")) {
+            multiplicador = 1024L;
+        } else if (texto.endsWith("m")) {
+            multiplicador = 1024L * 1024;
+        } else if (texto.endsWith("g")) {
+            multiplicador = 1024L * 1024 * 1024;
+        }
+        if (multiplicador > 1) {
+            texto = texto.substring(0, texto.length() - 1);
+        }
+
+        try {
+            long bytes = Long.parseLong(texto) * multiplicador;
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("El tamano debe ser positivo: " + valor);
+            }
+            return bytes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Tamano no valido: " + valor);
+        }
+    }
+
+    /**
+     * Interpreta un numero entero mayor que cero.
+     *
+     * @param opcion Opcion que recibe el valor, para el mensaje de error
+     * @param valor Texto a interpretar
+     * @return Numero leido
+     */
+    private static int leerEnteroPositivo(String opcion, String valor) {
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero <= 0) {
+                throw new IllegalArgumentException(opcion + " debe ser mayor que cero: " + valor);
+            }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(opcion + " requiere un numero entero: " + valor);
+        }
+    }
+
+    public ModoProcesamiento getModo() { return modo; }
+    public long getPresupuestoMemoria() { return presupuestoMemoria; }
+    public Path getDirectorioTemporal() { return directorioTemporal; }
+    public ModoDeduplicacion getModoDeduplicacion() { return modoDeduplicacion; }
+    public ModoOrden getModoOrden() { return modoOrden; }
+    public boolean isLineasFueraDelHeap() { return lineasFueraDelHeap; }
+    public boolean isIncremental() { return incremental; }
+    public int getHilosLectura() { return hilosLectura; }
+    public boolean isHilosVirtuales() { return hilosVirtuales; }
+    public long getUmbralMapeo() { return umbralMapeo; }
+    public int getHilosMapeo() { return hilosMapeo; }
+    /** Directorio a vigilar en modo continuo, o null si no se pidio. */
+    public Path getDirectorioVigilado() { return directorioVigilado; }
+    public Path getArchivoSalida() { return archivoSalida; }
+    /** Segundos que se agrupan los fragmentos nuevos antes de procesarlos. */
+    public int getVentanaVigilancia() { return ventanaVigilancia; }
+    public Path getArchivoTrabajos() { return archivoTrabajos; }
+    public List<Path> getDirectoriosLote() { return directoriosLote; }
+    public int getTrabajosSimultaneos() { return trabajosSimultaneos; }
+    /** Indica si se pidio el modo por lotes (archivo de trabajos o directorios). */
+    public boolean isModoLote() { return archivoTrabajos != null || !directoriosLote.isEmpty(); }
+    /** Indica si cada entidad se reconstruye en su propio archivo. */
+    public boolean isPorEntidad() { return porEntidad; }
+    public int getHilosEntidades() { return hilosEntidades; }
+    /** Columnas (nombre o posicion desde 1) que identifican una fila duplicada; vacia para la linea completa. */
+    public List<String> getColumnasClave() { return columnasClave; }
+    public boolean isConservarUltima() { return conservarUltima; }
+    /** Hilos del analisis y ordenamiento con {@code --orden=paralelo}. */
+    public int getParalelismo() { return paralelismo; }
+    /** Bits del indice de registro del HyperLogLog en modo aproximado. */
+    public int getPrecisionAproximada() { return precisionAproximada; }
+    /** Cantidad de lineas mas repetidas que se reportan en modo aproximado. */
+    public int getLineasFrecuentes() { return lineasFrecuentes; }
+    /** Bytes de cada uno de los dos buffers del escritor de salida. */
+    public int getBufferEscritura() { return bufferEscritura; }
+    /** Indica si se fijaron los hilos de lectura; si no, los fragmentos gzip usan todos los nucleos. */
+    public boolean isHilosLecturaIndicados() { return hilosLecturaIndicados; }
+    /** Indica si los archivos de salida se escriben comprimidos con gzip. */
+    public boolean isComprimirSalida() { return comprimirSalida; }
+    /** Nivel de compresion gzip de la salida, de 1 (rapido) a 9 (compacto). */
+    public int getNivelGzip() { return nivelGzip; }
+    /** Bytes del buffer de compresion y descompresion gzip. */
+    public int getBufferGzip() { return bufferGzip; }
+    /** Archivo del informe JSON de metricas, o null para ubicarlo junto a la salida. */
+    public Path getArchivoMetricas() { return archivoMetricas; }
+    /** Nivel de detalle de los mensajes; por defecto, un mensaje por fragmento. */
+    public NivelRegistro getNivelRegistro() { return nivelRegistro; }
+    /** Archivo donde se escriben los mensajes en lugar de la consola, o null. */
+    public Path getArchivoRegistro() { return archivoRegistro; }
+    /** Indica si los mensajes se escriben en el hilo que los genera, sin el hilo de registro. */
+    public boolean isRegistroSincrono() { return registroSincrono; }
+    /** Si los fragmentos se buscan tambien en los subdirectorios de la entrada. */
+    public boolean isRecursivo() { return recursivo; }
+}
@@ -1,8 +1,13 @@
 package archivosfragmentados.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
 
 /**
  * Representa una entidad con sus datos fragmentados.
@@ -11,6 +16,12 @@ public class Entidad {
     
     private final String nombre;
     private final List<String> lineasDatos;
+    private final boolean almacenarLineas;
+    private final ArenaLineas arena;
+    private int cantidadLineas;
+    private List<Integer> iniciosFragmentos = null;
+    private final BitSet fragmentosDesordenados = new BitSet();
+    private String ultimaLinea = null;
     
     /**
      * Constructor para crear una entidad.
@@ -18,8 +29,35 @@ public class Entidad {
      * @param nombre Nombre de la entidad
      */
     public Entidad(String nombre) {
+        this(nombre, true);
+    }
+    
+    /**
+     * Constructor para crear una entidad indicando si guarda sus lineas.
+     * En modo flujo solo se lleva la cuenta de lineas leidas.
+     * 
+     * @param nombre Nombre de la entidad
+     * @param almacenarLineas true para conservar las lineas en memoria
+     */
+    public Entidad(String nombre, boolean almacenarLineas) {
         this.nombre = nombre;
         this.lineasDatos = new ArrayList<>();
+        this.almacenarLineas = almacenarLineas;
+        this.arena = null;
+    }
+    
+    /**
+     * Constructor para crear una entidad cuyas lineas se guardan fuera del
+     * heap, en un almacen de bytes de solo agregado.
+     * 
+     * @param nombre Nombre de la entidad
+     * @param arena Almacen donde se guardaran las lineas
+     */
+    public Entidad(String nombre, ArenaLineas arena) {
+        this.nombre = nombre;
+        this.lineasDatos = Collections.emptyList();
+        this.almacenarLineas = true;
+        this.arena = arena;
     }
     
     /**
@@ -28,9 +66,76 @@ public class Entidad {
      * @param lineaDatos Línea de datos a agregar
      */
     public void agregarLineaDatos(String lineaDatos) {
-        if (lineaDatos != null && !lineaDatos.trim().isEmpty()) {
-            this.lineasDatos.add(lineaDatos.trim());
+        if (lineaDatos != null) {
+            String linea = lineaDatos.trim();
+            if (!linea.isEmpty()) {
+                agregarLineaRecortada(linea);
+            }
+        }
+    }
+    
+    /**
+     * Agrega una linea que el lector ya recorto y sabe que no esta vacia,
+     * sin volver a recortarla.
+     * 
+     * @param linea Linea recortada y no vacia
+     */
+    public void agregarLineaRecortada(String linea) {
+        if (iniciosFragmentos != null) {
+            if (ultimaLinea != null && ultimaLinea.compareTo(linea) > 0) {
+                fragmentosDesordenados.set(iniciosFragmentos.size() - 1);
+            }
+            ultimaLinea = linea;
         }
+        if (arena != null) {
+            arena.agregar(linea);
+        } else if (almacenarLineas) {
+            this.lineasDatos.add(linea);
+        }
+        this.cantidadLineas++;
+    }
+    
+    /**
+     * Marca el inicio de un nuevo fragmento. A partir de la primera llamada la
+     * entidad registra donde empieza cada fragmento y si sus lineas llegan ya
+     * ordenadas, comparando cada linea con la anterior al agregarla.
+     */
+    public void iniciarFragmento() {
+        if (iniciosFragmentos == null) {
+            iniciosFragmentos = new ArrayList<>();
+        }
+        iniciosFragmentos.add(cantidadLineas);
+        ultimaLinea = null;
+    }
+    
+    /**
+     * Obtiene cuantos fragmentos se registraron con {@link #iniciarFragmento()}.
+     * 
+     * @return Numero de fragmentos, 0 si no se registraron
+     */
+    public int getCantidadFragmentos() {
+        return iniciosFragmentos == null ? 0 : iniciosFragmentos.size();
+    }
+    
+    /**
+     * Obtiene una vista de las lineas de un fragmento registrado.
+     * 
+     * @param fragmento Indice del fragmento en orden de lectura
+     * @return Vista de las lineas del fragmento
+     */
+    public List<String> getLineasFragmento(int fragmento) {
+        int fin = fragmento + 1 < iniciosFragmentos.size() ? iniciosFragmentos.get(fragmento + 1) : cantidadLineas;
+        return getVistaLineas().subList(iniciosFragmentos.get(fragmento), fin);
+    }
+    
+    /**
+     * Indica si las lineas de un fragmento registrado llegaron ordenadas.
+     * 
+     * @param fragmento Indice del fragmento en orden de lectura
+     * @return true si cada linea es mayor o igual que la anterior
+     */
+    public boolean isFragmentoOrdenado(int fragmento) {
+        return !fragmentosDesordenados.get(fragmento);
     }
     
     /**
@@ -48,7 +153,64 @@ public class Entidad {
      * @return Lista de líneas de datos
      */
     public List<String> getLineasDatos() {
-        return new ArrayList<>(lineasDatos);
+        return new ArrayList<>(getVistaLineas());
+    }
+    
+    /**
+     * Obtiene una vista de solo lectura de las lineas, sin copiarlas. Si las
+     * lineas estan fuera del heap, cada acceso decodifica la linea pedida.
+     * 
+     * @return Vista de las lineas de datos
+     */
+    public List<String> getVistaLineas() {
+        if (arena != null) {
+            return new VistaArena(arena);
+        }
+        return Collections.unmodifiableList(lineasDatos);
+    }
+    
+    /**
+     * Recorre las lineas de datos en orden sin crear listas intermedias.
+     * 
+     * @param accion Accion a ejecutar por cada linea
+     */
+    public void recorrerLineas(Consumer<String> accion) {
+        if (arena != null) {
+            arena.recorrer(accion);
+        } else {
+            lineasDatos.forEach(accion);
+        }
+    }
+    
+    /**
+     * Libera las lineas guardadas cuando ya no se van a recorrer, por ejemplo
+     * despues de analizarlas. Con lineas fuera del heap devuelve sus bloques
+     * de memoria directa. La entidad conserva la cantidad de lineas leidas.
+     */
+    public void liberarLineas() {
+        if (arena != null) {
+            arena.liberar();
+        } else if (almacenarLineas) {
+            lineasDatos.clear();
+        }
+    }
+    
+    /**
+     * Indica si las lineas de la entidad se guardan fuera del heap.
+     * 
+     * @return true si usa un almacen fuera del heap
+     */
+    public boolean isFueraDelHeap() {
+        return arena != null;
+    }
+    
+    /**
+     * Obtiene la cantidad de lineas de datos agregadas a la entidad.
+     * 
+     * @return Numero de lineas, aunque no se hayan almacenado
+     */
+    public int getCantidadLineas() {
+        return cantidadLineas;
     }
     
     @Override
@@ -66,6 +228,27 @@ public class Entidad {
     
     @Override
     public String toString() {
-        return String.format("Entidad{nombre='%s', lineas=%d}", nombre, lineasDatos.size());
+        return String.format("Entidad{nombre='%s', lineas=%d}", nombre, cantidadLineas);
+    }
+    
+    /**
+     * Vista de lista sobre un almacen fuera del heap.
+     */
+    private static class VistaArena extends AbstractList<String> implements RandomAccess {
+        private final ArenaLineas arena;
+        
+        VistaArena(ArenaLineas arena) {
+            this.arena = arena;
+        }
+        
+        @Override
+        public String get(int indice) {
+            return arena.obtener(indice);
+        }
+        
+        @Override
+        public int size() {
+            return arena.getCantidad();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package archivosfragmentados.monitoreo;
+
+/**
+ * Etapas del procesamiento que se miden por separado.
+ */
+public enum EtapaProceso {
+    /** Lectura de los fragmentos, incluida la deduplicacion en modo flujo. */
+    LECTURA,
+    /** Deteccion de duplicados sobre las lineas ya leidas, incluido su ordenamiento. */
+    ANALISIS,
+    /** Ordenamiento de las lineas unicas. */
+    ORDENAMIENTO,
+    /** Escritura de los archivos de salida. */
+    ESCRITURA
+}
@@ -0,0 +1,46 @@
+package archivosfragmentados.monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento de Java Flight Recorder con la duracion de una etapa del proceso.
+ * Las etapas se ejecutan pocas veces, asi que se registran todas.
+ */
+@Name("archivosfragmentados.Etapa")
+@Label("Etapa del proceso")
+@Description("Lectura, analisis, ordenamiento o escritura")
+@Category({"Archivos Fragmentados", "Etapas"})
+@StackTrace(false)
+@Threshold("0 ms")
+final class EventoEtapa extends Event {
+
+    @Label("Etapa")
+    String etapa;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Lineas")
+    long lineas;
+
+    /**
+     * Cierra el evento y lo registra si la grabacion lo pide.
+     */
+    void finalizar(EtapaProceso etapa, long bytes, long lineas) {
+        end();
+        if (shouldCommit()) {
+            this.etapa = etapa.name();
+            this.bytes = bytes;
+            this.lineas = lineas;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package archivosfragmentados.monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento de Java Flight Recorder por cada fragmento leido. Con el umbral por
+ * defecto solo se registran las lecturas de 1 ms o mas, para no llenar la
+ * grabacion cuando hay cientos de miles de fragmentos pequenos.
+ *
+ * <p>Uso: crear el evento y llamar a {@code begin()} antes de abrir el
+ * fragmento, y a {@link #finalizar} al terminar. Sin grabacion activa ambas
+ * llamadas no hacen nada.</p>
+ */
+@Name("archivosfragmentados.LecturaFragmento")
+@Label("Lectura de fragmento")
+@Description("Lectura de un fragmento CSV, con o sin gzip")
+@Category({"Archivos Fragmentados", "Lectura"})
+@StackTrace(false)
+@Threshold("1 ms")
+public final class EventoLecturaFragmento extends Event {
+
+    @Label("Archivo")
+    String archivo;
+
+    @Label("Entidad")
+    String entidad;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Lineas")
+    long lineas;
+
+    @Label("Cabecera omitida")
+    @Description("Primera linea del fragmento, que no se cuenta como dato")
+    String cabecera;
+
+    /**
+     * Cierra el evento y lo registra si la grabacion lo pide.
+     *
+     * @param archivo Ruta del fragmento
+     * @param entidad Entidad del fragmento
+     * @param bytes Bytes del fragmento en disco
+     * @param lineas Lineas de datos leidas
+     * @param cabecera Primera linea omitida, o null si el fragmento esta vacio
+     */
+    public void finalizar(String archivo, String entidad, long bytes, long lineas, String cabecera) {
+        end();
+        if (shouldCommit()) {
+            this.archivo = archivo;
+            this.entidad = entidad;
+            this.bytes = bytes;
+            this.lineas = lineas;
+            this.cabecera = cabecera;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package archivosfragmentados.monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento de Java Flight Recorder por cada buffer que el hilo de escritura
+ * vuelca al archivo (comprimiendolo si corresponde) y por la sincronizacion
+ * final con el disco. Por defecto solo se registran los de 1 ms o mas.
+ */
+@Name("archivosfragmentados.VolcadoSalida")
+@Label("Volcado de salida")
+@Description("Escritura de un buffer de salida o sincronizacion del archivo con el disco")
+@Category({"Archivos Fragmentados", "Escritura"})
+@StackTrace(false)
+@Threshold("1 ms")
+public final class EventoVolcadoSalida extends Event {
+
+    /** Operacion de escritura de un buffer. */
+    public static final String ESCRITURA = "escritura";
+    /** Operacion de sincronizacion con el disco al cerrar. */
+    public static final String SINCRONIZACION = "sincronizacion";
+
+    @Label("Archivo")
+    String archivo;
+
+    @Label("Operacion")
+    String operacion;
+
+    @Label("Bytes")
+    @Description("Bytes del buffer antes de comprimir")
+    @DataAmount
+    long bytes;
+
+    @Label("Comprimido")
+    boolean comprimido;
+
+    /**
+     * Cierra el evento y lo registra si la grabacion lo pide.
+     *
+     * @param archivo Archivo de destino
+     * @param operacion {@link #ESCRITURA} o {@link #SINCRONIZACION}
+     * @param bytes Bytes volcados, o 0 en la sincronizacion
+     * @param comprimido Si la salida se comprime con gzip
+     */
+    public void finalizar(String archivo, String operacion, long bytes, boolean comprimido) {
+        end();
+        if (shouldCommit()) {
+            this.archivo = archivo;
+            this.operacion = operacion;
+            this.bytes = bytes;
+            this.comprimido = comprimido;
+            commit();
+        }
+    }
+}
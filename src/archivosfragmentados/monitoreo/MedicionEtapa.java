@@ -0,0 +1,24 @@
+package archivosfragmentados.monitoreo;
+
+/**
+ * Medicion en curso de una etapa, devuelta por
+ * {@link MetricasProceso#iniciarEtapa} y cerrada con
+ * {@link MetricasProceso#finalizarEtapa}.
+ */
+public final class MedicionEtapa {
+
+    private final EtapaProceso etapa;
+    private final long inicio;
+    private final EventoEtapa evento;
+
+    MedicionEtapa(EtapaProceso etapa) {
+        this.etapa = etapa;
+        this.evento = new EventoEtapa();
+        this.evento.begin();
+        this.inicio = System.nanoTime();
+    }
+
+    EtapaProceso getEtapa() { return etapa; }
+    long getInicio() { return inicio; }
+    EventoEtapa getEvento() { return evento; }
+}
@@ -0,0 +1,528 @@
+package archivosfragmentados.monitoreo;
+
+import archivosfragmentados.util.Registro;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metricas de todo el proceso: duracion, bytes y lineas de cada etapa,
+ * latencia de lectura de cada fragmento y pico de heap. Los servicios
+ * comparten una unica instancia, que se publica como MBean mientras el
+ * programa se ejecuta y al final se guarda como informe JSON.
+ *
+ * <p>Los contadores admiten hilos concurrentes. Si una etapa se ejecuta en
+ * varios hilos a la vez (por ejemplo el analisis con {@code --por-entidad}),
+ * su duracion es la suma de la de cada hilo.</p>
+ *
+ * <p>La memoria es fija aunque el proceso no termine, como en
+ * {@code --vigilar}: de los fragmentos solo se guardan los mas lentos y un
+ * histograma de latencias, y de las salidas las primeras rutas distintas.</p>
+ */
+public final class MetricasProceso implements MetricasProcesoMBean {
+
+    public static final String NOMBRE_MBEAN = "archivosfragmentados:type=MetricasProceso";
+
+    /** Fragmentos mas lentos que se detallan en el informe. */
+    private static final int FRAGMENTOS_DETALLADOS = 10;
+
+    /** Rutas de salida distintas que se recuerdan; las escrituras de las demas solo se cuentan. */
+    private static final int SALIDAS_DETALLADAS = 1024;
+
+    private static final MetricasProceso INSTANCIA = new MetricasProceso();
+
+    private final Instant inicio = Instant.now();
+    private final long inicioNanos = System.nanoTime();
+    private final Map<EtapaProceso, ContadorEtapa> etapas = new EnumMap<>(EtapaProceso.class);
+    private final HistogramaLatencia latencias = new HistogramaLatencia();
+    // Monticulo de minimos: la raiz es el mas rapido de los guardados.
+    private final PriorityQueue<FragmentoMedido> masLentos =
+            new PriorityQueue<>(Comparator.comparingLong(fragmento -> fragmento.nanosegundos));
+    private final Set<Path> salidas = new LinkedHashSet<>();
+    private long salidasSinDetallar = 0;
+    private volatile EtapaProceso etapaActual = null;
+
+    private MetricasProceso() {
+        for (EtapaProceso etapa : EtapaProceso.values()) {
+            etapas.put(etapa, new ContadorEtapa());
+        }
+    }
+
+    /**
+     * Obtiene las metricas del proceso.
+     *
+     * @return Instancia compartida por todos los servicios
+     */
+    public static MetricasProceso getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Publica las metricas como MBean y reinicia los picos de las zonas del
+     * heap, para que el pico medido sea el de este proceso y no el del
+     * arranque de la JVM. Si JMX no esta disponible se sigue sin publicar.
+     */
+    public void publicar() {
+        for (MemoryPoolMXBean zona : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (zona.getType() == MemoryType.HEAP && zona.isValid()) {
+                zona.resetPeakUsage();
+            }
+        }
+
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nombre = new ObjectName(NOMBRE_MBEAN);
+            if (!servidor.isRegistered(nombre)) {
+                servidor.registerMBean(this, nombre);
+            }
+        } catch (JMException | SecurityException e) {
+            Registro.error("ADVERTENCIA: NO SE PUDIERON PUBLICAR LAS METRICAS POR JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marca el inicio de una etapa. Si hay una grabacion de Flight Recorder
+     * activa, la etapa tambien se registra como evento.
+     *
+     * @param etapa Etapa que empieza
+     * @return Medicion a cerrar con {@link #finalizarEtapa}
+     */
+    public MedicionEtapa iniciarEtapa(EtapaProceso etapa) {
+        etapaActual = etapa;
+        return new MedicionEtapa(etapa);
+    }
+
+    /**
+     * Registra el fin de una etapa con lo que proceso.
+     *
+     * @param medicion Valor devuelto por {@link #iniciarEtapa}
+     * @param bytes Bytes procesados, o 0 si la etapa no los mide
+     * @param lineas Lineas procesadas
+     */
+    public void finalizarEtapa(MedicionEtapa medicion, long bytes, long lineas) {
+        ContadorEtapa contador = etapas.get(medicion.getEtapa());
+        contador.nanosegundos.add(System.nanoTime() - medicion.getInicio());
+        contador.ejecuciones.increment();
+        contador.bytes.add(bytes);
+        contador.lineas.add(lineas);
+        medicion.getEvento().finalizar(medicion.getEtapa(), bytes, lineas);
+    }
+
+    /**
+     * Registra la lectura de un fragmento. Sus bytes y lineas se suman a la
+     * etapa de lectura; la duracion de la etapa se mide aparte porque los
+     * fragmentos se pueden leer en paralelo.
+     *
+     * @param nombre Nombre del fragmento
+     * @param bytes Bytes del fragmento en disco
+     * @param lineas Lineas de datos leidas
+     * @param nanosegundos Duracion de la lectura
+     */
+    public void registrarFragmento(String nombre, long bytes, long lineas, long nanosegundos) {
+        ContadorEtapa lectura = etapas.get(EtapaProceso.LECTURA);
+        lectura.bytes.add(bytes);
+        lectura.lineas.add(lineas);
+        latencias.registrar(nanosegundos);
+        synchronized (masLentos) {
+            if (masLentos.size() < FRAGMENTOS_DETALLADOS) {
+                masLentos.add(new FragmentoMedido(nombre, bytes, lineas, nanosegundos));
+            } else if (masLentos.peek().nanosegundos < nanosegundos) {
+                masLentos.poll();
+                masLentos.add(new FragmentoMedido(nombre, bytes, lineas, nanosegundos));
+            }
+        }
+    }
+
+    /**
+     * Registra un archivo de salida escrito. Una ruta que se vuelve a
+     * escribir, como el maestro en cada lote de {@code --vigilar}, se guarda
+     * una sola vez.
+     *
+     * @param archivo Archivo escrito
+     */
+    public void registrarSalida(Path archivo) {
+        synchronized (salidas) {
+            if (salidas.size() < SALIDAS_DETALLADAS || salidas.contains(archivo)) {
+                salidas.add(archivo);
+            } else {
+                salidasSinDetallar++;
+            }
+        }
+    }
+
+    /**
+     * Obtiene los archivos de salida escritos hasta ahora.
+     *
+     * @return Copia de las primeras {@value #SALIDAS_DETALLADAS} rutas distintas, en orden de escritura
+     */
+    public List<Path> getSalidas() {
+        synchronized (salidas) {
+            return new ArrayList<>(salidas);
+        }
+    }
+
+    /**
+     * Obtiene lo acumulado de una etapa.
+     *
+     * @param etapa Etapa a consultar
+     * @return Resumen de la etapa en este instante
+     */
+    public ResumenEtapa getResumen(EtapaProceso etapa) {
+        ContadorEtapa contador = etapas.get(etapa);
+        return new ResumenEtapa(etapa, contador.ejecuciones.sum(), contador.nanosegundos.sum(),
+                                contador.bytes.sum(), contador.lineas.sum());
+    }
+
+    /**
+     * Guarda el informe JSON de las metricas.
+     *
+     * @param archivo Archivo de destino
+     * @throws IOException Si no se puede escribir
+     */
+    public void escribirInforme(Path archivo) throws IOException {
+        Path directorio = archivo.toAbsolutePath().getParent();
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            writer.write(generarJson());
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Genera el informe de las metricas en JSON.
+     *
+     * @return Documento JSON con sangria
+     */
+    public String generarJson() {
+        List<FragmentoMedido> lentos = copiarMasLentos();
+        StringBuilder json = new StringBuilder(1024);
+
+        json.append("{\n");
+        json.append("  \"inicio\": ").append(texto(inicio.toString())).append(",\n");
+        json.append("  \"milisegundosTotales\": ").append(getMilisegundosTranscurridos()).append(",\n");
+        json.append("  \"heapPicoBytes\": ").append(getHeapPicoBytes()).append(",\n");
+        json.append("  \"heapMaximoBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+
+        json.append("  \"etapas\": {\n");
+        EtapaProceso[] todas = EtapaProceso.values();
+        for (int i = 0; i < todas.length; i++) {
+            ResumenEtapa resumen = getResumen(todas[i]);
+            json.append("    ").append(texto(todas[i].name().toLowerCase(Locale.ROOT))).append(": {")
+                .append("\"ejecuciones\": ").append(resumen.getEjecuciones())
+                .append(", \"milisegundos\": ").append(decimal(resumen.getMilisegundos()))
+                .append(", \"bytes\": ").append(resumen.getBytes())
+                .append(", \"lineas\": ").append(resumen.getLineas())
+                .append(", \"megabytesPorSegundo\": ").append(decimal(resumen.getMegabytesPorSegundo()))
+                .append(", \"lineasPorSegundo\": ").append(decimal(resumen.getLineasPorSegundo()))
+                .append(i < todas.length - 1 ? "},\n" : "}\n");
+        }
+        json.append("  },\n");
+
+        json.append("  \"fragmentos\": {\n");
+        json.append("    \"leidos\": ").append(getFragmentosLeidos()).append(",\n");
+        json.append("    \"latenciaP50Ms\": ").append(decimal(latencias.percentil(0.50))).append(",\n");
+        json.append("    \"latenciaP95Ms\": ").append(decimal(latencias.percentil(0.95))).append(",\n");
+        json.append("    \"latenciaMaximaMs\": ").append(decimal(latencias.percentil(1.0))).append(",\n");
+        json.append("    \"masLentos\": [");
+        int detallados = lentos.size();
+        for (int i = 0; i < detallados; i++) {
+            FragmentoMedido fragmento = lentos.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                .append("      {\"archivo\": ").append(texto(fragmento.nombre))
+                .append(", \"bytes\": ").append(fragmento.bytes)
+                .append(", \"lineas\": ").append(fragmento.lineas)
+                .append(", \"milisegundos\": ").append(decimal(fragmento.nanosegundos / 1e6))
+                .append("}");
+        }
+        json.append(detallados > 0 ? "\n    ]\n" : "]\n");
+        json.append("  },\n");
+
+        json.append("  \"salidas\": [");
+        List<Path> escritas;
+        long sinDetallar;
+        synchronized (salidas) {
+            escritas = new ArrayList<>(salidas);
+            sinDetallar = salidasSinDetallar;
+        }
+        for (int i = 0; i < escritas.size(); i++) {
+            json.append(i == 0 ? "" : ", ").append(texto(escritas.get(i).toString()));
+        }
+        json.append(sinDetallar > 0 ? "],\n  \"salidasSinDetallar\": " + sinDetallar + "\n" : "]\n");
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * Copia los fragmentos mas lentos, de mayor a menor latencia.
+     */
+    private List<FragmentoMedido> copiarMasLentos() {
+        List<FragmentoMedido> copia;
+        synchronized (masLentos) {
+            copia = new ArrayList<>(masLentos);
+        }
+        copia.sort(Comparator.comparingLong((FragmentoMedido fragmento) -> fragmento.nanosegundos).reversed());
+        return copia;
+    }
+
+    private static String decimal(double valor) {
+        return String.format(Locale.ROOT, "%.3f", valor);
+    }
+
+    /**
+     * Escribe una cadena como texto JSON, escapando comillas, barras y
+     * caracteres de control.
+     */
+    private static String texto(String valor) {
+        StringBuilder resultado = new StringBuilder(valor.length() + 2).append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"' || c == '\\') {
+                resultado.append('\\').append(c);
+            } else if (c < 0x20) {
+                resultado.append(String.format("\\u%04x", (int) c));
+            } else {
+                resultado.append(c);
+            }
+        }
+        return resultado.append('"').toString();
+    }
+
+    @Override
+    public String getEtapaActual() {
+        EtapaProceso etapa = etapaActual;
+        return etapa == null ? "INICIO" : etapa.name();
+    }
+
+    @Override
+    public long getMilisegundosTranscurridos() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos);
+    }
+
+    @Override
+    public long getMilisegundosLectura() { return getResumen(EtapaProceso.LECTURA).getMilisegundosEnteros(); }
+
+    @Override
+    public long getFragmentosLeidos() { return latencias.getTotal(); }
+
+    @Override
+    public long getBytesLeidos() { return etapas.get(EtapaProceso.LECTURA).bytes.sum(); }
+
+    @Override
+    public long getLineasLeidas() { return etapas.get(EtapaProceso.LECTURA).lineas.sum(); }
+
+    @Override
+    public double getLatenciaFragmentoP50Ms() { return latencias.percentil(0.50); }
+
+    @Override
+    public double getLatenciaFragmentoP95Ms() { return latencias.percentil(0.95); }
+
+    @Override
+    public double getLatenciaFragmentoMaximaMs() { return latencias.percentil(1.0); }
+
+    @Override
+    public long getMilisegundosAnalisis() { return getResumen(EtapaProceso.ANALISIS).getMilisegundosEnteros(); }
+
+    @Override
+    public long getLineasAnalizadas() { return etapas.get(EtapaProceso.ANALISIS).lineas.sum(); }
+
+    @Override
+    public long getMilisegundosOrdenamiento() { return getResumen(EtapaProceso.ORDENAMIENTO).getMilisegundosEnteros(); }
+
+    @Override
+    public long getLineasOrdenadas() { return etapas.get(EtapaProceso.ORDENAMIENTO).lineas.sum(); }
+
+    @Override
+    public long getMilisegundosEscritura() { return getResumen(EtapaProceso.ESCRITURA).getMilisegundosEnteros(); }
+
+    @Override
+    public long getBytesEscritos() { return etapas.get(EtapaProceso.ESCRITURA).bytes.sum(); }
+
+    @Override
+    public long getLineasEscritas() { return etapas.get(EtapaProceso.ESCRITURA).lineas.sum(); }
+
+    /**
+     * Suma los picos de uso de las zonas del heap. Cada zona registra su
+     * propio pico, asi que la suma es una cota superior del pico real.
+     */
+    @Override
+    public long getHeapPicoBytes() {
+        long total = 0;
+        for (MemoryPoolMXBean zona : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage pico = zona.getType() == MemoryType.HEAP ? zona.getPeakUsage() : null;
+            if (pico != null) {
+                total += pico.getUsed();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String getInformeJson() {
+        return generarJson();
+    }
+
+    /**
+     * Contadores acumulados de una etapa.
+     */
+    private static class ContadorEtapa {
+        private final LongAdder ejecuciones = new LongAdder();
+        private final LongAdder nanosegundos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder lineas = new LongAdder();
+    }
+
+    /**
+     * Histograma de latencias en memoria fija. Cada potencia de dos de
+     * microsegundos se parte en ocho cubetas, asi que un percentil se informa
+     * con el limite superior de su cubeta, a menos de un 12,5% del valor
+     * real. El maximo se guarda exacto.
+     */
+    private static class HistogramaLatencia {
+        private static final int SUBCUBETAS = 8;
+        private static final int BITS_SUBCUBETA = 3;
+
+        private final AtomicLongArray cubetas = new AtomicLongArray(64 * SUBCUBETAS);
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+        void registrar(long nanosegundos) {
+            cubetas.incrementAndGet(cubeta(Math.max(0, nanosegundos / 1000)));
+            total.increment();
+            maximo.accumulate(nanosegundos);
+        }
+
+        long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * Percentil por rango mas cercano.
+         *
+         * @param fraccion Percentil entre 0 y 1
+         * @return Latencia en milisegundos, o 0 si no hay mediciones
+         */
+        double percentil(double fraccion) {
+            double maximoMs = maximo.get() / 1e6;
+            long[] conteos = new long[cubetas.length()];
+            long cantidad = 0;
+            for (int i = 0; i < conteos.length; i++) {
+                conteos[i] = cubetas.get(i);
+                cantidad += conteos[i];
+            }
+            if (cantidad == 0) {
+                return 0.0;
+            }
+            long rango = Math.max(1, (long) Math.ceil(fraccion * cantidad));
+            long acumulado = 0;
+            for (int i = 0; i < conteos.length; i++) {
+                acumulado += conteos[i];
+                if (acumulado >= rango) {
+                    return Math.min(limiteSuperior(i) / 1000.0, maximoMs);
+                }
+            }
+            return maximoMs;
+        }
+
+        /** Cubeta de una latencia: exacta hasta 7 us, luego ocho por potencia de dos. */
+        private static int cubeta(long micros) {
+            if (micros < SUBCUBETAS) {
+                return (int) micros;
+            }
+            int exponente = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+            return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + sub;
+        }
+
+        /** Mayor latencia en microsegundos que cae en la cubeta. */
+        private static double limiteSuperior(int cubeta) {
+            if (cubeta < SUBCUBETAS) {
+                return cubeta;
+            }
+            int exponente = cubeta / SUBCUBETAS + BITS_SUBCUBETA - 1;
+            int sub = cubeta % SUBCUBETAS;
+            return (SUBCUBETAS + sub + 1) * Math.pow(2, exponente - BITS_SUBCUBETA) - 1;
+        }
+    }
+
+    /**
+     * Lectura medida de un fragmento.
+     */
+    private static class FragmentoMedido {
+        private final String nombre;
+        private final long bytes;
+        private final long lineas;
+        private final long nanosegundos;
+
+        FragmentoMedido(String nombre, long bytes, long lineas, long nanosegundos) {
+            this.nombre = nombre;
+            this.bytes = bytes;
+            this.lineas = lineas;
+            this.nanosegundos = nanosegundos;
+        }
+    }
+
+    /**
+     * Lo acumulado por una etapa en un instante dado.
+     */
+    public static class ResumenEtapa {
+        private final EtapaProceso etapa;
+        private final long ejecuciones;
+        private final long nanosegundos;
+        private final long bytes;
+        private final long lineas;
+
+        public ResumenEtapa(EtapaProceso etapa, long ejecuciones, long nanosegundos, long bytes, long lineas) {
+            this.etapa = etapa;
+            this.ejecuciones = ejecuciones;
+            this.nanosegundos = nanosegundos;
+            this.bytes = bytes;
+            this.lineas = lineas;
+        }
+
+        public EtapaProceso getEtapa() { return etapa; }
+        public long getEjecuciones() { return ejecuciones; }
+        public long getBytes() { return bytes; }
+        public long getLineas() { return lineas; }
+        public double getMilisegundos() { return nanosegundos / 1e6; }
+        public long getMilisegundosEnteros() { return TimeUnit.NANOSECONDS.toMillis(nanosegundos); }
+
+        /**
+         * @return Megabytes (de 1024 * 1024 bytes) por segundo, o 0 sin bytes o sin tiempo
+         */
+        public double getMegabytesPorSegundo() {
+            return nanosegundos > 0 ? bytes / (1024.0 * 1024.0) / (nanosegundos / 1e9) : 0.0;
+        }
+
+        /**
+         * @return Lineas por segundo, o 0 sin tiempo medido
+         */
+        public double getLineasPorSegundo() {
+            return nanosegundos > 0 ? lineas / (nanosegundos / 1e9) : 0.0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package archivosfragmentados.monitoreo;
+
+/**
+ * Atributos de {@link MetricasProceso} publicados por JMX. Se pueden
+ * consultar con JConsole o VisualVM mientras el programa se ejecuta.
+ */
+public interface MetricasProcesoMBean {
+
+    /** Ultima etapa iniciada, o INICIO si aun no empezo ninguna. */
+    String getEtapaActual();
+
+    long getMilisegundosTranscurridos();
+
+    long getMilisegundosLectura();
+
+    long getFragmentosLeidos();
+
+    long getBytesLeidos();
+
+    long getLineasLeidas();
+
+    /** Latencia mediana de lectura de un fragmento. */
+    double getLatenciaFragmentoP50Ms();
+
+    double getLatenciaFragmentoP95Ms();
+
+    double getLatenciaFragmentoMaximaMs();
+
+    long getMilisegundosAnalisis();
+
+    long getLineasAnalizadas();
+
+    long getMilisegundosOrdenamiento();
+
+    long getLineasOrdenadas();
+
+    long getMilisegundosEscritura();
+
+    long getBytesEscritos();
+
+    long getLineasEscritas();
+
+    /** Suma de los picos de uso de las zonas del heap desde el inicio. */
+    long getHeapPicoBytes();
+
+    /** Las mismas metricas que el informe final, en JSON. */
+    String getInformeJson();
+}
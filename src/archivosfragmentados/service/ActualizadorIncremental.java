@@ -0,0 +1,283 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.model.ConfiguracionProceso.ModoProcesamiento;
+import archivosfragmentados.monitoreo.EtapaProceso;
+import archivosfragmentados.monitoreo.MedicionEtapa;
+import archivosfragmentados.monitoreo.MetricasProceso;
+import archivosfragmentados.service.ManifiestoFragmentos.EstadoFragmento;
+import archivosfragmentados.service.ManifiestoFragmentos.RegistroFragmento;
+import archivosfragmentados.util.ArchivosGzip;
+import archivosfragmentados.util.Registro;
+import archivosfragmentados.util.SalidaAsincrona;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Actualiza un archivo maestro ya reconstruido leyendo solo los fragmentos
+ * nuevos. Las lineas nuevas se deduplican, se ordenan y se fusionan con el
+ * maestro existente, que ya esta ordenado y sin duplicados.
+ *
+ * <p>Si algun fragmento registrado cambio de contenido o desaparecio, sus
+ * lineas anteriores podrian seguir en el maestro, por lo que se hace una
+ * reconstruccion completa.</p>
+ *
+ * <p>Con {@code --comprimir} el maestro es un archivo gzip: se descomprime en
+ * flujo durante la fusion y el resultado se vuelve a comprimir.</p>
+ */
+public class ActualizadorIncremental {
+
+    private final ConfiguracionProceso configuracion;
+    private final EscritorArchivos escritor;
+
+    public ActualizadorIncremental(ConfiguracionProceso configuracion) {
+        this.configuracion = configuracion;
+        this.escritor = new EscritorArchivos(configuracion);
+    }
+
+    /**
+     * Actualiza el archivo de salida con los fragmentos indicados.
+     *
+     * @param fragmentos Fragmentos que forman el maestro, en orden
+     * @param archivoSalida Archivo maestro a crear o actualizar; con compresion se le agrega .gz
+     * @return Resumen de lo procesado
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    public ResumenActualizacion actualizar(List<Path> fragmentos, Path archivoSalida) throws IOException {
+        archivoSalida = escritor.ajustarNombre(archivoSalida);
+        ManifiestoFragmentos manifiesto = ManifiestoFragmentos.cargar(archivoSalida);
+
+        if (!Files.exists(archivoSalida) || manifiesto.estaVacio()) {
+            Registro.normal("Sin manifiesto previo: reconstruccion completa.");
+            return reconstruirCompleto(fragmentos, archivoSalida, manifiesto);
+        }
+
+        List<String> ausentes = manifiesto.obtenerAusentes(fragmentos);
+        if (!ausentes.isEmpty()) {
+            Registro.normal("Fragmentos registrados que ya no estan (" + ausentes.size()
+                    + "): reconstruccion completa.");
+            return reconstruirCompleto(fragmentos, archivoSalida, manifiesto);
+        }
+
+        List<Path> nuevos = new ArrayList<>();
+        for (Path fragmento : fragmentos) {
+            EstadoFragmento estado = manifiesto.clasificar(fragmento);
+            if (estado == EstadoFragmento.MODIFICADO) {
+                Registro.normal("Fragmento modificado " + fragmento.getFileName()
+                        + ": reconstruccion completa.");
+                return reconstruirCompleto(fragmentos, archivoSalida, manifiesto);
+            }
+            if (estado == EstadoFragmento.NUEVO) {
+                nuevos.add(fragmento);
+            }
+        }
+
+        Registro.formatoNormal("Fragmentos sin cambios: %d, nuevos: %d%n", fragmentos.size() - nuevos.size(), nuevos.size());
+
+        if (nuevos.isEmpty()) {
+            manifiesto.guardar();
+            return new ResumenActualizacion(false, 0, fragmentos.size(), null, contarLineasDatos(archivoSalida));
+        }
+
+        return fusionarNuevos(nuevos, fragmentos.size() - nuevos.size(), archivoSalida, manifiesto);
+    }
+
+    /**
+     * Reconstruye el maestro desde cero y registra todos los fragmentos.
+     */
+    private ResumenActualizacion reconstruirCompleto(List<Path> fragmentos, Path archivoSalida,
+                                                     ManifiestoFragmentos manifiesto) throws IOException {
+        LectorArchivos lector = new LectorArchivos(configuracion);
+        lector.activarHashes();
+        List<RegistroFragmento> observados = observar(fragmentos);
+        AnalizadorDatos.ResultadoAnalisis resultado;
+
+        // El escritor reemplaza el maestro de forma atomica al terminar.
+        if (configuracion.getModo() == ModoProcesamiento.EXTERNO) {
+            try (OrdenadorExterno ordenador = new OrdenadorExterno(configuracion.getPresupuestoMemoria(),
+                                                                   configuracion.getDirectorioTemporal())) {
+                lector.leerArchivosEnFlujo(fragmentos, ordenador);
+                escribir(escritor, archivoSalida, lector.getCabeceraDetectada(), ordenador.fusionar());
+                resultado = ordenador.obtenerResultado();
+            }
+        } else {
+            AnalizadorDatos.AcumuladorDuplicados acumulador = new AnalizadorDatos(configuracion).crearAcumulador();
+            lector.leerArchivosEnFlujo(fragmentos, acumulador);
+            resultado = acumulador.obtenerResultado();
+            escribir(escritor, archivoSalida, lector.getCabeceraDetectada(), resultado.getDatosSinDuplicados());
+        }
+
+        manifiesto.limpiar();
+        registrar(manifiesto, fragmentos, observados, lector);
+        manifiesto.guardar();
+
+        return new ResumenActualizacion(true, fragmentos.size(), 0, resultado, resultado.getTotalSinDuplicados());
+    }
+
+    /**
+     * Lee solo los fragmentos nuevos y fusiona sus lineas unicas con el maestro.
+     */
+    private ResumenActualizacion fusionarNuevos(List<Path> nuevos, int omitidos, Path archivoSalida,
+                                                ManifiestoFragmentos manifiesto) throws IOException {
+        LectorArchivos lector = new LectorArchivos(configuracion);
+        lector.activarHashes();
+        List<RegistroFragmento> observados = observar(nuevos);
+        AnalizadorDatos.AcumuladorDuplicados acumulador = new AnalizadorDatos(configuracion).crearAcumulador();
+        lector.leerArchivosEnFlujo(nuevos, acumulador);
+
+        AnalizadorDatos.ResultadoAnalisis resultado = acumulador.obtenerResultado();
+        String cabecera = lector.getCabeceraDetectada();
+        Path temporal = EscritorArchivos.crearTemporal(archivoSalida);
+        long lineasFinales = 0;
+        long yaExistentes = 0;
+        MetricasProceso metricas = MetricasProceso.getInstancia();
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.ESCRITURA);
+        long bytesEscritos;
+
+        try {
+            try (BufferedReader maestro = ArchivosGzip.abrirLector(archivoSalida, configuracion.getBufferGzip());
+                 SalidaAsincrona salida = escritor.abrirSalida(temporal)) {
+                // Un maestro con contenido siempre empieza con la cabecera: la
+                // reconstruccion completa la escribe apenas algun fragmento
+                // tiene lineas. Se conserva aunque los fragmentos nuevos
+                // traigan otra.
+                String actual = maestro.readLine();
+                if (actual != null) {
+                    salida.escribirLinea(actual);
+                    actual = maestro.readLine();
+                } else if (cabecera != null) {
+                    salida.escribirLinea(cabecera);
+                }
+
+                Iterator<String> iteradorNuevas = resultado.getDatosSinDuplicados().iterator();
+                String nueva = iteradorNuevas.hasNext() ? iteradorNuevas.next() : null;
+
+                while (actual != null || nueva != null) {
+                    int comparacion = actual == null ? 1 : nueva == null ? -1 : actual.compareTo(nueva);
+                    String siguiente;
+                    if (comparacion <= 0) {
+                        siguiente = actual;
+                        actual = maestro.readLine();
+                        if (comparacion == 0) {
+                            yaExistentes++;
+                            nueva = iteradorNuevas.hasNext() ? iteradorNuevas.next() : null;
+                        }
+                    } else {
+                        siguiente = nueva;
+                        nueva = iteradorNuevas.hasNext() ? iteradorNuevas.next() : null;
+                    }
+                    salida.escribirLinea(siguiente);
+                    lineasFinales++;
+                }
+                bytesEscritos = salida.getBytesEscritos();
+            }
+            EscritorArchivos.reemplazar(temporal, archivoSalida);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        metricas.finalizarEtapa(medicion, bytesEscritos, lineasFinales);
+        metricas.registrarSalida(archivoSalida);
+
+        Registro.formatoNormal("Lineas nuevas ya presentes en el maestro: %d%n", yaExistentes);
+
+        registrar(manifiesto, nuevos, observados, lector);
+        manifiesto.guardar();
+
+        return new ResumenActualizacion(false, nuevos.size(), omitidos, resultado, lineasFinales, yaExistentes);
+    }
+
+    /**
+     * Toma tamano y fecha de los fragmentos antes de leerlos.
+     */
+    private static List<RegistroFragmento> observar(List<Path> fragmentos) throws IOException {
+        List<RegistroFragmento> observados = new ArrayList<>(fragmentos.size());
+        for (Path fragmento : fragmentos) {
+            observados.add(ManifiestoFragmentos.observar(fragmento));
+        }
+        return observados;
+    }
+
+    /**
+     * Registra los fragmentos leidos con lo observado antes de leerlos y el
+     * hash calculado durante la lectura. Los que el lector omitio por su
+     * nombre no se leyeron, y su hash se calcula aparte.
+     */
+    private static void registrar(ManifiestoFragmentos manifiesto, List<Path> fragmentos,
+                                  List<RegistroFragmento> observados, LectorArchivos lector) throws IOException {
+        for (int i = 0; i < fragmentos.size(); i++) {
+            String hash = lector.getHashLeido(fragmentos.get(i));
+            if (hash == null) {
+                hash = ManifiestoFragmentos.calcularHash(fragmentos.get(i));
+            }
+            manifiesto.registrar(observados.get(i), hash);
+        }
+    }
+
+    private static void escribir(EscritorArchivos escritor, Path archivo, String cabecera,
+                                 Iterable<String> lineas) throws IOException {
+        try {
+            escritor.escribirArchivo(archivo, cabecera, lineas);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Cuenta las lineas de datos (sin cabecera) de un maestro existente.
+     */
+    private static long contarLineasDatos(Path archivo) throws IOException {
+        try (BufferedReader reader = ArchivosGzip.abrirLector(archivo, ArchivosGzip.TAMANO_BUFFER_DEFECTO)) {
+            long lineas = 0;
+            while (reader.readLine() != null) {
+                lineas++;
+            }
+            return Math.max(0, lineas - 1);
+        }
+    }
+
+    /**
+     * Resumen de una actualizacion incremental.
+     */
+    public static class ResumenActualizacion {
+        private final boolean reconstruccionCompleta;
+        private final int fragmentosLeidos;
+        private final int fragmentosOmitidos;
+        private final AnalizadorDatos.ResultadoAnalisis resultado;
+        private final long lineasFinales;
+        private final long lineasYaExistentes;
+
+        public ResumenActualizacion(boolean reconstruccionCompleta, int fragmentosLeidos, int fragmentosOmitidos,
+                                    AnalizadorDatos.ResultadoAnalisis resultado, long lineasFinales) {
+            this(reconstruccionCompleta, fragmentosLeidos, fragmentosOmitidos, resultado, lineasFinales, 0);
+        }
+
+        public ResumenActualizacion(boolean reconstruccionCompleta, int fragmentosLeidos, int fragmentosOmitidos,
+                                    AnalizadorDatos.ResultadoAnalisis resultado, long lineasFinales,
+                                    long lineasYaExistentes) {
+            this.reconstruccionCompleta = reconstruccionCompleta;
+            this.fragmentosLeidos = fragmentosLeidos;
+            this.fragmentosOmitidos = fragmentosOmitidos;
+            this.resultado = resultado;
+            this.lineasFinales = lineasFinales;
+            this.lineasYaExistentes = lineasYaExistentes;
+        }
+
+        public boolean isReconstruccionCompleta() { return reconstruccionCompleta; }
+        public int getFragmentosLeidos() { return fragmentosLeidos; }
+        public int getFragmentosOmitidos() { return fragmentosOmitidos; }
+        /** Analisis de las lineas leidas en esta ejecucion, o null si no se leyo nada. */
+        public AnalizadorDatos.ResultadoAnalisis getResultado() { return resultado; }
+        public long getLineasFinales() { return lineasFinales; }
+        public long getLineasYaExistentes() { return lineasYaExistentes; }
+        public long getLineasLeidas() { return resultado == null ? 0 : resultado.getTotalLineas(); }
+        public long getDuplicadosEliminados() {
+            return resultado == null ? 0 : resultado.getTotalDuplicados() + lineasYaExistentes;
+        }
+    }
+}
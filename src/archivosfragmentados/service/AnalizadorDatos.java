@@ -1,28 +1,80 @@
 package archivosfragmentados.service;
 
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.model.ConfiguracionProceso.ModoDeduplicacion;
+import archivosfragmentados.model.ConfiguracionProceso.ModoOrden;
 import archivosfragmentados.model.Entidad;
+import archivosfragmentados.monitoreo.EtapaProceso;
+import archivosfragmentados.monitoreo.MedicionEtapa;
+import archivosfragmentados.monitoreo.MetricasProceso;
+import archivosfragmentados.util.OrdenadorParalelo;
+import archivosfragmentados.util.OrdenadorRadix;
+import archivosfragmentados.util.Registro;
+import archivosfragmentados.util.TablaClaves;
+import archivosfragmentados.util.TablaHuellas;
+import archivosfragmentados.util.TokenizadorCSV;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Servicio especializado en analisis y procesamiento de datos.
  */
 public class AnalizadorDatos {
     
+    /** Cantidad de duplicados que se muestran al usuario en el analisis. */
+    public static final int MUESTRA_DUPLICADOS = 10;
+    
+    private final ModoDeduplicacion modoDeduplicacion;
+    private final ModoOrden modoOrden;
+    private final List<String> columnasClave;
+    private final boolean conservarUltima;
+    private final int paralelismo;
+    private final MetricasProceso metricas = MetricasProceso.getInstancia();
+    
+    public AnalizadorDatos() {
+        this(new ConfiguracionProceso());
+    }
+    
+    public AnalizadorDatos(ConfiguracionProceso configuracion) {
+        this.modoDeduplicacion = configuracion.getModoDeduplicacion();
+        this.modoOrden = configuracion.getModoOrden();
+        this.columnasClave = configuracion.getColumnasClave();
+        this.conservarUltima = configuracion.isConservarUltima();
+        this.paralelismo = configuracion.getParalelismo();
+    }
+    
+    /**
+     * Indica si las lineas unicas se obtienen fusionando los fragmentos ya
+     * ordenados de las entidades. Requiere que las entidades guarden sus lineas.
+     * 
+     * @return true si el orden configurado es la fusion y no hay columnas clave
+     */
+    public boolean usaFusionDeFragmentos() {
+        return modoOrden == ModoOrden.FUSION && !usaColumnasClave();
+    }
+    
     /**
-     * Unifica todos los datos de las entidades en una sola lista.
+     * Indica si los duplicados se detectan por columnas clave en lugar de por
+     * linea completa.
      * 
-     * @param entidades Mapa de entidades
-     * @return Lista unificada de datos
+     * @return true si se configuraron columnas clave
      */
-    public List<String> unificarDatos(Map<String, Entidad> entidades) {
-        return entidades.values().stream()
-                .flatMap(entidad -> entidad.getLineasDatos().stream())
-                .collect(Collectors.toList());
+    public boolean usaColumnasClave() {
+        return !columnasClave.isEmpty();
     }
     
     /**
@@ -32,27 +84,657 @@ public class AnalizadorDatos {
      * @return Resultado del analisis con datos procesados y ordenados
      */
     public ResultadoAnalisis analizarYEliminarDuplicados(List<String> datos) {
-        Map<String, Integer> conteoLineas = new LinkedHashMap<>();
-        List<String> duplicados = new ArrayList<>();
+        return medirAnalisis(() -> analizarLista(datos));
+    }
+    
+    /**
+     * Cuerpo de {@link #analizarYEliminarDuplicados(List)}.
+     */
+    private ResultadoAnalisis analizarLista(List<String> datos) {
+        if (modoDeduplicacion == ModoDeduplicacion.HUELLAS) {
+            AcumuladorDuplicados acumulador = crearAcumulador();
+            for (String linea : datos) {
+                acumulador.agregar(linea);
+            }
+            return acumulador.obtenerResultado();
+        }
+        if (modoOrden == ModoOrden.PARALELO) {
+            return analizarEnParalelo(datos.toArray(new String[0]));
+        }
         
+        // Una sola pasada: el conteo, los duplicados y las lineas unicas se
+        // obtienen a la vez y las unicas se ordenan sin copiarlas de nuevo.
+        AcumuladorDuplicados acumulador = new AcumuladorExacto(this::ordenar, datos.size());
         for (String linea : datos) {
-            if (!linea.trim().isEmpty()) {
-                int count = conteoLineas.getOrDefault(linea, 0) + 1;
-                conteoLineas.put(linea, count);
-                
-                if (count == 2) {
-                    duplicados.add(linea);
+            acumulador.agregar(linea);
+        }
+        return acumulador.obtenerResultado();
+    }
+    
+    /**
+     * Version paralela de {@link #analizarYEliminarDuplicados(List)} con el
+     * mismo resultado. Las lineas se reparten por hash en particiones que
+     * conservan el orden de entrada; cada particion se deduplica en su propio
+     * hilo y las lineas unicas se ordenan con un ordenamiento paralelo. Los
+     * duplicados se reordenan por la posicion de su segunda aparicion, igual
+     * que en el recorrido secuencial.
+     * 
+     * @param lineas Lineas originales en orden de lectura
+     * @return Resultado del analisis con datos procesados y ordenados
+     */
+    private ResultadoAnalisis analizarEnParalelo(String[] lineas) {
+        int particiones = paralelismo * 2;
+        int[] particionDeLinea = new int[lineas.length];
+        ForkJoinPool grupo = new ForkJoinPool(paralelismo);
+        
+        try {
+            OrdenadorParalelo.ejecutar(grupo, () -> IntStream.range(0, lineas.length).parallel().forEach(i -> {
+                String linea = lineas[i];
+                particionDeLinea[i] = esLineaVacia(linea) ? -1 : Math.floorMod(mezclar(linea.hashCode()), particiones);
+            }));
+            
+            // Indices agrupados por particion, cada grupo en orden de entrada.
+            int[] inicios = new int[particiones + 1];
+            for (int particion : particionDeLinea) {
+                if (particion >= 0) {
+                    inicios[particion + 1]++;
+                }
+            }
+            for (int p = 0; p < particiones; p++) {
+                inicios[p + 1] += inicios[p];
+            }
+            int[] indices = new int[inicios[particiones]];
+            int[] siguiente = Arrays.copyOf(inicios, particiones);
+            for (int i = 0; i < lineas.length; i++) {
+                if (particionDeLinea[i] >= 0) {
+                    indices[siguiente[particionDeLinea[i]]++] = i;
+                }
+            }
+            
+            List<Callable<ParticionAnalizada>> tareas = new ArrayList<>();
+            for (int p = 0; p < particiones; p++) {
+                int desde = inicios[p];
+                int hasta = inicios[p + 1];
+                tareas.add(() -> new ParticionAnalizada(lineas, indices, desde, hasta));
+            }
+            
+            List<ParticionAnalizada> analizadas = new ArrayList<>();
+            for (Future<ParticionAnalizada> futuro : grupo.invokeAll(tareas)) {
+                analizadas.add(futuro.get());
+            }
+            
+            int totalUnicas = 0;
+            int totalDuplicadas = 0;
+            for (ParticionAnalizada particion : analizadas) {
+                totalUnicas += particion.unicas.size();
+                totalDuplicadas += particion.cantidadDuplicadas;
+            }
+            
+            String[] unicas = new String[totalUnicas];
+            int[] segundasApariciones = new int[totalDuplicadas];
+            int posicionUnica = 0;
+            int posicionDuplicada = 0;
+            for (ParticionAnalizada particion : analizadas) {
+                for (String linea : particion.unicas) {
+                    unicas[posicionUnica++] = linea;
                 }
+                System.arraycopy(particion.segundasApariciones, 0, segundasApariciones, posicionDuplicada,
+                                 particion.cantidadDuplicadas);
+                posicionDuplicada += particion.cantidadDuplicadas;
             }
+            
+            MedicionEtapa medicionOrden = metricas.iniciarEtapa(EtapaProceso.ORDENAMIENTO);
+            OrdenadorParalelo.ordenar(unicas, grupo);
+            metricas.finalizarEtapa(medicionOrden, 0, unicas.length);
+            Arrays.sort(segundasApariciones);
+            
+            List<String> duplicados = new ArrayList<>(totalDuplicadas);
+            Map<String, Integer> conteoDuplicados = new LinkedHashMap<>();
+            for (int indice : segundasApariciones) {
+                String linea = lineas[indice];
+                duplicados.add(linea);
+                conteoDuplicados.put(linea, analizadas.get(particionDeLinea[indice]).conteo.get(linea));
+            }
+            
+            return new ResultadoAnalisis(Arrays.asList(unicas), duplicados, conteoDuplicados,
+                                         indices.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Analisis paralelo interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error en el analisis paralelo: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            grupo.shutdown();
         }
+    }
+    
+    /**
+     * Mezcla los bits del hash para repartir bien las lineas entre particiones.
+     */
+    private static int mezclar(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Conteo de una particion del analisis paralelo.
+     */
+    private static class ParticionAnalizada {
+        private final Map<String, Integer> conteo;
+        private final List<String> unicas = new ArrayList<>();
+        private int[] segundasApariciones = new int[16];
+        private int cantidadDuplicadas = 0;
         
-        List<String> datosSinDuplicados = datos.stream()
-                .filter(linea -> !linea.trim().isEmpty())
-                .distinct()
-                .sorted() 
-                .collect(Collectors.toCollection(ArrayList::new));
+        ParticionAnalizada(String[] lineas, int[] indices, int desde, int hasta) {
+            conteo = new HashMap<>(Math.max(16, (int) ((hasta - desde) / 0.75f) + 1));
+            for (int k = desde; k < hasta; k++) {
+                int indice = indices[k];
+                String linea = lineas[indice];
+                int veces = conteo.merge(linea, 1, Integer::sum);
+                if (veces == 1) {
+                    unicas.add(linea);
+                } else if (veces == 2) {
+                    if (cantidadDuplicadas == segundasApariciones.length) {
+                        segundasApariciones = Arrays.copyOf(segundasApariciones, cantidadDuplicadas * 2);
+                    }
+                    segundasApariciones[cantidadDuplicadas++] = indice;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Analiza los duplicados recorriendo directamente las lineas de cada
+     * entidad, sin unificarlas antes en una lista.
+     * 
+     * @param entidades Mapa de entidades con sus lineas almacenadas
+     * @return Resultado del analisis con datos procesados y ordenados
+     */
+    public ResultadoAnalisis analizarEntidades(Map<String, Entidad> entidades) {
+        return analizarEntidades(entidades, null);
+    }
+    
+    /**
+     * Igual que {@link #analizarEntidades(Map)}, con la cabecera necesaria
+     * para ubicar las columnas clave.
+     * 
+     * @param entidades Mapa de entidades con sus lineas almacenadas
+     * @param cabecera Cabecera de los datos o null si no hay
+     * @return Resultado del analisis con datos procesados y ordenados
+     */
+    public ResultadoAnalisis analizarEntidades(Map<String, Entidad> entidades, String cabecera) {
+        return medirAnalisis(() -> analizarTodas(entidades, cabecera));
+    }
+    
+    /**
+     * Cuerpo de {@link #analizarEntidades(Map, String)}.
+     */
+    private ResultadoAnalisis analizarTodas(Map<String, Entidad> entidades, String cabecera) {
+        if (usaFusionDeFragmentos()) {
+            return fusionarFragmentos(entidades.values());
+        }
+        if (usaAnalisisParalelo()) {
+            String[] lineas = new String[contarLineas(entidades.values())];
+            int[] posicion = {0};
+            for (Entidad entidad : entidades.values()) {
+                entidad.recorrerLineas(linea -> lineas[posicion[0]++] = linea);
+            }
+            return analizarEnParalelo(lineas);
+        }
+        AcumuladorDuplicados acumulador = crearAcumulador(() -> cabecera, contarLineas(entidades.values()));
+        for (Entidad entidad : entidades.values()) {
+            entidad.recorrerLineas(acumulador::agregar);
+        }
+        return acumulador.obtenerResultado();
+    }
+    
+    /**
+     * Analiza los duplicados de una sola entidad. Cada llamada usa su propio
+     * acumulador, por lo que varias entidades se pueden analizar en paralelo.
+     * 
+     * @param entidad Entidad con sus lineas almacenadas
+     * @param cabecera Cabecera de la entidad o null si no hay
+     * @return Resultado del analisis de la entidad, ordenado
+     */
+    public ResultadoAnalisis analizarEntidad(Entidad entidad, String cabecera) {
+        return medirAnalisis(() -> {
+            if (usaFusionDeFragmentos()) {
+                return fusionarFragmentos(List.of(entidad));
+            }
+            AcumuladorDuplicados acumulador = crearAcumulador(() -> cabecera, entidad.getCantidadLineas());
+            entidad.recorrerLineas(acumulador::agregar);
+            return acumulador.obtenerResultado();
+        });
+    }
+    
+    /**
+     * Ejecuta un analisis registrando su duracion y sus lineas en la etapa
+     * de analisis de las metricas del proceso.
+     * 
+     * @param analisis Analisis a ejecutar
+     * @return Resultado del analisis
+     */
+    private ResultadoAnalisis medirAnalisis(Supplier<ResultadoAnalisis> analisis) {
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.ANALISIS);
+        ResultadoAnalisis resultado = analisis.get();
+        metricas.finalizarEtapa(medicion, 0, resultado.getTotalLineas());
+        return resultado;
+    }
+    
+    /**
+     * Crea un acumulador que analiza duplicados a medida que llegan las lineas,
+     * sin necesitar la lista completa de datos.
+     * 
+     * @return Acumulador vacio segun el modo de deduplicacion configurado
+     */
+    public AcumuladorDuplicados crearAcumulador() {
+        if (modoDeduplicacion == ModoDeduplicacion.HUELLAS) {
+            return new AcumuladorHuellas(this::ordenar);
+        }
+        return new AcumuladorExacto(this::ordenar, 0);
+    }
+    
+    /**
+     * Crea un acumulador que, si hay columnas clave configuradas, detecta los
+     * duplicados por esas columnas. La cabecera se consulta con la primera
+     * linea, cuando el lector ya la detecto.
+     * 
+     * @param proveedorCabecera Entrega la cabecera de los datos
+     * @return Acumulador vacio
+     */
+    public AcumuladorDuplicados crearAcumulador(Supplier<String> proveedorCabecera) {
+        return crearAcumulador(proveedorCabecera, 0);
+    }
+    
+    /**
+     * Igual que {@link #crearAcumulador(Supplier)}, pero cuando ya se sabe
+     * cuantas lineas llegaran el mapa de conteo se crea con esa capacidad y
+     * no se redimensiona durante el recorrido.
+     * 
+     * @param proveedorCabecera Entrega la cabecera de los datos
+     * @param lineasEsperadas Cantidad de lineas que se agregaran, 0 si no se sabe
+     * @return Acumulador vacio
+     */
+    private AcumuladorDuplicados crearAcumulador(Supplier<String> proveedorCabecera, int lineasEsperadas) {
+        if (usaColumnasClave()) {
+            return new AcumuladorClaves(columnasClave, conservarUltima, proveedorCabecera, this::ordenar);
+        }
+        if (modoDeduplicacion == ModoDeduplicacion.HUELLAS) {
+            return new AcumuladorHuellas(this::ordenar);
+        }
+        return new AcumuladorExacto(this::ordenar, lineasEsperadas);
+    }
+    
+    /**
+     * Indica si la deduplicacion exacta se reparte en particiones paralelas.
+     */
+    private boolean usaAnalisisParalelo() {
+        return modoOrden == ModoOrden.PARALELO && modoDeduplicacion != ModoDeduplicacion.HUELLAS
+                && !usaColumnasClave();
+    }
+    
+    private static int contarLineas(Collection<Entidad> entidades) {
+        long total = 0;
+        for (Entidad entidad : entidades) {
+            total += entidad.getCantidadLineas();
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Indica si la linea esta vacia o solo tiene espacios, con el mismo
+     * criterio que {@code trim()} pero sin crear una cadena nueva.
+     */
+    private static boolean esLineaVacia(String linea) {
+        for (int i = 0; i < linea.length(); i++) {
+            if (linea.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Obtiene las lineas unicas ordenadas con una fusion de k vias de los
+     * fragmentos que se leyeron ya ordenados. Las lineas de los fragmentos
+     * desordenados se ordenan juntas como una secuencia mas. Como las lineas
+     * iguales salen seguidas, los duplicados se cuentan durante la fusion.
+     * 
+     * @param entidades Entidades con sus lineas y fragmentos registrados
+     * @return Resultado del analisis con datos procesados y ordenados
+     */
+    private ResultadoAnalisis fusionarFragmentos(Collection<Entidad> entidades) {
+        List<List<String>> secuencias = new ArrayList<>();
+        List<String> desordenadas = new ArrayList<>();
+        int fragmentosDesordenados = 0;
+        
+        for (Entidad entidad : entidades) {
+            if (entidad.getCantidadFragmentos() == 0) {
+                desordenadas.addAll(entidad.getVistaLineas());
+                continue;
+            }
+            for (int i = 0; i < entidad.getCantidadFragmentos(); i++) {
+                List<String> lineas = entidad.getLineasFragmento(i);
+                if (lineas.isEmpty()) {
+                    continue;
+                }
+                if (entidad.isFragmentoOrdenado(i)) {
+                    secuencias.add(lineas);
+                } else {
+                    desordenadas.addAll(lineas);
+                    fragmentosDesordenados++;
+                }
+            }
+        }
+        
+        Registro.formatoNormal("Fusion de %d fragmentos ordenados (%d desordenados ordenados aparte)%n",
+                secuencias.size(), fragmentosDesordenados);
+        
+        if (!desordenadas.isEmpty()) {
+            Collections.sort(desordenadas);
+            secuencias.add(desordenadas);
+        }
+        
+        PriorityQueue<CursorSecuencia> cola = new PriorityQueue<>(Math.max(1, secuencias.size()));
+        long totalLineas = 0;
+        for (List<String> secuencia : secuencias) {
+            cola.add(new CursorSecuencia(secuencia));
+            totalLineas += secuencia.size();
+        }
+        
+        List<String> datosSinDuplicados = new ArrayList<>();
+        List<String> duplicados = new ArrayList<>();
+        Map<String, Integer> conteoDuplicados = new LinkedHashMap<>();
+        String ultima = null;
+        int conteo = 0;
+        
+        while (!cola.isEmpty()) {
+            CursorSecuencia cursor = cola.poll();
+            String linea = cursor.actual;
+            if (cursor.avanzar()) {
+                cola.add(cursor);
+            }
+            
+            if (linea.equals(ultima)) {
+                if (++conteo == 2) {
+                    duplicados.add(ultima);
+                }
+                continue;
+            }
+            if (conteo >= 2) {
+                conteoDuplicados.put(ultima, conteo);
+            }
+            datosSinDuplicados.add(linea);
+            ultima = linea;
+            conteo = 1;
+        }
+        if (conteo >= 2) {
+            conteoDuplicados.put(ultima, conteo);
+        }
+        
+        return new ResultadoAnalisis(datosSinDuplicados, duplicados, conteoDuplicados, totalLineas);
+    }
+    
+    /**
+     * Posicion de lectura dentro de una secuencia ordenada durante la fusion.
+     */
+    private static class CursorSecuencia implements Comparable<CursorSecuencia> {
+        private final List<String> lineas;
+        private int posicion = 0;
+        private String actual;
         
-        return new ResultadoAnalisis(datosSinDuplicados, duplicados, conteoLineas);
+        CursorSecuencia(List<String> lineas) {
+            this.lineas = lineas;
+            this.actual = lineas.get(0);
+        }
+        
+        boolean avanzar() {
+            if (++posicion >= lineas.size()) {
+                return false;
+            }
+            actual = lineas.get(posicion);
+            return true;
+        }
+        
+        @Override
+        public int compareTo(CursorSecuencia otro) {
+            return actual.compareTo(otro.actual);
+        }
+    }
+    
+    /**
+     * Obtiene los indices de las columnas clave. Cada nombre se busca en la
+     * cabecera sin distinguir mayusculas; si no esta y es un numero, se toma
+     * como posicion empezando en 1.
+     * 
+     * @param nombres Nombres o posiciones de las columnas
+     * @param cabecera Cabecera de los datos o null si no hay
+     * @return Indices de las columnas, empezando en 0
+     * @throws IllegalStateException Si alguna columna no existe
+     */
+    static int[] resolverColumnas(List<String> nombres, String cabecera) {
+        TokenizadorCSV tokenizador = new TokenizadorCSV();
+        int campos = cabecera == null ? 0 : tokenizador.dividir(cabecera);
+        int[] columnas = new int[nombres.size()];
+        
+        for (int i = 0; i < nombres.size(); i++) {
+            String nombre = nombres.get(i);
+            columnas[i] = -1;
+            for (int campo = 0; campo < campos; campo++) {
+                if (tokenizador.obtenerCampo(cabecera, campo).equalsIgnoreCase(nombre)) {
+                    columnas[i] = campo;
+                    break;
+                }
+            }
+            if (columnas[i] < 0) {
+                try {
+                    columnas[i] = Integer.parseInt(nombre) - 1;
+                } catch (NumberFormatException e) {
+                    // Se informa abajo.
+                }
+            }
+            if (columnas[i] < 0) {
+                throw new IllegalStateException("Columna clave no encontrada en la cabecera: " + nombre);
+            }
+        }
+        
+        return columnas;
+    }
+    
+    /**
+     * Ordena en el lugar las lineas unicas con el algoritmo configurado.
+     * 
+     * @param lineas Lineas a ordenar
+     */
+    private void ordenar(List<String> lineas) {
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.ORDENAMIENTO);
+        if (modoOrden == ModoOrden.RADIX) {
+            new OrdenadorRadix().ordenar(lineas);
+        } else if (modoOrden == ModoOrden.PARALELO) {
+            new OrdenadorParalelo(paralelismo).ordenar(lineas);
+        } else {
+            Collections.sort(lineas);
+        }
+        metricas.finalizarEtapa(medicion, 0, lineas.size());
+    }
+    
+    /**
+     * Analisis incremental de duplicados. Solo conserva una entrada por linea
+     * distinta, por lo que la memoria depende de las lineas unicas y no del
+     * tamano total de la entrada.
+     */
+    public interface AcumuladorDuplicados extends ConsumidorLineas {
+        
+        @Override
+        default void aceptar(String nombreEntidad, String linea) {
+            agregar(linea);
+        }
+        
+        /**
+         * Registra una linea de datos.
+         * 
+         * @param linea Linea a registrar
+         */
+        void agregar(String linea);
+        
+        /**
+         * Ordena las lineas unicas y construye el resultado del analisis.
+         * 
+         * @return Resultado con los datos sin duplicados ordenados
+         */
+        ResultadoAnalisis obtenerResultado();
+    }
+    
+    /**
+     * Acumulador que usa cada linea como clave de un mapa de conteo. Las
+     * lineas unicas se guardan en una lista aparte la primera vez que
+     * aparecen, y esa misma lista se ordena y se entrega al escritor.
+     */
+    private static class AcumuladorExacto implements AcumuladorDuplicados {
+        private final Map<String, Integer> conteoLineas;
+        private final List<String> lineasUnicas;
+        private final List<String> duplicados = new ArrayList<>();
+        private final Consumer<List<String>> ordenador;
+        private long totalLineas = 0;
+        
+        AcumuladorExacto(Consumer<List<String>> ordenador, int lineasEsperadas) {
+            this.ordenador = ordenador;
+            this.conteoLineas = HashMap.newHashMap(lineasEsperadas);
+            this.lineasUnicas = new ArrayList<>(lineasEsperadas);
+        }
+        
+        @Override
+        public void agregar(String linea) {
+            if (esLineaVacia(linea)) {
+                return;
+            }
+            
+            totalLineas++;
+            int count = conteoLineas.merge(linea, 1, Integer::sum);
+            
+            if (count == 1) {
+                lineasUnicas.add(linea);
+            } else if (count == 2) {
+                duplicados.add(linea);
+            }
+        }
+        
+        @Override
+        public ResultadoAnalisis obtenerResultado() {
+            ordenador.accept(lineasUnicas);
+            
+            return new ResultadoAnalisis(lineasUnicas, duplicados, conteoLineas, totalLineas);
+        }
+    }
+    
+    /**
+     * Acumulador basado en huellas de 64 bits sobre una tabla primitiva. Cada
+     * linea distinta se guarda una sola vez y el conteo solo se publica para
+     * las lineas duplicadas.
+     */
+    private static class AcumuladorHuellas implements AcumuladorDuplicados {
+        private final TablaHuellas tabla = new TablaHuellas();
+        private final List<String> duplicados = new ArrayList<>();
+        private final Consumer<List<String>> ordenador;
+        private long totalLineas = 0;
+        
+        AcumuladorHuellas(Consumer<List<String>> ordenador) {
+            this.ordenador = ordenador;
+        }
+        
+        @Override
+        public void agregar(String linea) {
+            if (esLineaVacia(linea)) {
+                return;
+            }
+            
+            totalLineas++;
+            if (tabla.registrar(linea) == 2) {
+                duplicados.add(linea);
+            }
+        }
+        
+        @Override
+        public ResultadoAnalisis obtenerResultado() {
+            List<String> lineasUnicas = tabla.getLineasUnicas();
+            Map<String, Integer> conteoDuplicados = new LinkedHashMap<>();
+            for (int i = 0; i < lineasUnicas.size(); i++) {
+                if (tabla.getConteo(i) >= 2) {
+                    conteoDuplicados.put(lineasUnicas.get(i), tabla.getConteo(i));
+                }
+            }
+            
+            if (tabla.getColisiones() > 0) {
+                Registro.normal("Colisiones de huellas resueltas por texto: " + tabla.getColisiones());
+            }
+            
+            // La tabla ya no se consulta, asi que su lista se ordena en el lugar.
+            ordenador.accept(lineasUnicas);
+            
+            return new ResultadoAnalisis(lineasUnicas, duplicados, conteoDuplicados, totalLineas);
+        }
+    }
+    
+    /**
+     * Acumulador que considera duplicadas las filas con los mismos valores en
+     * las columnas clave, aunque difieran en el resto. Se conserva la primera
+     * o la ultima fila de cada clave y el resultado se ordena por linea completa.
+     */
+    private static class AcumuladorClaves implements AcumuladorDuplicados {
+        private final List<String> nombresColumnas;
+        private final boolean conservarUltima;
+        private final Supplier<String> proveedorCabecera;
+        private final Consumer<List<String>> ordenador;
+        private final List<String> duplicados = new ArrayList<>();
+        private TablaClaves tabla;
+        private long totalLineas = 0;
+        
+        AcumuladorClaves(List<String> nombresColumnas, boolean conservarUltima,
+                         Supplier<String> proveedorCabecera, Consumer<List<String>> ordenador) {
+            this.nombresColumnas = nombresColumnas;
+            this.conservarUltima = conservarUltima;
+            this.proveedorCabecera = proveedorCabecera;
+            this.ordenador = ordenador;
+        }
+        
+        @Override
+        public void agregar(String linea) {
+            if (esLineaVacia(linea)) {
+                return;
+            }
+            if (tabla == null) {
+                tabla = new TablaClaves(resolverColumnas(nombresColumnas, proveedorCabecera.get()), conservarUltima);
+            }
+            
+            totalLineas++;
+            int posicion = tabla.registrar(linea);
+            if (tabla.getConteo(posicion) == 2) {
+                duplicados.add(tabla.getPrimeraLinea(posicion));
+            }
+        }
+        
+        @Override
+        public ResultadoAnalisis obtenerResultado() {
+            if (tabla == null) {
+                return new ResultadoAnalisis(new ArrayList<>(), duplicados, new LinkedHashMap<>(), 0);
+            }
+            
+            List<String> conservadas = tabla.getLineasConservadas();
+            Map<String, Integer> conteoDuplicados = new LinkedHashMap<>();
+            for (int i = 0; i < conservadas.size(); i++) {
+                if (tabla.getConteo(i) >= 2) {
+                    conteoDuplicados.put(tabla.getPrimeraLinea(i), tabla.getConteo(i));
+                }
+            }
+            
+            if (tabla.getColisiones() > 0) {
+                Registro.normal("Colisiones de huellas resueltas por texto: " + tabla.getColisiones());
+            }
+            
+            ordenador.accept(conservadas);
+            
+            return new ResultadoAnalisis(conservadas, duplicados, conteoDuplicados, totalLineas);
+        }
     }
     
     /**
@@ -62,16 +744,45 @@ public class AnalizadorDatos {
         private final List<String> datosSinDuplicados;
         private final List<String> duplicados;
         private final Map<String, Integer> conteoLineas;
+        private final long totalLineas;
+        private final long totalSinDuplicados;
+        private final long totalDuplicados;
         
         public ResultadoAnalisis(List<String> datosSinDuplicados, List<String> duplicados, 
                                Map<String, Integer> conteoLineas) {
+            this(datosSinDuplicados, duplicados, conteoLineas, 
+                 conteoLineas.values().stream().mapToLong(Integer::longValue).sum());
+        }
+        
+        public ResultadoAnalisis(List<String> datosSinDuplicados, List<String> duplicados, 
+                               Map<String, Integer> conteoLineas, long totalLineas) {
             this.datosSinDuplicados = datosSinDuplicados;
             this.duplicados = duplicados;
             this.conteoLineas = conteoLineas;
+            this.totalLineas = totalLineas;
+            this.totalSinDuplicados = datosSinDuplicados.size();
+            this.totalDuplicados = duplicados.size();
+        }
+        
+        /**
+         * Resultado cuyas lineas unicas no estan en memoria (ya se escribieron
+         * a disco). Los duplicados y sus conteos son solo una muestra.
+         */
+        public ResultadoAnalisis(List<String> muestraDuplicados, Map<String, Integer> conteoMuestra,
+                               long totalLineas, long totalSinDuplicados, long totalDuplicados) {
+            this.datosSinDuplicados = Collections.emptyList();
+            this.duplicados = muestraDuplicados;
+            this.conteoLineas = conteoMuestra;
+            this.totalLineas = totalLineas;
+            this.totalSinDuplicados = totalSinDuplicados;
+            this.totalDuplicados = totalDuplicados;
         }
         
         public List<String> getDatosSinDuplicados() { return datosSinDuplicados; }
         public List<String> getDuplicados() { return duplicados; }
         public Map<String, Integer> getConteoLineas() { return conteoLineas; }
+        public long getTotalLineas() { return totalLineas; }
+        public long getTotalSinDuplicados() { return totalSinDuplicados; }
+        public long getTotalDuplicados() { return totalDuplicados; }
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package archivosfragmentados.service;
+
+import java.io.IOException;
+
+/**
+ * Recibe las lineas de datos a medida que se leen de los fragmentos.
+ */
+@FunctionalInterface
+public interface ConsumidorLineas {
+
+    /**
+     * Procesa una linea de datos ya recortada y no vacia.
+     *
+     * @param nombreEntidad Entidad a la que pertenece la linea
+     * @param linea Linea de datos sin cabecera
+     * @throws IOException Si el consumidor necesita escribir y falla
+     */
+    void aceptar(String nombreEntidad, String linea) throws IOException;
+}
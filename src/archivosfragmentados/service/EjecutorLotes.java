@@ -0,0 +1,320 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.model.ConfiguracionProceso.ModoProcesamiento;
+import archivosfragmentados.util.ExploradorFragmentos;
+import archivosfragmentados.util.Registro;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta varias reconstrucciones sin preguntas en una sola JVM, con un
+ * numero acotado de trabajos simultaneos. Cada trabajo es un directorio de
+ * fragmentos y el archivo maestro que se genera a partir de el.
+ *
+ * <p>Al terminar cada trabajo se escribe junto a su salida un resumen
+ * ({@code <salida>.resumen}); el fallo de un trabajo no detiene a los demas.</p>
+ */
+public class EjecutorLotes {
+
+    private static final String ARCHIVO_SALIDA_DEFECTO = "entidad_rec.csv";
+    private static final String EXTENSION_RESUMEN = ".resumen";
+
+    private final ConfiguracionProceso configuracion;
+
+    public EjecutorLotes(ConfiguracionProceso configuracion) {
+        this.configuracion = configuracion;
+    }
+
+    /**
+     * Ejecuta los trabajos de la configuracion: los del archivo de trabajos o
+     * uno por cada directorio indicado.
+     *
+     * @return Resultado de cada trabajo, en el orden en que se definieron
+     * @throws IOException Si no se puede leer el archivo de trabajos
+     * @throws InterruptedException Si se interrumpe la espera de los trabajos
+     */
+    public List<ResultadoTrabajo> ejecutar() throws IOException, InterruptedException {
+        List<TrabajoLote> trabajos = new ArrayList<>();
+        if (configuracion.getArchivoTrabajos() != null) {
+            trabajos.addAll(leerArchivoTrabajos(configuracion.getArchivoTrabajos()));
+        }
+        for (Path directorio : configuracion.getDirectoriosLote()) {
+            trabajos.add(new TrabajoLote(directorio, directorio.resolve(ARCHIVO_SALIDA_DEFECTO)));
+        }
+        return ejecutar(trabajos);
+    }
+
+    /**
+     * Ejecuta una lista de trabajos con el grupo de hilos acotado.
+     *
+     * @param trabajos Trabajos a ejecutar
+     * @return Resultado de cada trabajo, en el mismo orden
+     * @throws InterruptedException Si se interrumpe la espera de los trabajos
+     */
+    public List<ResultadoTrabajo> ejecutar(List<TrabajoLote> trabajos) throws InterruptedException {
+        List<ResultadoTrabajo> resultados = new ArrayList<>();
+        if (trabajos.isEmpty()) {
+            return resultados;
+        }
+
+        int hilos = Math.min(configuracion.getTrabajosSimultaneos(), trabajos.size());
+        Registro.normal("EJECUTANDO " + trabajos.size() + " TRABAJOS CON " + hilos + " HILOS...");
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            EscritorArchivos nombres = new EscritorArchivos(configuracion);
+            List<Future<ResultadoTrabajo>> pendientes = new ArrayList<>();
+            for (TrabajoLote trabajo : trabajos) {
+                // Con --comprimir la salida de cada trabajo lleva la extension .gz.
+                TrabajoLote ajustado = new TrabajoLote(trabajo.getEntrada(), nombres.ajustarNombre(trabajo.getSalida()));
+                pendientes.add(ejecutor.submit(() -> ejecutarTrabajo(ajustado)));
+            }
+            for (Future<ResultadoTrabajo> pendiente : pendientes) {
+                try {
+                    resultados.add(pendiente.get());
+                } catch (ExecutionException e) {
+                    // ejecutarTrabajo ya captura los errores esperados; esto es un fallo inesperado.
+                    throw new IllegalStateException("Fallo inesperado en un trabajo", e.getCause());
+                }
+            }
+        } finally {
+            ejecutor.shutdownNow();
+            ejecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        return resultados;
+    }
+
+    /**
+     * Lee un archivo de trabajos. Cada linea tiene el formato
+     * {@code entrada;salida}; la salida es opcional y por defecto es
+     * {@code entidad_rec.csv} dentro de la entrada. Las rutas relativas se
+     * resuelven desde el directorio del archivo de trabajos y las lineas que
+     * empiezan con {@code #} se ignoran.
+     *
+     * @param archivo Archivo de trabajos
+     * @return Trabajos definidos en el archivo
+     * @throws IOException Si no se puede leer el archivo
+     */
+    public static List<TrabajoLote> leerArchivoTrabajos(Path archivo) throws IOException {
+        Path base = archivo.toAbsolutePath().getParent();
+        List<TrabajoLote> trabajos = new ArrayList<>();
+
+        for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+            String texto = linea.trim();
+            if (texto.isEmpty() || texto.startsWith("#")) {
+                continue;
+            }
+            String[] campos = texto.split(";", 2);
+            Path entrada = base.resolve(campos[0].trim());
+            Path salida = campos.length > 1 && !campos[1].isBlank()
+                    ? base.resolve(campos[1].trim())
+                    : entrada.resolve(ARCHIVO_SALIDA_DEFECTO);
+            trabajos.add(new TrabajoLote(entrada, salida));
+        }
+
+        return trabajos;
+    }
+
+    /**
+     * Reconstruye el maestro de un trabajo y escribe su resumen. Los errores
+     * se registran en el resultado en lugar de propagarse.
+     */
+    private ResultadoTrabajo ejecutarTrabajo(TrabajoLote trabajo) {
+        long inicio = System.nanoTime();
+        ResultadoTrabajo resultado;
+
+        try {
+            List<Path> fragmentos = obtenerFragmentos(trabajo.getEntrada());
+            if (fragmentos.isEmpty()) {
+                resultado = ResultadoTrabajo.fallido(trabajo, "No se encontraron fragmentos",
+                        System.nanoTime() - inicio);
+            } else {
+                resultado = reconstruir(trabajo, fragmentos, inicio);
+            }
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            resultado = ResultadoTrabajo.fallido(trabajo, e.getMessage(), System.nanoTime() - inicio);
+        }
+
+        try {
+            escribirResumen(resultado);
+        } catch (IOException e) {
+            Registro.error("No se pudo escribir el resumen de " + trabajo.getSalida() + ": " + e.getMessage());
+        }
+        Registro.normal((resultado.isExitoso() ? "TRABAJO COMPLETADO: " : "TRABAJO FALLIDO: ")
+                + trabajo.getEntrada());
+        return resultado;
+    }
+
+    /**
+     * Obtiene los fragmentos validos de un directorio en orden de nombre.
+     */
+    private List<Path> obtenerFragmentos(Path directorio) throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            throw new IOException("El directorio no existe o no es valido: " + directorio);
+        }
+        return ExploradorFragmentos.getInstancia().explorar(directorio, configuracion.isRecursivo())
+                .getRutasConEntidad();
+    }
+
+    /**
+     * Reconstruye el maestro con la estrategia configurada. Los modos memoria
+     * y flujo comparten el camino en flujo, que produce la misma salida sin
+     * guardar las lineas por entidad. Con reconstruccion por entidad los
+     * archivos se escriben en el directorio de la salida del trabajo.
+     */
+    private ResultadoTrabajo reconstruir(TrabajoLote trabajo, List<Path> fragmentos, long inicio) throws IOException {
+        Path salida = trabajo.getSalida();
+        Files.createDirectories(salida.toAbsolutePath().getParent());
+
+        if (configuracion.isIncremental()) {
+            ActualizadorIncremental.ResumenActualizacion resumen =
+                    new ActualizadorIncremental(configuracion).actualizar(fragmentos, salida);
+            return new ResultadoTrabajo(trabajo, true, null, fragmentos.size(), resumen.getLineasLeidas(),
+                    resumen.getLineasFinales(), resumen.getDuplicadosEliminados(), System.nanoTime() - inicio);
+        }
+
+        LectorArchivos lector = new LectorArchivos(configuracion);
+        EscritorArchivos escritor = new EscritorArchivos(configuracion);
+        AnalizadorDatos.ResultadoAnalisis analisis;
+
+        if (configuracion.isPorEntidad()) {
+            List<ReconstructorEntidades.ResultadoEntidad> entidades = new ReconstructorEntidades(configuracion)
+                    .reconstruir(lector.leerArchivosSeleccionados(fragmentos), lector, salida.toAbsolutePath().getParent());
+            long lineas = 0;
+            long finales = 0;
+            long duplicados = 0;
+            for (ReconstructorEntidades.ResultadoEntidad entidad : entidades) {
+                lineas += entidad.getResultado().getTotalLineas();
+                finales += entidad.getResultado().getTotalSinDuplicados();
+                duplicados += entidad.getResultado().getTotalDuplicados();
+            }
+            return new ResultadoTrabajo(trabajo, true, null, fragmentos.size(), lineas, finales, duplicados,
+                    System.nanoTime() - inicio);
+        }
+
+        if (configuracion.getModo() == ModoProcesamiento.EXTERNO) {
+            try (OrdenadorExterno ordenador = new OrdenadorExterno(configuracion.getPresupuestoMemoria(),
+                                                                   configuracion.getDirectorioTemporal())) {
+                lector.leerArchivosEnFlujo(fragmentos, ordenador);
+                try {
+                    escritor.escribirArchivo(salida, lector.getCabeceraDetectada(), ordenador.fusionar());
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                analisis = ordenador.obtenerResultado();
+            }
+        } else {
+            AnalizadorDatos.AcumuladorDuplicados acumulador = new AnalizadorDatos(configuracion).crearAcumulador(lector::getCabeceraDetectada);
+            lector.leerArchivosEnFlujo(fragmentos, acumulador);
+            analisis = acumulador.obtenerResultado();
+            escritor.escribirArchivo(salida, lector.getCabeceraDetectada(), analisis.getDatosSinDuplicados());
+        }
+
+        return new ResultadoTrabajo(trabajo, true, null, fragmentos.size(), analisis.getTotalLineas(),
+                analisis.getTotalSinDuplicados(), analisis.getTotalDuplicados(), System.nanoTime() - inicio);
+    }
+
+    /**
+     * Escribe el resumen de un trabajo junto a su archivo de salida.
+     */
+    private static void escribirResumen(ResultadoTrabajo resultado) throws IOException {
+        Path salida = resultado.getTrabajo().getSalida();
+        Path directorio = salida.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directorio)) {
+            return;
+        }
+
+        Path archivo = salida.resolveSibling(salida.getFileName() + EXTENSION_RESUMEN);
+        try (BufferedWriter writer = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            writer.write("entrada=" + resultado.getTrabajo().getEntrada().toAbsolutePath());
+            writer.newLine();
+            writer.write("salida=" + salida.toAbsolutePath());
+            writer.newLine();
+            writer.write("estado=" + (resultado.isExitoso() ? "COMPLETADO" : "FALLIDO"));
+            writer.newLine();
+            if (!resultado.isExitoso()) {
+                writer.write("error=" + resultado.getError());
+                writer.newLine();
+            }
+            writer.write("fragmentos=" + resultado.getFragmentos());
+            writer.newLine();
+            writer.write("lineas_procesadas=" + resultado.getLineasProcesadas());
+            writer.newLine();
+            writer.write("lineas_finales=" + resultado.getLineasFinales());
+            writer.newLine();
+            writer.write("duplicados_eliminados=" + resultado.getDuplicadosEliminados());
+            writer.newLine();
+            writer.write("milisegundos=" + resultado.getMilisegundos());
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Directorio de entrada y archivo de salida de un trabajo.
+     */
+    public static class TrabajoLote {
+        private final Path entrada;
+        private final Path salida;
+
+        public TrabajoLote(Path entrada, Path salida) {
+            this.entrada = entrada;
+            this.salida = salida;
+        }
+
+        public Path getEntrada() { return entrada; }
+        public Path getSalida() { return salida; }
+    }
+
+    /**
+     * Resultado de un trabajo del lote.
+     */
+    public static class ResultadoTrabajo {
+        private final TrabajoLote trabajo;
+        private final boolean exitoso;
+        private final String error;
+        private final int fragmentos;
+        private final long lineasProcesadas;
+        private final long lineasFinales;
+        private final long duplicadosEliminados;
+        private final long nanosegundos;
+
+        public ResultadoTrabajo(TrabajoLote trabajo, boolean exitoso, String error, int fragmentos,
+                                long lineasProcesadas, long lineasFinales, long duplicadosEliminados,
+                                long nanosegundos) {
+            this.trabajo = trabajo;
+            this.exitoso = exitoso;
+            this.error = error;
+            this.fragmentos = fragmentos;
+            this.lineasProcesadas = lineasProcesadas;
+            this.lineasFinales = lineasFinales;
+            this.duplicadosEliminados = duplicadosEliminados;
+            this.nanosegundos = nanosegundos;
+        }
+
+        static ResultadoTrabajo fallido(TrabajoLote trabajo, String error, long nanosegundos) {
+            return new ResultadoTrabajo(trabajo, false, error, 0, 0, 0, 0, nanosegundos);
+        }
+
+        public TrabajoLote getTrabajo() { return trabajo; }
+        public boolean isExitoso() { return exitoso; }
+        public String getError() { return error; }
+        public int getFragmentos() { return fragmentos; }
+        public long getLineasProcesadas() { return lineasProcesadas; }
+        public long getLineasFinales() { return lineasFinales; }
+        public long getDuplicadosEliminados() { return duplicadosEliminados; }
+        public long getMilisegundos() { return TimeUnit.NANOSECONDS.toMillis(nanosegundos); }
+    }
+}
@@ -1,30 +1,219 @@
 package archivosfragmentados.service;
 
-import java.io.BufferedWriter;
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.monitoreo.EtapaProceso;
+import archivosfragmentados.monitoreo.MedicionEtapa;
+import archivosfragmentados.monitoreo.MetricasProceso;
+import archivosfragmentados.util.ArchivosGzip;
+import archivosfragmentados.util.SalidaAsincrona;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Servicio encargado de escribir archivos de salida.
+ *
+ * <p>Las lineas se codifican en buffers grandes que un hilo aparte vuelca al
+ * disco ({@link SalidaAsincrona}). Se escribe primero un archivo temporal en
+ * el mismo directorio, se sincroniza con el disco y solo entonces reemplaza
+ * al destino con un renombrado atomico, por lo que un proceso interrumpido
+ * nunca deja un archivo maestro a medio escribir.</p>
+ *
+ * <p>Con {@code --comprimir} la salida se escribe en gzip y a su nombre se le
+ * agrega la extension {@code .gz}.</p>
  */
 public class EscritorArchivos {
     
+    /** Tamano por defecto de cada uno de los dos buffers de escritura. */
+    public static final int TAMANO_BUFFER_DEFECTO = 1 << 20;
+    
+    private final int tamanoBuffer;
+    private final int nivelGzip;
+    private final int bufferGzip;
+    private final MetricasProceso metricas = MetricasProceso.getInstancia();
+    
+    public EscritorArchivos() {
+        this(new ConfiguracionProceso());
+    }
+    
+    public EscritorArchivos(ConfiguracionProceso configuracion) {
+        this.tamanoBuffer = configuracion.getBufferEscritura();
+        this.nivelGzip = configuracion.isComprimirSalida() ? configuracion.getNivelGzip() : SalidaAsincrona.SIN_COMPRESION;
+        this.bufferGzip = configuracion.getBufferGzip();
+    }
+    
     /**
-     * Escribe una lista de datos en un archivo CSV.
+     * Obtiene el nombre real con que se escribira un archivo de salida.
+     * 
+     * @param archivo Ruta de salida pedida
+     * @return La misma ruta, o con extension .gz si se comprime
+     */
+    public Path ajustarNombre(Path archivo) {
+        return nivelGzip == SalidaAsincrona.SIN_COMPRESION ? archivo : ArchivosGzip.conExtension(archivo);
+    }
+    
+    /**
+     * Abre una salida asincrona con el buffer y la compresion configurados.
      * 
+     * @param archivo Archivo de destino
+     * @return Salida abierta
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    SalidaAsincrona abrirSalida(Path archivo) throws IOException {
+        return new SalidaAsincrona(archivo, tamanoBuffer, nivelGzip, bufferGzip);
+    }
+    
+    /**
+     * Escribe una lista de datos en un archivo CSV.
+     * El nombre se ajusta con {@link #ajustarNombre(Path)}.
+     *
      * @param archivo Ruta del archivo de salida
      * @param datos Lista de líneas a escribir
+     * @return Bytes escritos y tiempo empleado
+     * @throws IOException Si ocurre un error al escribir el archivo
+     */
+    public ResultadoEscritura escribirArchivo(Path archivo, List<String> datos) throws IOException {
+        return escribirArchivo(archivo, null, datos);
+    }
+    
+    /**
+     * Escribe la cabecera seguida de los datos sin copiarlos a una lista nueva.
+     * Si falla (incluido un error al recorrer los datos) el destino queda
+     * como estaba.
+     *
+     * @param archivo Ruta del archivo de salida
+     * @param cabecera Cabecera a escribir primero o null si no hay
+     * @param datos Lineas de datos a escribir
+     * @return Bytes escritos y tiempo empleado
      * @throws IOException Si ocurre un error al escribir el archivo
      */
-    public void escribirArchivo(Path archivo, List<String> datos) throws IOException {
-        try (BufferedWriter writer = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
-            for (String linea : datos) {
-                writer.write(linea);
-                writer.newLine();
+    public ResultadoEscritura escribirArchivo(Path archivo, String cabecera, Iterable<String> datos) throws IOException {
+        long inicio = System.nanoTime();
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.ESCRITURA);
+        archivo = ajustarNombre(archivo);
+        Path directorio = archivo.toAbsolutePath().getParent();
+        Path temporal = crearTemporal(archivo);
+        
+        try {
+            SalidaAsincrona salida = abrirSalida(temporal);
+            boolean completa = false;
+            long lineas = 0;
+            try {
+                if (cabecera != null) {
+                    salida.escribirLinea(cabecera);
+                }
+                for (String linea : datos) {
+                    salida.escribirLinea(linea);
+                    lineas++;
+                }
+                completa = true;
+            } finally {
+                if (completa) {
+                    salida.close();
+                } else {
+                    salida.cancelar();
+                }
             }
+            
+            long bytesArchivo = Files.size(temporal);
+            reemplazar(temporal, archivo);
+            sincronizarDirectorio(directorio);
+            metricas.finalizarEtapa(medicion, salida.getBytesEscritos(), lineas);
+            metricas.registrarSalida(archivo);
+            return new ResultadoEscritura(archivo, salida.getBytesEscritos(), bytesArchivo, System.nanoTime() - inicio);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+    
+    /**
+     * Crea un archivo temporal junto al destino. A diferencia de
+     * {@code Files.createTempFile}, usa los permisos por defecto del sistema,
+     * que son los que tendra el destino tras el renombrado.
+     * 
+     * @param destino Archivo que el temporal reemplazara
+     * @return Archivo temporal vacio
+     * @throws IOException Si no se puede crear
+     */
+    static Path crearTemporal(Path destino) throws IOException {
+        Path directorio = destino.toAbsolutePath().getParent();
+        String nombre = destino.getFileName().toString();
+        while (true) {
+            Path temporal = directorio.resolve("." + nombre + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+            try {
+                return Files.createFile(temporal);
+            } catch (FileAlreadyExistsException e) {
+                // Otro hilo escribe el mismo nombre en el mismo instante; se prueba otro.
+            }
+        }
+    }
+    
+    /**
+     * Reemplaza el destino con el archivo temporal ya completo.
+     * 
+     * @param temporal Archivo temporal escrito y sincronizado
+     * @param destino Archivo a reemplazar
+     * @throws IOException Si no se puede mover
+     */
+    static void reemplazar(Path temporal, Path destino) throws IOException {
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Sincroniza el directorio para que el renombrado sobreviva a un corte de
+     * energia. No todos los sistemas permiten abrir un directorio, asi que
+     * un fallo aqui se ignora: el contenido del archivo ya esta en disco.
+     */
+    private static void sincronizarDirectorio(Path directorio) {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Windows no permite abrir directorios como canal.
+        }
+    }
+    
+    /**
+     * Resultado de la escritura de un archivo.
+     */
+    public static class ResultadoEscritura {
+        private final Path archivo;
+        private final long bytes;
+        private final long bytesArchivo;
+        private final long nanosegundos;
+        
+        public ResultadoEscritura(Path archivo, long bytes, long bytesArchivo, long nanosegundos) {
+            this.archivo = archivo;
+            this.bytes = bytes;
+            this.bytesArchivo = bytesArchivo;
+            this.nanosegundos = nanosegundos;
+        }
+        
+        /** Archivo escrito, con la extension .gz si se comprimio. */
+        public Path getArchivo() { return archivo; }
+        /** Bytes de texto escritos, antes de comprimir. */
+        public long getBytes() { return bytes; }
+        /** Bytes que ocupa el archivo en disco. */
+        public long getBytesArchivo() { return bytesArchivo; }
+        public long getMilisegundos() { return TimeUnit.NANOSECONDS.toMillis(nanosegundos); }
+        
+        /**
+         * Obtiene el rendimiento de la escritura, incluida la sincronizacion.
+         *
+         * @return Megabytes (de 1024 * 1024 bytes) por segundo
+         */
+        public double getMegabytesPorSegundo() {
+            return nanosegundos > 0 ? bytes / (1024.0 * 1024.0) / (nanosegundos / 1e9) : 0.0;
         }
     }
-}
\ No newline at end of file
+}
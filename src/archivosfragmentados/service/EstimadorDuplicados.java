@@ -0,0 +1,96 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.util.BosquejoConteo;
+import archivosfragmentados.util.HyperLogLog;
+import archivosfragmentados.util.TablaHuellas;
+import archivosfragmentados.util.TopFrecuentes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estima las estadisticas de duplicados en memoria fija, sin guardar las
+ * lineas distintas: HyperLogLog para la cantidad de lineas distintas y un
+ * bosquejo Count-Min junto con Space-Saving para las lineas mas repetidas.
+ * Sirve para perfilar un archivo de fragmentos muy grande antes de decidir
+ * si vale la pena reconstruirlo.
+ */
+public class EstimadorDuplicados implements ConsumidorLineas {
+
+    private static final int PROFUNDIDAD_BOSQUEJO = 4;
+    private static final int BITS_ANCHO_BOSQUEJO = 16;
+    private static final int CANDIDATAS_POR_LINEA_MOSTRADA = 64;
+    private static final int CANDIDATAS_MINIMAS = 1024;
+
+    private final HyperLogLog distintas;
+    private final BosquejoConteo bosquejo;
+    private final TopFrecuentes frecuentes;
+    private final int limiteMostradas;
+    private long totalLineas = 0;
+
+    /**
+     * @param precision Precision del HyperLogLog (bits del indice de registro)
+     * @param limiteMostradas Cantidad de lineas repetidas a reportar
+     */
+    public EstimadorDuplicados(int precision, int limiteMostradas) {
+        this.distintas = new HyperLogLog(precision);
+        this.bosquejo = new BosquejoConteo(PROFUNDIDAD_BOSQUEJO, BITS_ANCHO_BOSQUEJO);
+        this.frecuentes = new TopFrecuentes(Math.max(CANDIDATAS_MINIMAS,
+                                                     limiteMostradas * CANDIDATAS_POR_LINEA_MOSTRADA));
+        this.limiteMostradas = limiteMostradas;
+    }
+
+    @Override
+    public void aceptar(String nombreEntidad, String linea) {
+        long huella = TablaHuellas.calcularHuella(linea);
+        totalLineas++;
+        distintas.agregar(huella);
+        frecuentes.registrar(linea, huella, bosquejo.incrementar(huella));
+    }
+
+    /**
+     * Construye la estimacion con lo recibido hasta el momento.
+     *
+     * @return Estimacion de duplicados
+     */
+    public Estimacion obtenerEstimacion() {
+        List<TopFrecuentes.LineaFrecuente> repetidas = new ArrayList<>();
+        for (TopFrecuentes.LineaFrecuente linea : frecuentes.obtenerMayores(limiteMostradas, bosquejo)) {
+            if (linea.getConteo() > 1) {
+                repetidas.add(linea);
+            }
+        }
+
+        long bytes = distintas.getBytesUsados() + bosquejo.getBytesUsados() + frecuentes.getBytesUsados();
+        return new Estimacion(totalLineas, Math.min(distintas.estimar(), totalLineas),
+                              distintas.getErrorRelativo(), repetidas, bytes);
+    }
+
+    /**
+     * Resultado de la estimacion. Salvo el total de lineas, todos los
+     * valores son aproximados.
+     */
+    public static class Estimacion {
+        private final long totalLineas;
+        private final long lineasDistintas;
+        private final double errorRelativo;
+        private final List<TopFrecuentes.LineaFrecuente> masRepetidas;
+        private final long bytesUsados;
+
+        public Estimacion(long totalLineas, long lineasDistintas, double errorRelativo,
+                          List<TopFrecuentes.LineaFrecuente> masRepetidas, long bytesUsados) {
+            this.totalLineas = totalLineas;
+            this.lineasDistintas = lineasDistintas;
+            this.errorRelativo = errorRelativo;
+            this.masRepetidas = masRepetidas;
+            this.bytesUsados = bytesUsados;
+        }
+
+        public long getTotalLineas() { return totalLineas; }
+        public long getLineasDistintas() { return lineasDistintas; }
+        /** Lineas que sobrarian tras eliminar duplicados. */
+        public long getLineasRepetidas() { return totalLineas - lineasDistintas; }
+        public double getErrorRelativo() { return errorRelativo; }
+        public List<TopFrecuentes.LineaFrecuente> getMasRepetidas() { return masRepetidas; }
+        public long getBytesUsados() { return bytesUsados; }
+    }
+}
@@ -1,5 +1,9 @@
 package archivosfragmentados.service;
 
+import archivosfragmentados.util.CatalogoFragmentos;
+import archivosfragmentados.util.ExploradorFragmentos;
+import archivosfragmentados.util.Registro;
+import archivosfragmentados.util.ValidadorArchivos;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -15,10 +19,19 @@ public class GestorRutas {
     private static final String ARCHIVO_SALIDA_DEFECTO = "entidad_rec.csv";
     
     private final Scanner scanner;
+    private final boolean recursivo;
     private Path directorioCSVEncontrado;
     
     public GestorRutas() {
+        this(false);
+    }
+    
+    /**
+     * @param recursivo true para buscar los fragmentos tambien en los subdirectorios
+     */
+    public GestorRutas(boolean recursivo) {
         this.scanner = new Scanner(System.in);
+        this.recursivo = recursivo;
     }
     
     /**
@@ -40,7 +53,7 @@ public class GestorRutas {
         Path directorioCSV = directorioEjecucion.resolve(DIRECTORIO_CSV_DEFECTO);
         
         if (validarDirectorioConArchivos(directorioCSV)) {
-            System.out.println("DIRECTORIO ENCONTRADO: " + directorioCSV.toAbsolutePath());
+            Registro.dialogo("DIRECTORIO ENCONTRADO: " + directorioCSV.toAbsolutePath());
             mostrarArchivosEncontrados(directorioCSV);
             
             if (confirmarUsoDirectorio()) {
@@ -49,7 +62,7 @@ public class GestorRutas {
             }
         }
         
-        System.out.println("BUSQUEDA MANUAL DE DIRECTORIO:");
+        Registro.dialogo("BUSQUEDA MANUAL DE DIRECTORIO:");
         Path directorioUsuario = solicitarDirectorioUsuario();
         this.directorioCSVEncontrado = directorioUsuario;
         return directorioUsuario;
@@ -61,7 +74,7 @@ public class GestorRutas {
      * @return true si confirma usar el directorio
      */
     private boolean confirmarUsoDirectorio() {
-        System.out.print("Desea usar este directorio? (S/n): ");
+        Registro.pregunta("Desea usar este directorio? (S/n): ");
         String respuesta = scanner.nextLine().trim().toLowerCase();
         return respuesta.isEmpty() || respuesta.equals("s") || respuesta.equals("si");
     }
@@ -72,13 +85,13 @@ public class GestorRutas {
      * @return Path del archivo de salida EN LA RAIZ
      */
     public Path obtenerArchivoSalida() {
-        System.out.println("\nCONFIGURACION DEL ARCHIVO DE SALIDA:");
-        System.out.print("Ingrese el nombre del archivo de salida (Enter para '" + ARCHIVO_SALIDA_DEFECTO + "'): ");
+        Registro.dialogo("\nCONFIGURACION DEL ARCHIVO DE SALIDA:");
+        Registro.pregunta("Ingrese el nombre del archivo de salida (Enter para '" + ARCHIVO_SALIDA_DEFECTO + "'): ");
         String entrada = scanner.nextLine().trim();
         
         String nombreArchivo = entrada.isEmpty() ? ARCHIVO_SALIDA_DEFECTO : entrada;
         
-        if (!nombreArchivo.toLowerCase().endsWith(".csv")) {
+        if (!ValidadorArchivos.esArchivoCsv(Paths.get(nombreArchivo))) {
             nombreArchivo += ".csv";
         }
         
@@ -86,41 +99,51 @@ public class GestorRutas {
         Path archivoCompleto = directorioRaiz.resolve(nombreArchivo);
         
         if (Files.exists(archivoCompleto)) {
-            System.out.println("ADVERTENCIA: El archivo ya existe y sera sobrescrito.");
+            Registro.dialogo("ADVERTENCIA: El archivo ya existe y sera sobrescrito.");
         }
         
-        System.out.println("El archivo se guardara en la RAIZ: " + archivoCompleto.toAbsolutePath());
+        Registro.dialogo("El archivo se guardara en la RAIZ: " + archivoCompleto.toAbsolutePath());
         
         return archivoCompleto;
     }
     
+    /**
+     * Obtiene el directorio donde se escriben los archivos por entidad, que es
+     * la RAIZ del programa igual que el archivo de salida unico.
+     * 
+     * @return Path del directorio de salida
+     */
+    public Path obtenerDirectorioSalida() {
+        Path directorioRaiz = obtenerDirectorioEjecucion();
+        Registro.dialogo("\nLos archivos por entidad se guardaran en la RAIZ: " + directorioRaiz.toAbsolutePath());
+        return directorioRaiz;
+    }
+    
     /**
      * Pregunta al usuario si desea ver el contenido del archivo final.
      * 
      * @return true si desea ver el contenido
      */
     public boolean mostrarContenidoFinal() {
-        System.out.print("\nDesea ver el contenido del archivo generado? (s/N): ");
+        Registro.pregunta("\nDesea ver el contenido del archivo generado? (s/N): ");
         String respuesta = scanner.nextLine().trim().toLowerCase();
         return respuesta.equals("s") || respuesta.equals("si");
     }
     
     /**
-     * Muestra los archivos CSV encontrados en el directorio.
+     * Muestra los archivos CSV encontrados en el directorio. El catalogo es
+     * el mismo que acaba de validar el directorio, asi que no se vuelve a
+     * recorrer.
      * 
      * @param directorio Directorio a examinar
      */
     private void mostrarArchivosEncontrados(Path directorio) {
         try {
-            long cantidadArchivos = Files.list(directorio)
-                    .filter(Files::isRegularFile)
-                    .filter(archivo -> archivo.toString().toLowerCase().endsWith(".csv"))
-                    .filter(archivo -> !archivo.getFileName().toString().equalsIgnoreCase("entidad_rec.csv"))
-                    .count();
-            
-            System.out.printf("Se encontraron %d archivos CSV en el directorio.%n", cantidadArchivos);
+            CatalogoFragmentos catalogo = ExploradorFragmentos.getInstancia().explorar(directorio, recursivo);
+            Registro.formatoDialogo("Se encontraron %d archivos CSV en el directorio%s.%n",
+                catalogo.getCantidad(), recursivo ? " y sus subdirectorios" : "");
         } catch (IOException e) {
-            System.out.println("Error al contar archivos en el directorio.");
+            Registro.dialogo("Error al contar archivos en el directorio.");
         }
     }
     
@@ -141,27 +164,27 @@ public class GestorRutas {
     private Path solicitarDirectorioUsuario() {
         Path directorio = null;
         
-        System.out.println("INGRESO MANUAL DE DIRECTORIO:");
+        Registro.dialogo("INGRESO MANUAL DE DIRECTORIO:");
         
         while (directorio == null) {
-            System.out.print("Ingrese la ruta del directorio con archivos CSV: ");
+            Registro.pregunta("Ingrese la ruta del directorio con archivos CSV: ");
             String rutaIngresada = scanner.nextLine().trim();
             
             if (rutaIngresada.isEmpty()) {
-                System.out.println("ERROR: La ruta no puede estar vacia. Intente nuevamente.");
+                Registro.dialogo("ERROR: La ruta no puede estar vacia. Intente nuevamente.");
                 continue;
             }
             
             Path rutaCandidata = Paths.get(rutaIngresada);
             
             if (validarDirectorioConArchivos(rutaCandidata)) {
-                System.out.println("DIRECTORIO VALIDADO: " + rutaCandidata.toAbsolutePath());
+                Registro.dialogo("DIRECTORIO VALIDADO: " + rutaCandidata.toAbsolutePath());
                 mostrarArchivosEncontrados(rutaCandidata);
                 directorio = rutaCandidata;
             } else {
-                System.out.println("ERROR: El directorio no existe, no es valido o no contiene archivos CSV.");
-                System.out.println("Ruta verificada: " + rutaCandidata.toAbsolutePath());
-                System.out.println("Intente nuevamente o verifique la ruta.\n");
+                Registro.dialogo("ERROR: El directorio no existe, no es valido o no contiene archivos CSV.");
+                Registro.dialogo("Ruta verificada: " + rutaCandidata.toAbsolutePath());
+                Registro.dialogo("Intente nuevamente o verifique la ruta.\n");
             }
         }
         
@@ -180,10 +203,7 @@ public class GestorRutas {
         }
         
         try {
-            return Files.list(directorio)
-                    .anyMatch(archivo -> Files.isRegularFile(archivo) && 
-                             archivo.toString().toLowerCase().endsWith(".csv") &&
-                             !archivo.getFileName().toString().equalsIgnoreCase("entidad_rec.csv"));
+            return !ExploradorFragmentos.getInstancia().explorar(directorio, recursivo).isVacio();
         } catch (IOException e) {
             return false;
         }
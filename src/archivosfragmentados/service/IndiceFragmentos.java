@@ -0,0 +1,221 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.util.CatalogoFragmentos;
+import archivosfragmentados.util.ContadorLineas;
+import archivosfragmentados.util.Registro;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Indice de metadatos de los fragmentos de un directorio (tamano, fecha de
+ * modificacion y cantidad de lineas), guardado en el mismo directorio. Un
+ * fragmento cuyo tamano y fecha no cambiaron no se vuelve a leer; los demas
+ * se cuentan en paralelo sobre sus bytes mapeados en memoria (los gzip, sobre
+ * el flujo descomprimido).
+ *
+ * <p>Los fragmentos de subdirectorios se registran con su ruta relativa al
+ * directorio del indice.</p>
+ *
+ * <p>Es solo una cache: si el indice no se puede leer se ignora, y si no se
+ * puede guardar (directorio de solo lectura) se avisa y se sigue.</p>
+ */
+public class IndiceFragmentos {
+
+    private static final String NOMBRE_INDICE = ".indice_fragmentos";
+    private static final String SEPARADOR = "\t";
+
+    private final Path directorio;
+    private final Path archivoIndice;
+    private final Map<String, MetadatosFragmento> registros = new HashMap<>();
+    private int fragmentosContados = 0;
+
+    private IndiceFragmentos(Path directorio) {
+        this.directorio = directorio;
+        this.archivoIndice = directorio.resolve(NOMBRE_INDICE);
+    }
+
+    /**
+     * Carga el indice de un directorio. Si no existe o esta danado se
+     * devuelve un indice vacio.
+     *
+     * @param directorio Directorio de los fragmentos
+     * @return Indice cargado
+     */
+    public static IndiceFragmentos cargar(Path directorio) {
+        IndiceFragmentos indice = new IndiceFragmentos(directorio);
+        if (!Files.isRegularFile(indice.archivoIndice)) {
+            return indice;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(indice.archivoIndice, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.isEmpty() || linea.startsWith("#")) {
+                    continue;
+                }
+                String[] campos = linea.split(SEPARADOR);
+                if (campos.length != 4) {
+                    throw new IOException("Linea de indice no valida: " + linea);
+                }
+                indice.registros.put(campos[0], new MetadatosFragmento(Long.parseLong(campos[1]),
+                        Long.parseLong(campos[2]), Long.parseLong(campos[3])));
+            }
+        } catch (IOException | NumberFormatException e) {
+            Registro.resumen("ADVERTENCIA: Indice de fragmentos ignorado (" + e.getMessage() + ")");
+            indice.registros.clear();
+        }
+        return indice;
+    }
+
+    /**
+     * Obtiene los metadatos de los fragmentos. El tamano y la fecha salen del
+     * catalogo, sin volver a consultar el disco; los que no estan en el indice
+     * o cambiaron se cuentan en paralelo y, si hubo alguno, el indice se
+     * guarda.
+     *
+     * @param fragmentos Fragmentos del catalogo del directorio del indice
+     * @param hilos Fragmentos contados a la vez
+     * @return Metadatos de cada fragmento, en el orden recibido
+     * @throws IOException Si no se puede leer algun fragmento
+     */
+    public Map<Path, MetadatosFragmento> obtenerMetadatos(List<CatalogoFragmentos.Fragmento> fragmentos, int hilos)
+            throws IOException {
+        Map<Path, MetadatosFragmento> metadatos = new LinkedHashMap<>();
+        List<Path> pendientes = new ArrayList<>();
+
+        for (CatalogoFragmentos.Fragmento fragmento : fragmentos) {
+            Path ruta = fragmento.getRuta();
+            MetadatosFragmento registro = registros.get(clave(ruta));
+            if (registro != null && registro.getTamano() == fragmento.getTamano()
+                    && registro.getModificado() == fragmento.getModificado()) {
+                metadatos.put(ruta, registro);
+            } else {
+                metadatos.put(ruta, null);
+                pendientes.add(ruta);
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            contar(pendientes, hilos, metadatos);
+            fragmentosContados = pendientes.size();
+            guardar(metadatos.keySet());
+        }
+        return metadatos;
+    }
+
+    /**
+     * Obtiene cuantos fragmentos se contaron en la ultima consulta por no
+     * estar al dia en el indice.
+     *
+     * @return Fragmentos leidos
+     */
+    public int getFragmentosContados() {
+        return fragmentosContados;
+    }
+
+    /**
+     * Cuenta las lineas de los fragmentos pendientes en un grupo fijo de hilos.
+     */
+    private void contar(List<Path> pendientes, int hilos, Map<Path, MetadatosFragmento> metadatos)
+            throws IOException {
+        List<Callable<MetadatosFragmento>> tareas = new ArrayList<>();
+        for (Path fragmento : pendientes) {
+            tareas.add(() -> leerMetadatos(fragmento));
+        }
+
+        try (ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(hilos, tareas.size())))) {
+            List<Future<MetadatosFragmento>> futuros = ejecutor.invokeAll(tareas);
+            for (int i = 0; i < pendientes.size(); i++) {
+                MetadatosFragmento registro = futuros.get(i).get();
+                metadatos.put(pendientes.get(i), registro);
+                registros.put(clave(pendientes.get(i)), registro);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Conteo de lineas interrumpido");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error al contar lineas: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static MetadatosFragmento leerMetadatos(Path fragmento) throws IOException {
+        // Tamano y fecha se toman antes de contar: si el archivo cambia
+        // mientras se lee, la siguiente consulta lo volvera a contar.
+        long tamano = Files.size(fragmento);
+        long modificado = Files.getLastModifiedTime(fragmento).toMillis();
+        return new MetadatosFragmento(tamano, modificado, ContadorLineas.contarLineas(fragmento));
+    }
+
+    /**
+     * Guarda solo los fragmentos presentes, reemplazando el indice de forma atomica.
+     */
+    private void guardar(Iterable<Path> presentes) {
+        Path temporal = archivoIndice.resolveSibling(NOMBRE_INDICE + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+                writer.write("# Indice de fragmentos de ArchivosFragmentados");
+                writer.newLine();
+                writer.write("# nombre\ttamano\tmodificado\tlineas");
+                writer.newLine();
+                for (Path fragmento : presentes) {
+                    MetadatosFragmento registro = registros.get(clave(fragmento));
+                    writer.write(clave(fragmento) + SEPARADOR + registro.getTamano() + SEPARADOR
+                            + registro.getModificado() + SEPARADOR + registro.getLineas());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temporal, archivoIndice, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, archivoIndice, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Registro.resumen("ADVERTENCIA: No se pudo guardar el indice de fragmentos: " + e.getMessage());
+        }
+    }
+
+    private String clave(Path fragmento) {
+        return directorio.relativize(fragmento).toString();
+    }
+
+    /**
+     * Metadatos registrados de un fragmento.
+     */
+    public static class MetadatosFragmento {
+        private final long tamano;
+        private final long modificado;
+        private final long lineas;
+
+        public MetadatosFragmento(long tamano, long modificado, long lineas) {
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.lineas = lineas;
+        }
+
+        public long getTamano() { return tamano; }
+        public long getModificado() { return modificado; }
+        /** Lineas del fragmento, incluida la cabecera. */
+        public long getLineas() { return lineas; }
+    }
+}
@@ -1,26 +1,84 @@
 package archivosfragmentados.service;
 
+import archivosfragmentados.model.ArenaLineas;
+import archivosfragmentados.model.ConfiguracionProceso;
 import archivosfragmentados.model.Entidad;
+import archivosfragmentados.monitoreo.EtapaProceso;
+import archivosfragmentados.monitoreo.EventoLecturaFragmento;
+import archivosfragmentados.monitoreo.MedicionEtapa;
+import archivosfragmentados.monitoreo.MetricasProceso;
+import archivosfragmentados.util.ArchivosGzip;
+import archivosfragmentados.util.NivelRegistro;
+import archivosfragmentados.util.Registro;
 import archivosfragmentados.util.ValidadorArchivos;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Servicio encargado de leer archivos fragmentados de entidades.
  */
 public class LectorArchivos {
     
+    /**
+     * Bytes de fragmentos que la lectura paralela puede tener leidos sin
+     * incorporar. Las lineas ya decodificadas ocupan varias veces su tamano
+     * en disco, por eso es una fraccion chica del heap.
+     */
+    private static final long BYTES_ADELANTADOS = Math.max(16L << 20, Runtime.getRuntime().maxMemory() / 16);
+    
+    /** Proporcion estimada entre el CSV descomprimido y su gzip. */
+    private static final int FACTOR_GZIP = 5;
+    
     private final ValidadorArchivos validador;
+    private final int hilosLectura;
+    private final boolean hilosLecturaIndicados;
+    private final boolean hilosVirtuales;
+    private final int bufferGzip;
+    private final long umbralMapeo;
+    private final LectorMapeado lectorMapeado;
+    private final boolean lineasFueraDelHeap;
+    private final boolean detectarOrden;
+    private final boolean recursivo;
+    private final MetricasProceso metricas = MetricasProceso.getInstancia();
     private String cabeceraDetectada = null;
+    private final Map<String, String> cabecerasPorEntidad = new HashMap<>();
+    private final Map<Path, String> hashesLeidos = new ConcurrentHashMap<>();
+    private boolean calcularHashes = false;
     
     public LectorArchivos() {
+        this(new ConfiguracionProceso());
+    }
+    
+    public LectorArchivos(ConfiguracionProceso configuracion) {
         this.validador = new ValidadorArchivos();
+        this.hilosLectura = configuracion.getHilosLectura();
+        this.hilosLecturaIndicados = configuracion.isHilosLecturaIndicados();
+        this.hilosVirtuales = configuracion.isHilosVirtuales();
+        this.bufferGzip = configuracion.getBufferGzip();
+        this.umbralMapeo = configuracion.getUmbralMapeo();
+        this.lectorMapeado = new LectorMapeado(configuracion.getHilosMapeo());
+        this.lineasFueraDelHeap = configuracion.isLineasFueraDelHeap();
+        this.detectarOrden = configuracion.getModoOrden() == ConfiguracionProceso.ModoOrden.FUSION;
+        this.recursivo = configuracion.isRecursivo();
     }
     
     /**
@@ -36,17 +94,24 @@ public class LectorArchivos {
         }
         
         Map<String, Entidad> entidades = new HashMap<>();
-        List<Path> archivosCsv = validador.obtenerArchivosCsv(directorio);
+        List<Path> archivosCsv = validador.obtenerArchivosCsv(directorio, recursivo);
         this.cabeceraDetectada = null; 
+        this.cabecerasPorEntidad.clear();
+        this.hashesLeidos.clear();
         
-        System.out.println("Archivos CSV encontrados: " + archivosCsv.size());
+        Registro.normal("Archivos CSV encontrados: " + archivosCsv.size());
         
-        for (Path archivo : archivosCsv) {
-            if (archivo.getFileName().toString().equalsIgnoreCase("entidad_rec.csv")) {
-                System.out.println("Archivo omitido: " + archivo.getFileName());
-                continue;
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.LECTURA);
+        try {
+            for (Path archivo : archivosCsv) {
+                if (ValidadorArchivos.esSalidaPorDefecto(archivo)) {
+                    Registro.detalle("Archivo omitido: " + archivo.getFileName());
+                    continue;
+                }
+                procesarArchivoFragmentado(archivo, entidades);
             }
-            procesarArchivoFragmentado(archivo, entidades);
+        } finally {
+            metricas.finalizarEtapa(medicion, 0, 0);
         }
         
         return entidades;
@@ -62,16 +127,58 @@ public class LectorArchivos {
     public Map<String, Entidad> leerArchivosSeleccionados(List<Path> archivosSeleccionados) throws IOException {
         Map<String, Entidad> entidades = new HashMap<>();
         this.cabeceraDetectada = null;
+        this.cabecerasPorEntidad.clear();
+        this.hashesLeidos.clear();
         
-        System.out.println("Procesando " + archivosSeleccionados.size() + " archivos seleccionados...");
+        Registro.normal("Procesando " + archivosSeleccionados.size() + " archivos seleccionados...");
         
-        for (Path archivo : archivosSeleccionados) {
-            procesarArchivoFragmentado(archivo, entidades);
-        }
+        procesarArchivos(archivosSeleccionados, entidades, null);
         
         return entidades;
     }
     
+    /**
+     * Lee los archivos seleccionados entregando cada linea al consumidor sin
+     * guardarla. Las entidades devueltas solo llevan la cuenta de lineas.
+     * 
+     * @param archivosSeleccionados Lista de archivos a procesar
+     * @param consumidor Destino de cada linea de datos
+     * @return Mapa de entidades con el conteo de lineas leidas
+     * @throws IOException Si ocurre un error al leer los archivos o en el consumidor
+     */
+    public Map<String, Entidad> leerArchivosEnFlujo(List<Path> archivosSeleccionados, 
+                                                    ConsumidorLineas consumidor) throws IOException {
+        Map<String, Entidad> entidades = new HashMap<>();
+        this.cabeceraDetectada = null;
+        this.cabecerasPorEntidad.clear();
+        this.hashesLeidos.clear();
+        
+        Registro.normal("Procesando en flujo " + archivosSeleccionados.size() + " archivos seleccionados...");
+        
+        procesarArchivos(archivosSeleccionados, entidades, consumidor);
+        
+        return entidades;
+    }
+    
+    /**
+     * Pide calcular el SHA-256 de cada fragmento mientras se lee, con los
+     * mismos bytes que llegan del disco, para registrarlo en el manifiesto
+     * sin volver a abrir el archivo.
+     */
+    public void activarHashes() {
+        this.calcularHashes = true;
+    }
+    
+    /**
+     * Obtiene el hash calculado durante la lectura de un fragmento.
+     * 
+     * @param archivo Fragmento, tal como se paso al lector
+     * @return Hash en hexadecimal, o null si no se leyo o no se pidieron hashes
+     */
+    public String getHashLeido(Path archivo) {
+        return hashesLeidos.get(archivo);
+    }
+    
     /**
      * Obtiene la cabecera detectada del primer archivo procesado.
      * 
@@ -81,6 +188,17 @@ public class LectorArchivos {
         return cabeceraDetectada;
     }
     
+    /**
+     * Obtiene la cabecera del primer fragmento leido de una entidad, para
+     * reconstruir cada entidad en su propio archivo.
+     * 
+     * @param nombreEntidad Nombre de la entidad
+     * @return Cabecera de la entidad o null si no se encontro ninguna
+     */
+    public String getCabeceraEntidad(String nombreEntidad) {
+        return cabecerasPorEntidad.get(nombreEntidad);
+    }
+    
     /**
      * Procesa un archivo fragmentado individual OMITIENDO LA PRIMERA LÍNEA.
      * Captura la cabecera del primer archivo para uso posterior.
@@ -90,36 +208,454 @@ public class LectorArchivos {
      * @throws IOException Si ocurre un error al leer el archivo
      */
     private void procesarArchivoFragmentado(Path archivo, Map<String, Entidad> entidades) throws IOException {
+        procesarArchivoFragmentado(archivo, entidades, null);
+    }
+    
+    /**
+     * Procesa un archivo fragmentado. Si hay consumidor, las lineas se le
+     * entregan y la entidad solo las cuenta; si no, la entidad las almacena.
+     * 
+     * @param archivo Archivo a procesar
+     * @param entidades Mapa de entidades donde almacenar los datos
+     * @param consumidor Destino de las lineas o null para almacenarlas
+     * @throws IOException Si ocurre un error al leer el archivo
+     */
+    private void procesarArchivoFragmentado(Path archivo, Map<String, Entidad> entidades, 
+                                            ConsumidorLineas consumidor) throws IOException {
         String nombreArchivo = archivo.getFileName().toString();
         String nombreEntidad = validador.extraerNombreEntidad(nombreArchivo);
         
         if (nombreEntidad == null) {
-            System.out.println("Archivo omitido (formato invalido): " + nombreArchivo);
+            Registro.normal("Archivo omitido (formato invalido): " + nombreArchivo);
             return;
         }
         
-        Entidad entidad = entidades.computeIfAbsent(nombreEntidad, Entidad::new);
+        Entidad entidad = entidades.computeIfAbsent(nombreEntidad, nombre -> crearEntidad(nombre, consumidor));
+        EventoLecturaFragmento evento = new EventoLecturaFragmento();
+        evento.begin();
+        long inicio = System.nanoTime();
+        int lineasPrevias = entidad.getCantidadLineas();
+        
+        MessageDigest resumen = calcularHashes ? ManifiestoFragmentos.crearDigest() : null;
+        if (usarLecturaMapeada(archivo)) {
+            String cabecera = procesarArchivoMapeado(archivo, nombreArchivo, entidad, consumidor, resumen);
+            guardarHash(archivo, null, resumen);
+            registrarLectura(archivo, nombreEntidad, entidad.getCantidadLineas() - lineasPrevias, inicio,
+                             evento, cabecera);
+            informarProcesado(nombreArchivo, nombreEntidad);
+            return;
+        }
         
-        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
-            String primeraLinea = reader.readLine(); 
+        String primeraLinea;
+        InputStream crudo = abrirCrudo(archivo, resumen);
+        try (BufferedReader reader = ArchivosGzip.abrirLector(crudo, ArchivosGzip.esGzip(archivo), bufferGzip)) {
+            primeraLinea = reader.readLine(); 
             
             if (primeraLinea != null) {
-                if (cabeceraDetectada == null) {
-                    cabeceraDetectada = primeraLinea.trim();
-                    System.out.println("CABECERA DETECTADA PARA ARCHIVO FINAL: " + cabeceraDetectada);
-                }
-                
-                System.out.println("CABECERA OMITIDA DE " + nombreArchivo + ": " + primeraLinea);
+                registrarCabecera(nombreArchivo, nombreEntidad, primeraLinea);
+                iniciarFragmento(entidad);
                 
                 String linea;
                 while ((linea = reader.readLine()) != null) {
-                    if (!linea.trim().isEmpty()) {
-                        entidad.agregarLineaDatos(linea);
+                    String lineaRecortada = linea.trim();
+                    if (!lineaRecortada.isEmpty()) {
+                        entidad.agregarLineaRecortada(lineaRecortada);
+                        if (consumidor != null) {
+                            consumidor.aceptar(nombreEntidad, lineaRecortada);
+                        }
+                    }
+                }
+            }
+            guardarHash(archivo, crudo, resumen);
+        }
+        
+        registrarLectura(archivo, nombreEntidad, entidad.getCantidadLineas() - lineasPrevias, inicio,
+                         evento, primeraLinea);
+        informarProcesado(nombreArchivo, nombreEntidad);
+    }
+    
+    /**
+     * Informa un fragmento procesado. Con un nivel menor que el detalle no
+     * arma el mensaje, para no costar nada por fragmento.
+     * 
+     * @param nombreArchivo Nombre del fragmento
+     * @param nombreEntidad Entidad del fragmento
+     */
+    private static void informarProcesado(String nombreArchivo, String nombreEntidad) {
+        if (Registro.isActivo(NivelRegistro.DETALLE)) {
+            Registro.detalle("Procesado: " + nombreArchivo + " -> Entidad: " + nombreEntidad);
+        }
+    }
+    
+    /**
+     * Abre los bytes de un fragmento tal como estan en disco, pasandolos por
+     * el calculo de hash si se pidio.
+     * 
+     * @param archivo Fragmento a abrir
+     * @param resumen Calculo de hash o null
+     * @return Entrada del archivo
+     * @throws IOException Si no se puede abrir
+     */
+    private static InputStream abrirCrudo(Path archivo, MessageDigest resumen) throws IOException {
+        InputStream entrada = Files.newInputStream(archivo);
+        return resumen == null ? entrada : new DigestInputStream(entrada, resumen);
+    }
+    
+    /**
+     * Guarda el hash de un fragmento ya leido. Antes consume lo que quede
+     * de la entrada (por ejemplo, bytes despues del final de un gzip), para
+     * que el hash cubra el archivo completo como el del manifiesto.
+     * 
+     * @param archivo Fragmento leido
+     * @param crudo Entrada abierta con {@link #abrirCrudo}, o null si ya se consumio entera
+     * @param resumen Calculo de hash o null si no se pidio
+     * @throws IOException Si falla la lectura del resto
+     */
+    private void guardarHash(Path archivo, InputStream crudo, MessageDigest resumen) throws IOException {
+        if (resumen == null) {
+            return;
+        }
+        if (crudo != null) {
+            crudo.transferTo(OutputStream.nullOutputStream());
+        }
+        hashesLeidos.put(archivo, HexFormat.of().formatHex(resumen.digest()));
+    }
+    
+    /**
+     * Registra la lectura de un fragmento en las metricas del proceso y, si
+     * hay una grabacion de Flight Recorder activa, como evento.
+     * 
+     * @param archivo Fragmento leido
+     * @param nombreEntidad Entidad del fragmento
+     * @param lineas Lineas de datos leidas del fragmento
+     * @param inicio Instante en que empezo su lectura
+     * @param evento Evento iniciado antes de abrir el fragmento
+     * @param cabecera Primera linea omitida o null si el fragmento estaba vacio
+     * @throws IOException Si no se puede obtener el tamano
+     */
+    private void registrarLectura(Path archivo, String nombreEntidad, long lineas, long inicio,
+                                  EventoLecturaFragmento evento, String cabecera) throws IOException {
+        long nanosegundos = System.nanoTime() - inicio;
+        long bytes = Files.size(archivo);
+        metricas.registrarFragmento(archivo.getFileName().toString(), bytes, lineas, nanosegundos);
+        evento.finalizar(archivo.toString(), nombreEntidad, bytes, lineas, cabecera);
+    }
+    
+    /**
+     * Crea la entidad segun el destino de sus lineas: si van a un consumidor
+     * solo se cuentan; si no, se guardan en el heap o fuera de el.
+     * 
+     * @param nombre Nombre de la entidad
+     * @param consumidor Destino de las lineas o null para almacenarlas
+     * @return Entidad nueva
+     */
+    private Entidad crearEntidad(String nombre, ConsumidorLineas consumidor) {
+        if (consumidor != null) {
+            return new Entidad(nombre, false);
+        }
+        if (lineasFueraDelHeap) {
+            return new Entidad(nombre, new ArenaLineas());
+        }
+        return new Entidad(nombre);
+    }
+    
+    /**
+     * Registra la primera linea de un fragmento: la primera que aparece se
+     * guarda como cabecera del archivo final, la primera de cada entidad como
+     * cabecera de esa entidad, y todas se omiten de los datos.
+     * 
+     * @param nombreArchivo Nombre del fragmento
+     * @param nombreEntidad Entidad a la que pertenece el fragmento
+     * @param primeraLinea Primera linea leida del fragmento
+     */
+    private void registrarCabecera(String nombreArchivo, String nombreEntidad, String primeraLinea) {
+        if (cabeceraDetectada == null) {
+            cabeceraDetectada = primeraLinea.trim();
+            Registro.normal("CABECERA DETECTADA PARA ARCHIVO FINAL: " + cabeceraDetectada);
+        }
+        cabecerasPorEntidad.putIfAbsent(nombreEntidad, primeraLinea.trim());
+        
+        if (Registro.isActivo(NivelRegistro.DETALLE)) {
+            Registro.detalle("CABECERA OMITIDA DE " + nombreArchivo + ": " + primeraLinea);
+        }
+    }
+    
+    /**
+     * Si se pidio la fusion de fragmentos ordenados, marca en la entidad el
+     * inicio de un fragmento para que detecte si llega ordenado mientras se lee.
+     * 
+     * @param entidad Entidad que recibira las lineas del fragmento
+     */
+    private void iniciarFragmento(Entidad entidad) {
+        if (detectarOrden) {
+            entidad.iniciarFragmento();
+        }
+    }
+    
+    /**
+     * Indica si un fragmento es lo bastante grande para leerlo mapeado en
+     * memoria. Los fragmentos gzip nunca se mapean: se descomprimen en flujo.
+     * 
+     * @param archivo Fragmento a evaluar
+     * @return true si su tamano alcanza el umbral de mapeo
+     * @throws IOException Si no se puede obtener el tamano
+     */
+    private boolean usarLecturaMapeada(Path archivo) throws IOException {
+        return umbralMapeo > 0 && !ArchivosGzip.esGzip(archivo) && Files.size(archivo) >= umbralMapeo;
+    }
+    
+    /**
+     * Procesa un fragmento grande mapeandolo en memoria y analizando sus
+     * bloques en paralelo. Solo se omite la primera linea del archivo.
+     * 
+     * @param archivo Archivo a procesar
+     * @param nombreArchivo Nombre del fragmento
+     * @param entidad Entidad que recibe las lineas
+     * @param consumidor Destino de las lineas o null para almacenarlas
+     * @param resumen Calculo de hash del archivo o null
+     * @return Primera linea del fragmento o null si esta vacio
+     * @throws IOException Si ocurre un error al leer el archivo
+     */
+    private String procesarArchivoMapeado(Path archivo, String nombreArchivo, Entidad entidad,
+                                          ConsumidorLineas consumidor, MessageDigest resumen) throws IOException {
+        try (LectorMapeado.FragmentoMapeado mapeado = lectorMapeado.abrir(archivo)) {
+            if (mapeado.getPrimeraLinea() == null) {
+                return null;
+            }
+            
+            registrarCabecera(nombreArchivo, entidad.getNombre(), mapeado.getPrimeraLinea());
+            iniciarFragmento(entidad);
+            Registro.detalle("LECTURA MAPEADA DE " + nombreArchivo);
+            
+            mapeado.recorrerLineas(entidad.getNombre(), (nombreEntidad, linea) -> {
+                entidad.agregarLineaRecortada(linea);
+                if (consumidor != null) {
+                    consumidor.aceptar(nombreEntidad, linea);
+                }
+            }, resumen);
+            return mapeado.getPrimeraLinea();
+        }
+    }
+    
+    /**
+     * Procesa los archivos en el orden de seleccion. Con mas de un hilo de
+     * lectura los fragmentos se leen en paralelo, pero se incorporan en el
+     * mismo orden que en modo secuencial, asi la cabecera detectada y el
+     * resultado final no cambian.
+     * 
+     * <p>Descomprimir gzip consume CPU, asi que si hay fragmentos comprimidos
+     * y no se indico {@code --hilos-lectura} se usa un hilo por nucleo.</p>
+     * 
+     * <p>Los fragmentos leidos por adelantado se guardan completos hasta su
+     * turno, asi que se limitan por cantidad y por bytes. Los que se mapean o
+     * no caben en ese limite se leen en su turno en este hilo, directo al
+     * consumidor, como en modo secuencial.</p>
+     * 
+     * @param archivos Archivos a procesar en orden
+     * @param entidades Mapa de entidades donde almacenar los datos
+     * @param consumidor Destino de las lineas o null para almacenarlas
+     * @throws IOException Si ocurre un error al leer algun archivo
+     */
+    private void procesarArchivos(List<Path> archivos, Map<String, Entidad> entidades,
+                                  ConsumidorLineas consumidor) throws IOException {
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.LECTURA);
+        try {
+            leerEnOrden(archivos, entidades, consumidor);
+        } finally {
+            metricas.finalizarEtapa(medicion, 0, 0);
+        }
+    }
+    
+    /**
+     * Lee los archivos en el orden dado; {@link #procesarArchivos} mide la etapa.
+     */
+    private void leerEnOrden(List<Path> archivos, Map<String, Entidad> entidades,
+                             ConsumidorLineas consumidor) throws IOException {
+        int hilos = hilosLectura;
+        if (!hilosLecturaIndicados && archivos.stream().anyMatch(ArchivosGzip::esGzip)) {
+            hilos = Runtime.getRuntime().availableProcessors();
+        }
+        
+        if (hilos <= 1 || archivos.size() < 2) {
+            for (Path archivo : archivos) {
+                procesarArchivoFragmentado(archivo, entidades, consumidor);
+            }
+            return;
+        }
+        
+        Registro.normal("Lectura paralela con " + hilos 
+                + (hilosVirtuales ? " hilos virtuales" : " hilos"));
+        
+        // Se limitan los fragmentos leidos por adelantado para acotar la memoria.
+        int ventana = hilos * 2;
+        Deque<Future<FragmentoLeido>> pendientes = new ArrayDeque<>();
+        Deque<Long> tamanosPendientes = new ArrayDeque<>();
+        long bytesPendientes = 0;
+        
+        try (ExecutorService ejecutor = crearEjecutorLectura(hilos)) {
+            try {
+                int siguiente = 0;
+                while (siguiente < archivos.size() || !pendientes.isEmpty()) {
+                    while (siguiente < archivos.size() && pendientes.size() < ventana) {
+                        Path archivo = archivos.get(siguiente);
+                        long tamano = estimarTamano(archivo);
+                        if (usarLecturaMapeada(archivo) || tamano > BYTES_ADELANTADOS) {
+                            if (!pendientes.isEmpty()) {
+                                break;
+                            }
+                            procesarArchivoFragmentado(archivo, entidades, consumidor);
+                        } else if (bytesPendientes + tamano > BYTES_ADELANTADOS) {
+                            break;
+                        } else {
+                            pendientes.add(ejecutor.submit(() -> leerFragmento(archivo)));
+                            tamanosPendientes.add(tamano);
+                            bytesPendientes += tamano;
+                        }
+                        siguiente++;
+                    }
+                    if (!pendientes.isEmpty()) {
+                        bytesPendientes -= tamanosPendientes.poll();
+                        incorporarFragmento(esperarFragmento(pendientes.poll()), entidades, consumidor);
+                    }
+                }
+            } finally {
+                for (Future<FragmentoLeido> pendiente : pendientes) {
+                    pendiente.cancel(true);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Estima los bytes de texto de un fragmento a partir de su tamano en disco.
+     */
+    private static long estimarTamano(Path archivo) throws IOException {
+        long tamano = Files.size(archivo);
+        return ArchivosGzip.esGzip(archivo) ? tamano * FACTOR_GZIP : tamano;
+    }
+    
+    /**
+     * Crea el ejecutor para la lectura paralela segun la configuracion.
+     * 
+     * @param hilos Hilos de plataforma del grupo
+     * @return Ejecutor de hilos de plataforma o virtuales
+     */
+    private ExecutorService crearEjecutorLectura(int hilos) {
+        if (hilosVirtuales) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(hilos);
+    }
+    
+    /**
+     * Espera el resultado de la lectura de un fragmento.
+     * 
+     * @param futuro Lectura pendiente
+     * @return Fragmento leido
+     * @throws IOException Si la lectura fallo o el hilo fue interrumpido
+     */
+    private FragmentoLeido esperarFragmento(Future<FragmentoLeido> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura de fragmentos interrumpida");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error al leer fragmento: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+     * Lee un fragmento completo sin tocar el estado compartido del lector,
+     * para poder ejecutarse en cualquier hilo. Los fragmentos mapeados no
+     * pasan por aqui: {@link #leerEnOrden} los lee en su turno.
+     * 
+     * @param archivo Archivo a leer
+     * @return Cabecera y lineas de datos recortadas del fragmento
+     * @throws IOException Si ocurre un error al leer el archivo
+     */
+    private FragmentoLeido leerFragmento(Path archivo) throws IOException {
+        String nombreArchivo = archivo.getFileName().toString();
+        String nombreEntidad = validador.extraerNombreEntidad(nombreArchivo);
+        FragmentoLeido fragmento = new FragmentoLeido(nombreArchivo, nombreEntidad);
+        
+        if (nombreEntidad == null) {
+            return fragmento;
+        }
+        
+        EventoLecturaFragmento evento = new EventoLecturaFragmento();
+        evento.begin();
+        long inicio = System.nanoTime();
+        MessageDigest resumen = calcularHashes ? ManifiestoFragmentos.crearDigest() : null;
+        InputStream crudo = abrirCrudo(archivo, resumen);
+        try (BufferedReader reader = ArchivosGzip.abrirLector(crudo, ArchivosGzip.esGzip(archivo), bufferGzip)) {
+            fragmento.primeraLinea = reader.readLine();
+            
+            if (fragmento.primeraLinea != null) {
+                String linea;
+                while ((linea = reader.readLine()) != null) {
+                    String lineaRecortada = linea.trim();
+                    if (!lineaRecortada.isEmpty()) {
+                        fragmento.lineas.add(lineaRecortada);
                     }
                 }
             }
+            guardarHash(archivo, crudo, resumen);
+        }
+        
+        registrarLectura(archivo, nombreEntidad, fragmento.lineas.size(), inicio, evento, fragmento.primeraLinea);
+        return fragmento;
+    }
+    
+    /**
+     * Incorpora un fragmento ya leido a las entidades, con los mismos
+     * mensajes y la misma deteccion de cabecera que la lectura secuencial.
+     * 
+     * @param fragmento Fragmento leido
+     * @param entidades Mapa de entidades donde almacenar los datos
+     * @param consumidor Destino de las lineas o null para almacenarlas
+     * @throws IOException Si el consumidor falla
+     */
+    private void incorporarFragmento(FragmentoLeido fragmento, Map<String, Entidad> entidades,
+                                     ConsumidorLineas consumidor) throws IOException {
+        if (fragmento.nombreEntidad == null) {
+            Registro.normal("Archivo omitido (formato invalido): " + fragmento.nombreArchivo);
+            return;
+        }
+        
+        Entidad entidad = entidades.computeIfAbsent(fragmento.nombreEntidad, 
+                nombre -> crearEntidad(nombre, consumidor));
+        
+        if (fragmento.primeraLinea != null) {
+            registrarCabecera(fragmento.nombreArchivo, fragmento.nombreEntidad, fragmento.primeraLinea);
+            iniciarFragmento(entidad);
+            
+            for (String linea : fragmento.lineas) {
+                entidad.agregarLineaRecortada(linea);
+                if (consumidor != null) {
+                    consumidor.aceptar(fragmento.nombreEntidad, linea);
+                }
+            }
         }
         
-        System.out.println("Procesado: " + nombreArchivo + " -> Entidad: " + nombreEntidad);
+        informarProcesado(fragmento.nombreArchivo, fragmento.nombreEntidad);
+    }
+    
+    /**
+     * Contenido de un fragmento leido en paralelo, pendiente de incorporar.
+     */
+    private static class FragmentoLeido {
+        private final String nombreArchivo;
+        private final String nombreEntidad;
+        private final List<String> lineas = new ArrayList<>();
+        private String primeraLinea;
+        
+        FragmentoLeido(String nombreArchivo, String nombreEntidad) {
+            this.nombreArchivo = nombreArchivo;
+            this.nombreEntidad = nombreEntidad;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,289 @@
+package archivosfragmentados.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lector de fragmentos muy grandes: mapea el archivo en memoria, lo divide en
+ * bloques que terminan en fin de linea y procesa los bloques en paralelo.
+ * Las lineas se entregan en el orden original del archivo.
+ */
+public class LectorMapeado {
+
+    /** Tamano nominal de cada bloque; el limite real se mueve al siguiente fin de linea. */
+    private static final long TAMANO_BLOQUE = 64L * 1024 * 1024;
+
+    private static final int TAMANO_BUSQUEDA = 8 * 1024;
+
+    private final int hilos;
+
+    /**
+     * Crea un lector mapeado.
+     *
+     * @param hilos Cantidad de bloques que se procesan a la vez
+     */
+    public LectorMapeado(int hilos) {
+        this.hilos = Math.max(1, hilos);
+    }
+
+    /**
+     * Abre un fragmento y lee su primera linea (la cabecera).
+     *
+     * @param archivo Fragmento a leer
+     * @return Fragmento abierto listo para recorrer sus lineas de datos
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public FragmentoMapeado abrir(Path archivo) throws IOException {
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        try {
+            return new FragmentoMapeado(canal);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fragmento mapeado con la cabecera ya separada de los datos.
+     */
+    public class FragmentoMapeado implements Closeable {
+        private final FileChannel canal;
+        private final long tamano;
+        private final String primeraLinea;
+        private final long inicioDatos;
+
+        private FragmentoMapeado(FileChannel canal) throws IOException {
+            this.canal = canal;
+            this.tamano = canal.size();
+
+            long finCabecera = buscarFinDeLinea(0);
+            if (tamano == 0) {
+                this.primeraLinea = null;
+            } else {
+                this.primeraLinea = decodificar(0, finCabecera);
+            }
+            this.inicioDatos = Math.min(tamano, finCabecera + 1);
+        }
+
+        /**
+         * Obtiene la primera linea del fragmento, sin el fin de linea.
+         *
+         * @return Cabecera o null si el archivo esta vacio
+         */
+        public String getPrimeraLinea() {
+            return primeraLinea;
+        }
+
+        /**
+         * Entrega al consumidor las lineas de datos recortadas y no vacias,
+         * en orden. Los bloques se analizan en paralelo y se entregan desde
+         * el hilo que llama.
+         *
+         * @param nombreEntidad Entidad a la que pertenecen las lineas
+         * @param consumidor Destino de las lineas
+         * @throws IOException Si falla la lectura o el consumidor
+         */
+        public void recorrerLineas(String nombreEntidad, ConsumidorLineas consumidor) throws IOException {
+            recorrerLineas(nombreEntidad, consumidor, null);
+        }
+
+        /**
+         * Como {@link #recorrerLineas(String, ConsumidorLineas)}, pasando
+         * ademas los bytes del archivo por un calculo de hash, en orden y a
+         * medida que se entrega cada bloque. Cubre el archivo tal como se
+         * mapeo, sin volver a abrirlo.
+         *
+         * @param nombreEntidad Entidad a la que pertenecen las lineas
+         * @param consumidor Destino de las lineas
+         * @param resumen Calculo de hash a alimentar, o null
+         * @throws IOException Si falla la lectura o el consumidor
+         */
+        public void recorrerLineas(String nombreEntidad, ConsumidorLineas consumidor, MessageDigest resumen)
+                throws IOException {
+            resumir(resumen, 0, inicioDatos);
+            if (inicioDatos >= tamano) {
+                return;
+            }
+
+            List<long[]> bloques = calcularBloques();
+            Deque<Future<List<String>>> pendientes = new ArrayDeque<>();
+            int siguiente = 0;
+            int entregados = 0;
+
+            try (ExecutorService ejecutor = Executors.newFixedThreadPool(Math.min(hilos, bloques.size()))) {
+                try {
+                    while (siguiente < bloques.size() || !pendientes.isEmpty()) {
+                        while (siguiente < bloques.size() && pendientes.size() < hilos * 2) {
+                            long[] bloque = bloques.get(siguiente++);
+                            pendientes.add(ejecutor.submit(() -> analizarBloque(bloque[0], bloque[1])));
+                        }
+                        for (String linea : esperarBloque(pendientes.poll())) {
+                            consumidor.aceptar(nombreEntidad, linea);
+                        }
+                        long[] bloque = bloques.get(entregados++);
+                        resumir(resumen, bloque[0], bloque[1]);
+                    }
+                } finally {
+                    for (Future<List<String>> pendiente : pendientes) {
+                        pendiente.cancel(true);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+
+        /**
+         * Divide la zona de datos en bloques cuyo limite cae justo despues de
+         * un fin de linea, para que ninguna linea quede partida.
+         *
+         * @return Pares [inicio, fin) de cada bloque
+         * @throws IOException Si falla la busqueda de fines de linea
+         */
+        private List<long[]> calcularBloques() throws IOException {
+            List<long[]> bloques = new ArrayList<>();
+            long inicio = inicioDatos;
+
+            while (inicio < tamano) {
+                long fin = inicio + TAMANO_BLOQUE;
+                if (fin >= tamano) {
+                    fin = tamano;
+                } else {
+                    fin = Math.min(tamano, buscarFinDeLinea(fin) + 1);
+                }
+                bloques.add(new long[] {inicio, fin});
+                inicio = fin;
+            }
+
+            return bloques;
+        }
+
+        /**
+         * Busca la posicion del primer fin de linea a partir de una posicion.
+         *
+         * @param desde Posicion inicial
+         * @return Posicion del '\n' o '\r', o el tamano del archivo si no hay
+         * @throws IOException Si falla la lectura
+         */
+        private long buscarFinDeLinea(long desde) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUSQUEDA);
+            long posicion = desde;
+
+            while (posicion < tamano) {
+                buffer.clear();
+                int leidos = canal.read(buffer, posicion);
+                if (leidos <= 0) {
+                    break;
+                }
+                for (int i = 0; i < leidos; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r') {
+                        return posicion + i;
+                    }
+                }
+                posicion += leidos;
+            }
+
+            return tamano;
+        }
+
+        /**
+         * Pasa una zona del archivo mapeada por el calculo de hash.
+         */
+        private void resumir(MessageDigest resumen, long inicio, long fin) throws IOException {
+            if (resumen != null && fin > inicio) {
+                resumen.update(canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio));
+            }
+        }
+
+        /**
+         * Decodifica una zona del archivo como texto UTF-8.
+         *
+         * @throws java.nio.charset.MalformedInputException Si la zona no es UTF-8 valido
+         */
+        private String decodificar(long inicio, long fin) throws IOException {
+            MappedByteBuffer zona = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+            return StandardCharsets.UTF_8.newDecoder().decode(zona).toString();
+        }
+
+        /**
+         * Separa las lineas de un bloque directamente sobre los bytes mapeados.
+         * Se recortan los bytes de control y espacios de los extremos, que en
+         * UTF-8 coincide con lo que hace {@link String#trim()}, y solo se
+         * decodifican las lineas no vacias. Como la lectura con
+         * {@code BufferedReader}, los bytes UTF-8 invalidos son un error y no
+         * se reemplazan.
+         *
+         * @param inicio Inicio del bloque
+         * @param fin Fin del bloque (exclusivo)
+         * @return Lineas de datos del bloque en orden
+         * @throws IOException Si falla el mapeo o el bloque no es UTF-8 valido
+         */
+        private List<String> analizarBloque(long inicio, long fin) throws IOException {
+            MappedByteBuffer zona = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+            int limite = (int) (fin - inicio);
+            List<String> lineas = new ArrayList<>();
+            // Cada bloque se analiza en su propio hilo: el decodificador no se comparte.
+            CharsetDecoder decodificador = StandardCharsets.UTF_8.newDecoder();
+            int inicioLinea = 0;
+
+            for (int i = 0; i <= limite; i++) {
+                if (i < limite) {
+                    byte b = zona.get(i);
+                    if (b != '\n' && b != '\r') {
+                        continue;
+                    }
+                }
+
+                int a = inicioLinea;
+                int z = i;
+                while (a < z && (zona.get(a) & 0xFF) <= ' ') {
+                    a++;
+                }
+                while (z > a && (zona.get(z - 1) & 0xFF) <= ' ') {
+                    z--;
+                }
+                if (z > a) {
+                    lineas.add(decodificador.decode(zona.slice(a, z - a)).toString());
+                }
+                inicioLinea = i + 1;
+            }
+
+            return lineas;
+        }
+
+        private List<String> esperarBloque(Future<List<String>> futuro) throws IOException {
+            try {
+                return futuro.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura mapeada interrumpida");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Error al analizar bloque: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+}
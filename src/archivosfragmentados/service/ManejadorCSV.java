@@ -1,9 +1,6 @@
 package archivosfragmentados.service;
 
-import archivosfragmentados.model.Entidad;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Map;
+import archivosfragmentados.util.Registro;
 
 /**
  * Servicio especializado en el manejo de datos CSV completamente dinámico.
@@ -12,22 +9,6 @@ public class ManejadorCSV {
     
     private String cabeceraDetectada = null;
     
-    /**
-     * Unifica los datos de las entidades (las cabeceras ya fueron omitidas).
-     * 
-     * @param entidades Mapa de entidades leídas (sin cabeceras)
-     * @return Lista de datos unificados
-     */
-    public List<String> procesarDatos(Map<String, Entidad> entidades) {
-        List<String> datosUnificados = new ArrayList<>();
-        
-        for (Entidad entidad : entidades.values()) {
-            datosUnificados.addAll(entidad.getLineasDatos());
-        }
-        
-        return datosUnificados;
-    }
-    
     /**
      * Establece la cabecera detectada del primer archivo procesado.
      * 
@@ -36,28 +17,21 @@ public class ManejadorCSV {
     public void establecerCabecera(String cabecera) {
         if (this.cabeceraDetectada == null && cabecera != null && !cabecera.trim().isEmpty()) {
             this.cabeceraDetectada = cabecera.trim();
-            System.out.println("CABECERA DETECTADA PARA ARCHIVO FINAL: " + this.cabeceraDetectada);
+            Registro.normal("CABECERA DETECTADA PARA ARCHIVO FINAL: " + this.cabeceraDetectada);
         }
     }
     
     /**
-     * Prepara los datos finales CON la cabecera detectada dinámicamente.
+     * Obtiene la cabecera que encabezara el archivo final, advirtiendo si no
+     * se detecto ninguna. Permite escribir la salida sin armar una lista nueva.
      * 
-     * @param datosSinDuplicados Lista de datos procesados
-     * @return Lista con cabecera dinámica al inicio
+     * @return Cabecera detectada o null
      */
-    public List<String> prepararArchivoFinal(List<String> datosSinDuplicados) {
-        List<String> datosFinales = new ArrayList<>();
-        
-        if (cabeceraDetectada != null) {
-            datosFinales.add(cabeceraDetectada);
-        } else {
-            System.out.println("ADVERTENCIA: No se detectó cabecera. Archivo sin cabecera.");
+    public String obtenerCabeceraParaSalida() {
+        if (cabeceraDetectada == null) {
+            Registro.resumen("ADVERTENCIA: No se detectó cabecera. Archivo sin cabecera.");
         }
-        
-        datosFinales.addAll(datosSinDuplicados);
-        
-        return datosFinales;
+        return cabeceraDetectada;
     }
     
     /**
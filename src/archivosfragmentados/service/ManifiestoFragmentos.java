@@ -0,0 +1,288 @@
+package archivosfragmentados.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Manifiesto guardado junto al archivo de salida con los fragmentos ya
+ * procesados (ruta, tamano, fecha de modificacion y hash del contenido).
+ * Permite saber en una nueva ejecucion que fragmentos son nuevos o cambiaron.
+ */
+public class ManifiestoFragmentos {
+
+    private static final String EXTENSION = ".manifiesto";
+    private static final String SEPARADOR = "\t";
+
+    /**
+     * Estado de un fragmento respecto al manifiesto.
+     */
+    public enum EstadoFragmento {
+        /** No estaba registrado. */
+        NUEVO,
+        /** Estaba registrado pero su contenido cambio. */
+        MODIFICADO,
+        /** Estaba registrado con el mismo contenido. */
+        SIN_CAMBIOS
+    }
+
+    private final Path archivoManifiesto;
+    private final Map<String, RegistroFragmento> registros = new LinkedHashMap<>();
+
+    private ManifiestoFragmentos(Path archivoManifiesto) {
+        this.archivoManifiesto = archivoManifiesto;
+    }
+
+    /**
+     * Carga el manifiesto asociado a un archivo de salida. Si no existe se
+     * devuelve un manifiesto vacio.
+     *
+     * @param archivoSalida Archivo maestro reconstruido
+     * @return Manifiesto cargado
+     * @throws IOException Si el manifiesto existe pero no se puede leer
+     */
+    public static ManifiestoFragmentos cargar(Path archivoSalida) throws IOException {
+        Path archivo = archivoSalida.resolveSibling(archivoSalida.getFileName() + EXTENSION);
+        ManifiestoFragmentos manifiesto = new ManifiestoFragmentos(archivo);
+
+        if (!Files.exists(archivo)) {
+            return manifiesto;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.isEmpty() || linea.startsWith("#")) {
+                    continue;
+                }
+                String[] campos = linea.split(SEPARADOR);
+                if (campos.length != 4) {
+                    throw new IOException("Linea de manifiesto no valida: " + linea);
+                }
+                RegistroFragmento registro = new RegistroFragmento(campos[0],
+                        Long.parseLong(campos[1]), Long.parseLong(campos[2]), campos[3]);
+                manifiesto.registros.put(registro.getRuta(), registro);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Manifiesto corrupto: " + archivo, e);
+        }
+
+        return manifiesto;
+    }
+
+    /**
+     * Clasifica un fragmento. Si tamano y fecha coinciden se considera sin
+     * cambios sin leerlo; si no, se compara el hash del contenido.
+     *
+     * @param fragmento Fragmento a clasificar
+     * @return Estado del fragmento
+     * @throws IOException Si no se pueden leer sus atributos o contenido
+     */
+    public EstadoFragmento clasificar(Path fragmento) throws IOException {
+        RegistroFragmento registro = registros.get(clave(fragmento));
+        if (registro == null) {
+            return EstadoFragmento.NUEVO;
+        }
+
+        long tamano = Files.size(fragmento);
+        long modificado = Files.getLastModifiedTime(fragmento).toMillis();
+        if (registro.getTamano() == tamano && registro.getModificado() == modificado) {
+            return EstadoFragmento.SIN_CAMBIOS;
+        }
+
+        String hash = calcularHash(fragmento);
+        if (registro.getHash().equals(hash)) {
+            // Solo cambio la fecha: se actualiza el registro para no volver a leerlo.
+            registros.put(registro.getRuta(), new RegistroFragmento(registro.getRuta(), tamano, modificado, hash));
+            return EstadoFragmento.SIN_CAMBIOS;
+        }
+        return EstadoFragmento.MODIFICADO;
+    }
+
+    /**
+     * Obtiene las rutas registradas que no estan en la lista de fragmentos.
+     *
+     * @param fragmentos Fragmentos presentes en esta ejecucion
+     * @return Rutas de fragmentos que desaparecieron
+     */
+    public List<String> obtenerAusentes(List<Path> fragmentos) {
+        Set<String> presentes = new HashSet<>();
+        for (Path fragmento : fragmentos) {
+            presentes.add(clave(fragmento));
+        }
+
+        List<String> ausentes = new ArrayList<>();
+        for (String ruta : registros.keySet()) {
+            if (!presentes.contains(ruta)) {
+                ausentes.add(ruta);
+            }
+        }
+        return ausentes;
+    }
+
+    /**
+     * Toma el tamano y la fecha de un fragmento antes de leerlo. Si crece
+     * mientras se lee, la siguiente ejecucion vera otra fecha y comparara el
+     * hash, asi que las lineas agregadas no se pierden.
+     *
+     * @param fragmento Fragmento que se va a leer
+     * @return Registro sin hash
+     * @throws IOException Si no se pueden leer sus atributos
+     */
+    public static RegistroFragmento observar(Path fragmento) throws IOException {
+        BasicFileAttributes atributos = Files.readAttributes(fragmento, BasicFileAttributes.class);
+        return new RegistroFragmento(clave(fragmento), atributos.size(),
+                atributos.lastModifiedTime().toMillis(), null);
+    }
+
+    /**
+     * Registra (o actualiza) un fragmento procesado con el tamano y la fecha
+     * observados antes de leerlo y el hash calculado durante la lectura.
+     *
+     * @param observado Registro tomado con {@link #observar} antes de leer
+     * @param hash Hash del contenido leido
+     */
+    public void registrar(RegistroFragmento observado, String hash) {
+        registros.put(observado.getRuta(), new RegistroFragmento(observado.getRuta(), observado.getTamano(),
+                observado.getModificado(), hash));
+    }
+
+    /**
+     * Elimina todos los registros, antes de una reconstruccion completa.
+     */
+    public void limpiar() {
+        registros.clear();
+    }
+
+    /**
+     * Indica si el manifiesto no tiene fragmentos registrados.
+     *
+     * @return true si esta vacio
+     */
+    public boolean estaVacio() {
+        return registros.isEmpty();
+    }
+
+    /**
+     * Indica si un fragmento ya esta registrado.
+     *
+     * @param fragmento Fragmento a buscar
+     * @return true si fue leido en una ejecucion anterior
+     */
+    public boolean contiene(Path fragmento) {
+        return registros.containsKey(clave(fragmento));
+    }
+
+    /**
+     * Guarda el manifiesto reemplazando el anterior de forma atomica.
+     *
+     * @throws IOException Si ocurre un error al escribir
+     */
+    public void guardar() throws IOException {
+        Path temporal = archivoManifiesto.resolveSibling(archivoManifiesto.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            writer.write("# Manifiesto de ArchivosFragmentados");
+            writer.newLine();
+            writer.write("# ruta\ttamano\tmodificado\tsha256");
+            writer.newLine();
+            for (RegistroFragmento registro : registros.values()) {
+                writer.write(registro.getRuta() + SEPARADOR + registro.getTamano() + SEPARADOR
+                        + registro.getModificado() + SEPARADOR + registro.getHash());
+                writer.newLine();
+            }
+        }
+
+        try {
+            Files.move(temporal, archivoManifiesto, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, archivoManifiesto, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Obtiene la ruta del archivo de manifiesto.
+     *
+     * @return Ruta del manifiesto
+     */
+    public Path getArchivoManifiesto() {
+        return archivoManifiesto;
+    }
+
+    /**
+     * Calcula el hash SHA-256 del contenido de un archivo.
+     *
+     * @param archivo Archivo a leer
+     * @return Hash en hexadecimal
+     * @throws IOException Si ocurre un error al leer
+     */
+    public static String calcularHash(Path archivo) throws IOException {
+        MessageDigest digest = crearDigest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            int leidos;
+            while ((leidos = entrada.read(buffer)) > 0) {
+                digest.update(buffer, 0, leidos);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Crea el calculo de hash que usa el manifiesto, para alimentarlo con
+     * los bytes de una lectura que ya se esta haciendo.
+     *
+     * @return Calculo SHA-256 vacio
+     */
+    static MessageDigest crearDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String clave(Path fragmento) {
+        return fragmento.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Datos registrados de un fragmento procesado.
+     */
+    public static class RegistroFragmento {
+        private final String ruta;
+        private final long tamano;
+        private final long modificado;
+        private final String hash;
+
+        public RegistroFragmento(String ruta, long tamano, long modificado, String hash) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.hash = hash;
+        }
+
+        public String getRuta() { return ruta; }
+        public long getTamano() { return tamano; }
+        public long getModificado() { return modificado; }
+        /** Hash del contenido, o null en un registro tomado con {@link ManifiestoFragmentos#observar}. */
+        public String getHash() { return hash; }
+    }
+}
@@ -0,0 +1,472 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.monitoreo.EtapaProceso;
+import archivosfragmentados.monitoreo.MedicionEtapa;
+import archivosfragmentados.monitoreo.MetricasProceso;
+import archivosfragmentados.util.Registro;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Ordenamiento externo con eliminacion de duplicados para entradas que no
+ * caben en memoria. Las lineas se acumulan hasta agotar el presupuesto, se
+ * ordenan y se vuelcan a secuencias temporales sin repetidos; al final se
+ * fusionan todas las secuencias contando los duplicados durante la fusion.
+ */
+public class OrdenadorExterno implements ConsumidorLineas, Closeable {
+
+    /** Maximo de secuencias abiertas a la vez durante una fusion. */
+    private static final int FACTOR_FUSION = 64;
+
+    /** Costo estimado en bytes de cada linea en memoria, sin contar sus caracteres. */
+    private static final long COSTO_FIJO_LINEA = 64;
+
+    private static final int TAMANO_BUFFER = 1 << 16;
+
+    private final long presupuestoBytes;
+    private final Path directorioTemporal;
+    private final List<Path> secuencias = new ArrayList<>();
+    /** Secuencias de la fusion en curso, para cerrarlas si no se termina de recorrer. */
+    private final List<SecuenciaOrdenada> secuenciasAbiertas = new ArrayList<>();
+    private List<String> bufferLineas = new ArrayList<>();
+    private long bytesEnBuffer = 0;
+    private long totalLineas = 0;
+
+    private long totalSinDuplicados = 0;
+    private long totalDuplicados = 0;
+    private final List<String> muestraDuplicados = new ArrayList<>();
+    private final Map<String, Integer> conteoMuestra = new LinkedHashMap<>();
+
+    /**
+     * Crea un ordenador externo.
+     *
+     * @param presupuestoBytes Memoria aproximada que pueden ocupar las lineas en espera
+     * @param directorioTemporal Directorio donde se crean las secuencias temporales
+     */
+    public OrdenadorExterno(long presupuestoBytes, Path directorioTemporal) {
+        this.presupuestoBytes = presupuestoBytes;
+        this.directorioTemporal = directorioTemporal;
+    }
+
+    @Override
+    public void aceptar(String nombreEntidad, String linea) throws IOException {
+        agregar(linea);
+    }
+
+    /**
+     * Agrega una linea; si se supera el presupuesto vuelca el buffer a disco.
+     *
+     * @param linea Linea de datos
+     * @throws IOException Si falla la escritura de la secuencia temporal
+     */
+    public void agregar(String linea) throws IOException {
+        if (linea.trim().isEmpty()) {
+            return;
+        }
+
+        totalLineas++;
+        bufferLineas.add(linea);
+        bytesEnBuffer += COSTO_FIJO_LINEA + 2L * linea.length();
+
+        if (bytesEnBuffer >= presupuestoBytes) {
+            volcarBuffer();
+        }
+    }
+
+    /**
+     * Devuelve las lineas unicas en orden fusionando todas las secuencias.
+     * Los duplicados se cuentan mientras se recorre el resultado, por lo que
+     * {@link #obtenerResultado()} solo es valido despues de consumirlo.
+     *
+     * @return Lineas sin duplicados en orden ascendente
+     * @throws IOException Si falla la lectura o escritura de secuencias temporales
+     */
+    public Iterable<String> fusionar() throws IOException {
+        if (secuencias.isEmpty()) {
+            ordenarBuffer();
+            secuenciasAbiertas.add(new SecuenciaMemoria(bufferLineas));
+        } else {
+            if (!bufferLineas.isEmpty()) {
+                volcarBuffer();
+            }
+            reducirSecuencias();
+            for (Path secuencia : secuencias) {
+                secuenciasAbiertas.add(new SecuenciaArchivo(secuencia));
+            }
+        }
+        bufferLineas = new ArrayList<>();
+        bytesEnBuffer = 0;
+
+        Registro.normal("FUSIONANDO " + secuenciasAbiertas.size() + " SECUENCIAS ORDENADAS...");
+
+        FusionSecuencias fusion = new FusionSecuencias(secuenciasAbiertas);
+        return () -> new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return fusion.hayMas();
+            }
+
+            @Override
+            public String next() {
+                if (!fusion.hayMas()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    String linea = fusion.siguiente();
+                    registrarLineaUnica(linea, fusion.getConteoUltima());
+                    return linea;
+                } catch (IOException e) {
+                    try {
+                        cerrarTodas(secuenciasAbiertas);
+                    } catch (IOException alCerrar) {
+                        e.addSuppressed(alCerrar);
+                    }
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Construye el resultado del analisis una vez consumida la fusion. Solo
+     * conserva una muestra de los duplicados para mostrarla al usuario.
+     *
+     * @return Resultado con conteos totales y muestra de duplicados
+     */
+    public AnalizadorDatos.ResultadoAnalisis obtenerResultado() {
+        return new AnalizadorDatos.ResultadoAnalisis(muestraDuplicados, conteoMuestra,
+                totalLineas, totalSinDuplicados, totalDuplicados);
+    }
+
+    /**
+     * Obtiene la cantidad de secuencias temporales generadas.
+     *
+     * @return Numero de secuencias en disco
+     */
+    public int getCantidadSecuencias() {
+        return secuencias.size();
+    }
+
+    /**
+     * Cierra las secuencias de una fusion abandonada o fallida y elimina las
+     * secuencias temporales que queden en disco.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            cerrarTodas(secuenciasAbiertas);
+        } finally {
+            for (Path secuencia : secuencias) {
+                Files.deleteIfExists(secuencia);
+            }
+            secuencias.clear();
+        }
+    }
+
+    /**
+     * Cierra todas las secuencias de la lista aunque alguna falle. Cerrar una
+     * secuencia ya agotada no tiene efecto.
+     *
+     * @param abiertas Secuencias a cerrar; queda vacia
+     * @throws IOException El primer error al cerrar, con los demas suprimidos
+     */
+    private static void cerrarTodas(List<SecuenciaOrdenada> abiertas) throws IOException {
+        IOException error = null;
+        for (SecuenciaOrdenada secuencia : abiertas) {
+            try {
+                secuencia.cerrar();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        abiertas.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Contabiliza una linea unica entregada por la fusion.
+     *
+     * @param linea Linea unica
+     * @param conteo Veces que aparecio en la entrada
+     */
+    private void registrarLineaUnica(String linea, int conteo) {
+        totalSinDuplicados++;
+        if (conteo >= 2) {
+            totalDuplicados++;
+            if (muestraDuplicados.size() < AnalizadorDatos.MUESTRA_DUPLICADOS) {
+                muestraDuplicados.add(linea);
+                conteoMuestra.put(linea, conteo);
+            }
+        }
+    }
+
+    /**
+     * Ordena el buffer actual, registrando el tiempo en las metricas del proceso.
+     */
+    private void ordenarBuffer() {
+        MetricasProceso metricas = MetricasProceso.getInstancia();
+        MedicionEtapa medicion = metricas.iniciarEtapa(EtapaProceso.ORDENAMIENTO);
+        Collections.sort(bufferLineas);
+        metricas.finalizarEtapa(medicion, 0, bufferLineas.size());
+    }
+
+    /**
+     * Ordena el buffer actual y lo escribe como secuencia sin repetidos.
+     *
+     * @throws IOException Si falla la escritura
+     */
+    private void volcarBuffer() throws IOException {
+        ordenarBuffer();
+        Path secuencia = Files.createTempFile(directorioTemporal, "secuencia_", ".tmp");
+
+        try (DataOutputStream salida = abrirSalida(secuencia)) {
+            SecuenciaMemoria ordenada = new SecuenciaMemoria(bufferLineas);
+            while (ordenada.avanzar()) {
+                escribirEntrada(salida, ordenada.linea(), ordenada.conteo());
+            }
+        } catch (IOException e) {
+            // Todavia no esta en secuencias: close() no la borraria.
+            borrarTrasError(secuencia, e);
+            throw e;
+        }
+
+        secuencias.add(secuencia);
+        Registro.formatoNormal("Secuencia temporal %d escrita (%d lineas)%n", secuencias.size(), bufferLineas.size());
+
+        bufferLineas = new ArrayList<>();
+        bytesEnBuffer = 0;
+    }
+
+    /**
+     * Fusiona secuencias en grupos hasta que puedan abrirse todas a la vez.
+     *
+     * @throws IOException Si falla la lectura o escritura
+     */
+    private void reducirSecuencias() throws IOException {
+        while (secuencias.size() > FACTOR_FUSION) {
+            List<Path> siguientes = new ArrayList<>();
+            try {
+                reducirPasada(siguientes);
+            } catch (IOException e) {
+                // Las entradas de los grupos ya fusionados se borraron: sus
+                // resultados solo estan en siguientes.
+                for (Path fusionada : siguientes) {
+                    borrarTrasError(fusionada, e);
+                }
+                throw e;
+            }
+
+            secuencias.clear();
+            secuencias.addAll(siguientes);
+        }
+    }
+
+    /**
+     * Fusiona las secuencias actuales en grupos de {@link #FACTOR_FUSION},
+     * agregando cada resultado a la lista a medida que se escribe.
+     */
+    private void reducirPasada(List<Path> siguientes) throws IOException {
+        for (int inicio = 0; inicio < secuencias.size(); inicio += FACTOR_FUSION) {
+            List<Path> grupo = secuencias.subList(inicio, Math.min(inicio + FACTOR_FUSION, secuencias.size()));
+            Path destino = Files.createTempFile(directorioTemporal, "secuencia_", ".tmp");
+
+            List<SecuenciaOrdenada> abiertas = new ArrayList<>();
+            try (DataOutputStream salida = abrirSalida(destino)) {
+                for (Path secuencia : grupo) {
+                    abiertas.add(new SecuenciaArchivo(secuencia));
+                }
+                FusionSecuencias fusion = new FusionSecuencias(abiertas);
+                while (fusion.hayMas()) {
+                    String linea = fusion.siguiente();
+                    escribirEntrada(salida, linea, fusion.getConteoUltima());
+                }
+            } catch (IOException e) {
+                try {
+                    cerrarTodas(abiertas);
+                } catch (IOException alCerrar) {
+                    e.addSuppressed(alCerrar);
+                }
+                borrarTrasError(destino, e);
+                throw e;
+            }
+
+            siguientes.add(destino);
+            for (Path secuencia : grupo) {
+                Files.deleteIfExists(secuencia);
+            }
+        }
+    }
+
+    /**
+     * Borra un archivo temporal despues de un error, sin ocultar el error
+     * original si el borrado tambien falla.
+     */
+    private static void borrarTrasError(Path archivo, IOException error) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException alBorrar) {
+            error.addSuppressed(alBorrar);
+        }
+    }
+
+    private static DataOutputStream abrirSalida(Path archivo) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(archivo), TAMANO_BUFFER));
+    }
+
+    private static void escribirEntrada(DataOutputStream salida, String linea, int conteo) throws IOException {
+        byte[] bytes = linea.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(conteo);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    /**
+     * Secuencia ordenada de lineas unicas con su numero de apariciones.
+     */
+    private interface SecuenciaOrdenada {
+        /** Avanza a la siguiente linea distinta; devuelve false al terminar. */
+        boolean avanzar() throws IOException;
+        String linea();
+        int conteo();
+        void cerrar() throws IOException;
+    }
+
+    /**
+     * Recorre una lista ya ordenada agrupando las lineas iguales consecutivas.
+     */
+    private static class SecuenciaMemoria implements SecuenciaOrdenada {
+        private final List<String> lineas;
+        private int posicion = 0;
+        private String linea;
+        private int conteo;
+
+        SecuenciaMemoria(List<String> lineasOrdenadas) {
+            this.lineas = lineasOrdenadas;
+        }
+
+        @Override
+        public boolean avanzar() {
+            if (posicion >= lineas.size()) {
+                return false;
+            }
+            linea = lineas.get(posicion++);
+            conteo = 1;
+            while (posicion < lineas.size() && lineas.get(posicion).equals(linea)) {
+                posicion++;
+                conteo++;
+            }
+            return true;
+        }
+
+        @Override public String linea() { return linea; }
+        @Override public int conteo() { return conteo; }
+        @Override public void cerrar() { }
+    }
+
+    /**
+     * Lee una secuencia temporal escrita por {@link #volcarBuffer()}.
+     */
+    private static class SecuenciaArchivo implements SecuenciaOrdenada {
+        private final DataInputStream entrada;
+        private byte[] bytes = new byte[256];
+        private String linea;
+        private int conteo;
+
+        SecuenciaArchivo(Path archivo) throws IOException {
+            this.entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), TAMANO_BUFFER));
+        }
+
+        @Override
+        public boolean avanzar() throws IOException {
+            try {
+                conteo = entrada.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            int longitud = entrada.readInt();
+            if (longitud > bytes.length) {
+                bytes = new byte[Math.max(longitud, bytes.length * 2)];
+            }
+            entrada.readFully(bytes, 0, longitud);
+            linea = new String(bytes, 0, longitud, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override public String linea() { return linea; }
+        @Override public int conteo() { return conteo; }
+        @Override public void cerrar() throws IOException { entrada.close(); }
+    }
+
+    /**
+     * Fusion k-way de secuencias ordenadas: entrega cada linea una sola vez
+     * sumando sus apariciones en todas las secuencias.
+     */
+    private static class FusionSecuencias {
+        private final PriorityQueue<SecuenciaOrdenada> cola;
+        private int conteoUltima;
+
+        FusionSecuencias(List<SecuenciaOrdenada> secuencias) throws IOException {
+            this.cola = new PriorityQueue<>(Math.max(1, secuencias.size()),
+                    Comparator.comparing(SecuenciaOrdenada::linea));
+            for (SecuenciaOrdenada secuencia : secuencias) {
+                reinsertar(secuencia);
+            }
+        }
+
+        boolean hayMas() {
+            return !cola.isEmpty();
+        }
+
+        String siguiente() throws IOException {
+            SecuenciaOrdenada menor = cola.poll();
+            String linea = menor.linea();
+            int conteo = menor.conteo();
+            reinsertar(menor);
+
+            while (!cola.isEmpty() && cola.peek().linea().equals(linea)) {
+                SecuenciaOrdenada igual = cola.poll();
+                conteo += igual.conteo();
+                reinsertar(igual);
+            }
+
+            conteoUltima = conteo;
+            return linea;
+        }
+
+        int getConteoUltima() {
+            return conteoUltima;
+        }
+
+        private void reinsertar(SecuenciaOrdenada secuencia) throws IOException {
+            if (secuencia.avanzar()) {
+                cola.add(secuencia);
+            } else {
+                secuencia.cerrar();
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package archivosfragmentados.service;
 
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.model.ConfiguracionProceso.ModoProcesamiento;
 import archivosfragmentados.model.Entidad;
+import archivosfragmentados.util.Registro;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
@@ -14,9 +18,15 @@ public class ProcesadorDatos {
     private final AnalizadorDatos analizador;
     private final ManejadorCSV manejadorCSV;
     private final VisualizadorResultados visualizador;
+    private final ConfiguracionProceso configuracion;
     
     public ProcesadorDatos() {
-        this.analizador = new AnalizadorDatos();
+        this(new ConfiguracionProceso());
+    }
+    
+    public ProcesadorDatos(ConfiguracionProceso configuracion) {
+        this.configuracion = configuracion;
+        this.analizador = new AnalizadorDatos(configuracion);
         this.manejadorCSV = new ManejadorCSV();
         this.visualizador = new VisualizadorResultados();
     }
@@ -31,51 +41,238 @@ public class ProcesadorDatos {
             
             Path directorioEntrada = gestorRutas.obtenerDirectorioEntrada();
             
-            SelectorArchivos selector = new SelectorArchivos(gestorRutas.getScanner());
+            SelectorArchivos selector = new SelectorArchivos(gestorRutas.getScanner(), configuracion.isRecursivo());
             List<Path> archivosSeleccionados = selector.seleccionarArchivos(directorioEntrada);
             
             if (archivosSeleccionados.isEmpty()) {
-                System.out.println("No se seleccionaron archivos para procesar.");
+                Registro.resumen("No se seleccionaron archivos para procesar.");
                 return;
             }
             
             visualizador.mostrarSeparador();
-            System.out.println("PROCESANDO ARCHIVOS SELECCIONADOS...");
+            Registro.normal("PROCESANDO ARCHIVOS SELECCIONADOS...");
+            
+            if (configuracion.isPorEntidad()) {
+                procesarPorEntidad(archivosSeleccionados, gestorRutas, lector);
+                return;
+            }
+            if (configuracion.isIncremental()) {
+                procesarIncremental(archivosSeleccionados, gestorRutas);
+                return;
+            }
+            if (configuracion.getModo() == ModoProcesamiento.FLUJO) {
+                procesarEnFlujo(archivosSeleccionados, gestorRutas, lector, escritor);
+                return;
+            }
+            if (configuracion.getModo() == ModoProcesamiento.EXTERNO) {
+                procesarConOrdenExterno(archivosSeleccionados, gestorRutas, lector, escritor);
+                return;
+            }
+            if (configuracion.getModo() == ModoProcesamiento.APROXIMADO) {
+                procesarAproximado(archivosSeleccionados, lector);
+                return;
+            }
             
             Map<String, Entidad> entidades = lector.leerArchivosSeleccionados(archivosSeleccionados);
 
 if (entidades.isEmpty()) {
-    System.out.println("No se pudieron procesar los archivos seleccionados.");
+    Registro.resumen("No se pudieron procesar los archivos seleccionados.");
     return;
 }
 
 manejadorCSV.establecerCabecera(lector.getCabeceraDetectada());
 
-List<String> datosUnificados = manejadorCSV.procesarDatos(entidades);
-            
             visualizador.mostrarResumenDetallado(entidades);
+            // Un solo recorrido sobre las lineas de las entidades: sin lista
+            // unificada ni lista final con cabecera antes de escribir.
+            AnalizadorDatos.ResultadoAnalisis resultado =
+                    analizador.analizarEntidades(entidades, lector.getCabeceraDetectada());
+            // El resultado tiene sus propias lineas: las de las entidades se liberan antes de escribir.
+            entidades.values().forEach(Entidad::liberarLineas);
+            completarReconstruccion(resultado, gestorRutas, escritor);
             
-            AnalizadorDatos.ResultadoAnalisis resultado = analizador.analizarYEliminarDuplicados(datosUnificados);
+        } catch (IOException | IllegalStateException e) {
+            Registro.error("ERROR DURANTE EL PROCESAMIENTO: " + e.getMessage());
+        } finally {
+            gestorRutas.cerrar();
+        }
+    }
+    
+    /**
+     * Reconstruye el archivo maestro en modo flujo: las lineas pasan del lector
+     * al acumulador de duplicados y de ahi al escritor, sin guardarse por entidad
+     * ni copiarse en listas intermedias.
+     * 
+     * @param archivosSeleccionados Archivos a procesar
+     * @param gestorRutas Gestor para obtener la ruta de salida
+     * @param lector Lector de fragmentos
+     * @param escritor Escritor del archivo final
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    private void procesarEnFlujo(List<Path> archivosSeleccionados, GestorRutas gestorRutas,
+                                 LectorArchivos lector, EscritorArchivos escritor) throws IOException {
+        AnalizadorDatos.AcumuladorDuplicados acumulador = analizador.crearAcumulador(lector::getCabeceraDetectada);
+        Map<String, Entidad> entidades = lector.leerArchivosEnFlujo(archivosSeleccionados, acumulador);
+        
+        if (entidades.isEmpty()) {
+            Registro.resumen("No se pudieron procesar los archivos seleccionados.");
+            return;
+        }
+        
+        manejadorCSV.establecerCabecera(lector.getCabeceraDetectada());
+        visualizador.mostrarResumenDetallado(entidades);
+        
+        completarReconstruccion(acumulador.obtenerResultado(), gestorRutas, escritor);
+    }
+    
+    /**
+     * Recorre los fragmentos una vez y muestra las estadisticas de duplicados
+     * estimadas en memoria fija. No escribe archivo maestro.
+     * 
+     * @param archivosSeleccionados Archivos a procesar
+     * @param lector Lector de fragmentos
+     * @throws IOException Si ocurre un error de lectura
+     */
+    private void procesarAproximado(List<Path> archivosSeleccionados, LectorArchivos lector) throws IOException {
+        EstimadorDuplicados estimador = new EstimadorDuplicados(configuracion.getPrecisionAproximada(),
+                                                                configuracion.getLineasFrecuentes());
+        Map<String, Entidad> entidades = lector.leerArchivosEnFlujo(archivosSeleccionados, estimador);
+        
+        if (entidades.isEmpty()) {
+            Registro.resumen("No se pudieron procesar los archivos seleccionados.");
+            return;
+        }
+        
+        visualizador.mostrarResumenDetallado(entidades);
+        visualizador.mostrarAnalisisAproximado(estimador.obtenerEstimacion());
+    }
+    
+    /**
+     * Muestra el analisis y escribe el archivo final directamente desde las
+     * lineas unicas del resultado, sin armar una lista con la cabecera.
+     * 
+     * @param resultado Resultado del analisis de duplicados
+     * @param gestorRutas Gestor para obtener la ruta de salida
+     * @param escritor Escritor del archivo final
+     * @throws IOException Si ocurre un error de escritura
+     */
+    private void completarReconstruccion(AnalizadorDatos.ResultadoAnalisis resultado, GestorRutas gestorRutas,
+                                         EscritorArchivos escritor) throws IOException {
+        visualizador.mostrarAnalisisDuplicados(resultado);
+        
+        Path archivoSalida = gestorRutas.obtenerArchivoSalida();
+        String cabecera = manejadorCSV.obtenerCabeceraParaSalida();
+        EscritorArchivos.ResultadoEscritura escritura = 
+                escritor.escribirArchivo(archivoSalida, cabecera, resultado.getDatosSinDuplicados());
+        
+        visualizador.mostrarResultadoFinal(escritura.getArchivo(), resultado.getTotalLineas(), 
+                                         resultado.getTotalSinDuplicados(), 
+                                         resultado.getTotalDuplicados());
+        visualizador.mostrarEscritura(escritura);
+        
+        if (gestorRutas.mostrarContenidoFinal()) {
+            visualizador.mostrarContenidoArchivo(cabecera, resultado.getDatosSinDuplicados());
+        }
+    }
+    
+    /**
+     * Reconstruye el archivo maestro con ordenamiento externo: las lineas se
+     * vuelcan a secuencias temporales ordenadas segun el presupuesto de memoria
+     * y se fusionan directamente en el archivo de salida.
+     * 
+     * @param archivosSeleccionados Archivos a procesar
+     * @param gestorRutas Gestor para obtener la ruta de salida
+     * @param lector Lector de fragmentos
+     * @param escritor Escritor del archivo final
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    private void procesarConOrdenExterno(List<Path> archivosSeleccionados, GestorRutas gestorRutas,
+                                         LectorArchivos lector, EscritorArchivos escritor) throws IOException {
+        try (OrdenadorExterno ordenador = new OrdenadorExterno(configuracion.getPresupuestoMemoria(),
+                                                               configuracion.getDirectorioTemporal())) {
+            Map<String, Entidad> entidades = lector.leerArchivosEnFlujo(archivosSeleccionados, ordenador);
             
-            visualizador.mostrarAnalisisDuplicados(resultado);
+            if (entidades.isEmpty()) {
+                Registro.resumen("No se pudieron procesar los archivos seleccionados.");
+                return;
+            }
             
-            List<String> archivoFinal = manejadorCSV.prepararArchivoFinal(resultado.getDatosSinDuplicados());
+            manejadorCSV.establecerCabecera(lector.getCabeceraDetectada());
+            visualizador.mostrarResumenDetallado(entidades);
             
             Path archivoSalida = gestorRutas.obtenerArchivoSalida();
-            escritor.escribirArchivo(archivoSalida, archivoFinal);
+            String cabecera = manejadorCSV.obtenerCabeceraParaSalida();
+            EscritorArchivos.ResultadoEscritura escritura;
+            try {
+                escritura = escritor.escribirArchivo(archivoSalida, cabecera, ordenador.fusionar());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
             
-            visualizador.mostrarResultadoFinal(archivoSalida, datosUnificados.size(), 
-                                             resultado.getDatosSinDuplicados().size(), 
-                                             resultado.getDuplicados().size());
+            AnalizadorDatos.ResultadoAnalisis resultado = ordenador.obtenerResultado();
+            visualizador.mostrarAnalisisDuplicados(resultado);
+            visualizador.mostrarResultadoFinal(escritura.getArchivo(), resultado.getTotalLineas(), 
+                                             resultado.getTotalSinDuplicados(), 
+                                             resultado.getTotalDuplicados());
+            visualizador.mostrarEscritura(escritura);
             
             if (gestorRutas.mostrarContenidoFinal()) {
-                visualizador.mostrarContenidoArchivo(archivoFinal); 
+                visualizador.mostrarContenidoArchivo(escritura.getArchivo(), 
+                        resultado.getTotalSinDuplicados() + (cabecera != null ? 1 : 0));
             }
-            
-        } catch (IOException e) {
-            System.err.println("ERROR DURANTE EL PROCESAMIENTO: " + e.getMessage());
-        } finally {
-            gestorRutas.cerrar();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Reconstruye cada entidad en su propio archivo {@code <entidad>_rec.csv},
+     * procesando las entidades en paralelo.
+     * 
+     * @param archivosSeleccionados Archivos a procesar
+     * @param gestorRutas Gestor para obtener el directorio de salida
+     * @param lector Lector de fragmentos
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    private void procesarPorEntidad(List<Path> archivosSeleccionados, GestorRutas gestorRutas,
+                                    LectorArchivos lector) throws IOException {
+        Map<String, Entidad> entidades = lector.leerArchivosSeleccionados(archivosSeleccionados);
+        
+        if (entidades.isEmpty()) {
+            Registro.resumen("No se pudieron procesar los archivos seleccionados.");
+            return;
+        }
+        
+        visualizador.mostrarResumenDetallado(entidades);
+        
+        Path directorioSalida = gestorRutas.obtenerDirectorioSalida();
+        List<ReconstructorEntidades.ResultadoEntidad> resultados = 
+                new ReconstructorEntidades(configuracion).reconstruir(entidades, lector, directorioSalida);
+        
+        visualizador.mostrarResultadoPorEntidad(resultados);
+    }
+    
+    /**
+     * Actualiza el archivo maestro leyendo solo los fragmentos nuevos segun el
+     * manifiesto guardado junto a la salida.
+     * 
+     * @param archivosSeleccionados Archivos que forman el maestro
+     * @param gestorRutas Gestor para obtener la ruta de salida
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    private void procesarIncremental(List<Path> archivosSeleccionados, GestorRutas gestorRutas) throws IOException {
+        Path archivoSalida = new EscritorArchivos(configuracion).ajustarNombre(gestorRutas.obtenerArchivoSalida());
+        
+        ActualizadorIncremental.ResumenActualizacion resumen = 
+                new ActualizadorIncremental(configuracion).actualizar(archivosSeleccionados, archivoSalida);
+        
+        visualizador.mostrarResumenIncremental(resumen);
+        if (resumen.getResultado() != null) {
+            visualizador.mostrarAnalisisDuplicados(resumen.getResultado());
+        }
+        visualizador.mostrarResultadoFinal(archivoSalida, resumen.getLineasLeidas(), 
+                                         resumen.getLineasFinales(), resumen.getDuplicadosEliminados());
+        
+        if (gestorRutas.mostrarContenidoFinal()) {
+            visualizador.mostrarContenidoArchivo(archivoSalida, resumen.getLineasFinales() + 1);
+        }
+    }
+}
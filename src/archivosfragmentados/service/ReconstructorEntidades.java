@@ -0,0 +1,126 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.model.Entidad;
+import archivosfragmentados.util.Registro;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconstruye cada entidad en su propio archivo {@code <entidad>_rec.csv}:
+ * deduplica, ordena y escribe cada una por separado y en paralelo, en lugar
+ * de unificar todas las lineas en un unico ordenamiento.
+ */
+public class ReconstructorEntidades {
+
+    private static final String SUFIJO_SALIDA = "_rec.csv";
+
+    private final AnalizadorDatos analizador;
+    private final EscritorArchivos escritor;
+    private final int hilos;
+
+    public ReconstructorEntidades(ConfiguracionProceso configuracion) {
+        this.analizador = new AnalizadorDatos(configuracion);
+        this.escritor = new EscritorArchivos(configuracion);
+        this.hilos = configuracion.getHilosEntidades();
+    }
+
+    /**
+     * Reconstruye todas las entidades leidas en el directorio indicado.
+     *
+     * @param entidades Entidades con sus lineas almacenadas
+     * @param lector Lector que leyo las entidades, para obtener sus cabeceras
+     * @param directorioSalida Directorio donde se escriben los archivos
+     * @return Resultado de cada entidad, en orden de nombre
+     * @throws IOException Si falla la escritura de alguna entidad
+     */
+    public List<ResultadoEntidad> reconstruir(Map<String, Entidad> entidades, LectorArchivos lector,
+                                              Path directorioSalida) throws IOException {
+        // Las entidades grandes se envian primero para que no queden al final
+        // ocupando un solo hilo mientras los demas esperan.
+        List<Entidad> pendientes = new ArrayList<>(entidades.values());
+        pendientes.sort(Comparator.comparingInt(Entidad::getCantidadLineas).reversed());
+
+        List<Callable<ResultadoEntidad>> tareas = new ArrayList<>();
+        for (Entidad entidad : pendientes) {
+            String cabecera = lector.getCabeceraEntidad(entidad.getNombre());
+            Path archivo = directorioSalida.resolve(entidad.getNombre() + SUFIJO_SALIDA);
+            tareas.add(() -> reconstruirEntidad(entidad, cabecera, archivo));
+        }
+
+        int paralelismo = Math.max(1, Math.min(hilos, tareas.size()));
+        Registro.normal("RECONSTRUYENDO " + tareas.size() + " ENTIDADES CON " + paralelismo + " HILOS...");
+
+        List<ResultadoEntidad> resultados = new ArrayList<>();
+        ForkJoinPool grupo = new ForkJoinPool(paralelismo);
+        try {
+            for (Future<ResultadoEntidad> futuro : grupo.invokeAll(tareas)) {
+                resultados.add(esperar(futuro));
+            }
+        } finally {
+            grupo.shutdownNow();
+        }
+
+        resultados.sort(Comparator.comparing(ResultadoEntidad::getNombreEntidad));
+        return resultados;
+    }
+
+    /**
+     * Deduplica, ordena y escribe una entidad. Se ejecuta en un hilo del grupo.
+     */
+    private ResultadoEntidad reconstruirEntidad(Entidad entidad, String cabecera, Path archivo) throws IOException {
+        long inicio = System.nanoTime();
+        AnalizadorDatos.ResultadoAnalisis resultado = analizador.analizarEntidad(entidad, cabecera);
+        entidad.liberarLineas();
+        // Con --comprimir el escritor agrega la extension .gz al nombre.
+        Path escrito = escritor.escribirArchivo(archivo, cabecera, resultado.getDatosSinDuplicados()).getArchivo();
+        return new ResultadoEntidad(entidad.getNombre(), escrito, resultado, System.nanoTime() - inicio);
+    }
+
+    private static ResultadoEntidad esperar(Future<ResultadoEntidad> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reconstruccion por entidad interrumpida");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error al reconstruir entidad: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Resultado de la reconstruccion de una entidad.
+     */
+    public static class ResultadoEntidad {
+        private final String nombreEntidad;
+        private final Path archivoSalida;
+        private final AnalizadorDatos.ResultadoAnalisis resultado;
+        private final long nanosegundos;
+
+        public ResultadoEntidad(String nombreEntidad, Path archivoSalida,
+                                AnalizadorDatos.ResultadoAnalisis resultado, long nanosegundos) {
+            this.nombreEntidad = nombreEntidad;
+            this.archivoSalida = archivoSalida;
+            this.resultado = resultado;
+            this.nanosegundos = nanosegundos;
+        }
+
+        public String getNombreEntidad() { return nombreEntidad; }
+        public Path getArchivoSalida() { return archivoSalida; }
+        public AnalizadorDatos.ResultadoAnalisis getResultado() { return resultado; }
+        public long getMilisegundos() { return TimeUnit.NANOSECONDS.toMillis(nanosegundos); }
+    }
+}
@@ -1,12 +1,14 @@
 package archivosfragmentados.service;
 
+import archivosfragmentados.util.CatalogoFragmentos;
+import archivosfragmentados.util.ExploradorFragmentos;
+import archivosfragmentados.util.Registro;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.stream.Collectors;
 
 /**
  * Servicio para la seleccion interactiva de archivos CSV.
@@ -14,9 +16,19 @@ import java.util.stream.Collectors;
 public class SelectorArchivos {
     
     private final Scanner scanner;
+    private final boolean recursivo;
     
     public SelectorArchivos(Scanner scanner) {
+        this(scanner, false);
+    }
+    
+    /**
+     * @param scanner Scanner compartido con el gestor de rutas
+     * @param recursivo true para listar tambien los fragmentos de los subdirectorios
+     */
+    public SelectorArchivos(Scanner scanner, boolean recursivo) {
         this.scanner = scanner;
+        this.recursivo = recursivo;
     }
     
     /**
@@ -27,17 +39,18 @@ public class SelectorArchivos {
      * @throws IOException Si hay error al acceder a los archivos
      */
     public List<Path> seleccionarArchivos(Path directorio) throws IOException {
-        List<Path> archivosDisponibles = obtenerArchivosCsv(directorio);
+        CatalogoFragmentos catalogo = ExploradorFragmentos.getInstancia().explorar(directorio, recursivo);
+        List<Path> archivosDisponibles = catalogo.getRutas();
         
         if (archivosDisponibles.isEmpty()) {
-            System.out.println("No se encontraron archivos CSV en el directorio.");
+            Registro.dialogo("No se encontraron archivos CSV en el directorio.");
             return new ArrayList<>();
         }
         
-        mostrarArchivosDisponibles(archivosDisponibles);
+        mostrarArchivosDisponibles(catalogo);
         
         if (!confirmarProcesamiento()) {
-            System.out.println("Procesamiento cancelado por el usuario.");
+            Registro.dialogo("Procesamiento cancelado por el usuario.");
             return new ArrayList<>();
         }
         
@@ -45,37 +58,38 @@ public class SelectorArchivos {
     }
     
     /**
-     * Muestra la lista de archivos CSV disponibles.
+     * Muestra la lista de archivos CSV disponibles. Las lineas salen del
+     * indice de fragmentos del directorio; solo se cuentan los archivos
+     * nuevos o modificados. Los archivos de subdirectorios se muestran con
+     * su ruta relativa.
      * 
-     * @param archivos Lista de archivos encontrados
+     * @param catalogo Catalogo del directorio
      */
-    private void mostrarArchivosDisponibles(List<Path> archivos) throws IOException {
-        System.out.println("\n" + "=".repeat(60));
-        System.out.println("ARCHIVOS CSV ENCONTRADOS:");
-        System.out.println("=".repeat(60));
+    private void mostrarArchivosDisponibles(CatalogoFragmentos catalogo) throws IOException {
+        Registro.dialogo("\n" + "=".repeat(60));
+        Registro.dialogo("ARCHIVOS CSV ENCONTRADOS:");
+        Registro.dialogo("=".repeat(60));
+        
+        List<CatalogoFragmentos.Fragmento> fragmentos = catalogo.getFragmentos();
+        IndiceFragmentos indice = IndiceFragmentos.cargar(catalogo.getDirectorio());
+        Map<Path, IndiceFragmentos.MetadatosFragmento> metadatos =
+            indice.obtenerMetadatos(fragmentos, Runtime.getRuntime().availableProcessors());
         
-        for (int i = 0; i < archivos.size(); i++) {
-            Path archivo = archivos.get(i);
-            long tamano = Files.size(archivo);
-            long lineas = contarLineas(archivo);
+        long tamanoTotal = 0;
+        long lineasTotales = 0;
+        for (int i = 0; i < fragmentos.size(); i++) {
+            Path archivo = fragmentos.get(i).getRuta();
+            IndiceFragmentos.MetadatosFragmento fragmento = metadatos.get(archivo);
+            tamanoTotal += fragmento.getTamano();
+            lineasTotales += fragmento.getLineas();
             
-            System.out.printf("%2d. %-25s (%d bytes, ~%d lineas)%n", 
-                i + 1, archivo.getFileName(), tamano, lineas);
-        }
-    }
-    
-    /**
-     * Cuenta las lineas de un archivo.
-     * 
-     * @param archivo Archivo a contar
-     * @return Numero de lineas
-     */
-    private long contarLineas(Path archivo) {
-        try {
-            return Files.lines(archivo).count();
-        } catch (IOException e) {
-            return 0;
+            Registro.formatoDialogo("%2d. %-25s (%d bytes, ~%d lineas)%n", 
+                i + 1, catalogo.getDirectorio().relativize(archivo), fragmento.getTamano(), fragmento.getLineas());
         }
+        
+        Registro.formatoDialogo("TOTAL: %d bytes, ~%d lineas (%d archivos contados, %d desde el indice)%n",
+            tamanoTotal, lineasTotales, indice.getFragmentosContados(),
+            fragmentos.size() - indice.getFragmentosContados());
     }
     
     /**
@@ -84,7 +98,7 @@ public class SelectorArchivos {
      * @return true si confirma el procesamiento
      */
     private boolean confirmarProcesamiento() {
-        System.out.print("\nDesea procesar estos archivos? (S/n): ");
+        Registro.pregunta("\nDesea procesar estos archivos? (S/n): ");
         String respuesta = scanner.nextLine().trim().toLowerCase();
         return respuesta.isEmpty() || respuesta.equals("s") || respuesta.equals("si");
     }
@@ -96,22 +110,22 @@ public class SelectorArchivos {
      * @return Lista de archivos seleccionados
      */
     private List<Path> seleccionarArchivosEspecificos(List<Path> archivosDisponibles) {
-        System.out.println("\nOPCIONES DE SELECCION:");
-        System.out.println("- Presione Enter para procesar TODOS los archivos");
-        System.out.println("- Escriba los numeros separados por comas (ej: 1,3,5)");
-        System.out.println("- Escriba un rango (ej: 1-5)");
+        Registro.dialogo("\nOPCIONES DE SELECCION:");
+        Registro.dialogo("- Presione Enter para procesar TODOS los archivos");
+        Registro.dialogo("- Escriba los numeros separados por comas (ej: 1,3,5)");
+        Registro.dialogo("- Escriba un rango (ej: 1-5)");
         
         while (true) {
-            System.out.print("\nSeleccion: ");
+            Registro.pregunta("\nSeleccion: ");
             String seleccion = scanner.nextLine().trim();
             
             if (seleccion.isEmpty()) {
-                System.out.println("Seleccionados TODOS los archivos (" + archivosDisponibles.size() + ")");
+                Registro.dialogo("Seleccionados TODOS los archivos (" + archivosDisponibles.size() + ")");
                 return archivosDisponibles;
             }
             
             if (seleccion.toLowerCase().equals("todos")) {
-                System.out.println("Seleccionados todos los archivos (" + archivosDisponibles.size() + ")");
+                Registro.dialogo("Seleccionados todos los archivos (" + archivosDisponibles.size() + ")");
                 return archivosDisponibles;
             }
             
@@ -122,10 +136,10 @@ public class SelectorArchivos {
                     return seleccionados;
                 }
             } catch (Exception e) {
-                System.out.println("ERROR: Seleccion invalida. " + e.getMessage());
+                Registro.dialogo("ERROR: Seleccion invalida. " + e.getMessage());
             }
             
-            System.out.println("Intente nuevamente con un formato valido o presione Enter para todos.");
+            Registro.dialogo("Intente nuevamente con un formato valido o presione Enter para todos.");
         }
     }
     
@@ -168,25 +182,9 @@ public class SelectorArchivos {
      * @param seleccionados Lista de archivos seleccionados
      */
     private void mostrarArchivosSeleccionados(List<Path> seleccionados) {
-        System.out.println("\nARCHIVOS SELECCIONADOS PARA PROCESAMIENTO:");
+        Registro.dialogo("\nARCHIVOS SELECCIONADOS PARA PROCESAMIENTO:");
         for (int i = 0; i < seleccionados.size(); i++) {
-            System.out.printf("  %d. %s%n", i + 1, seleccionados.get(i).getFileName());
+            Registro.formatoDialogo("  %d. %s%n", i + 1, seleccionados.get(i).getFileName());
         }
     }
-    
-    /**
-     * Obtiene todos los archivos CSV de un directorio.
-     * 
-     * @param directorio Directorio a examinar
-     * @return Lista de archivos CSV
-     * @throws IOException Si hay error al acceder al directorio
-     */
-    private List<Path> obtenerArchivosCsv(Path directorio) throws IOException {
-        return Files.list(directorio)
-                .filter(Files::isRegularFile)
-                .filter(archivo -> archivo.toString().toLowerCase().endsWith(".csv"))
-                .filter(archivo -> !archivo.getFileName().toString().equalsIgnoreCase("entidad_rec.csv"))
-                .sorted()
-                .collect(Collectors.toList());
-    }
 }
\ No newline at end of file
@@ -0,0 +1,241 @@
+package archivosfragmentados.service;
+
+import archivosfragmentados.model.ConfiguracionProceso;
+import archivosfragmentados.util.ExploradorFragmentos;
+import archivosfragmentados.util.Registro;
+import archivosfragmentados.util.ValidadorArchivos;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Modo continuo: vigila el directorio de fragmentos y actualiza el archivo
+ * maestro de forma incremental cuando llegan fragmentos nuevos.
+ *
+ * <p>Un fragmento se considera terminado cuando pasa una ventana completa sin
+ * eventos y su tamano y fecha no cambiaron. Los fragmentos listos se procesan
+ * juntos en un lote; los que no cambiaron nunca se vuelven a leer gracias al
+ * manifiesto de {@link ActualizadorIncremental}.</p>
+ *
+ * <p>Un lote que falla se informa y se reintenta en la siguiente ventana, asi
+ * que un fragmento borrado o bloqueado a mitad de lote no detiene la
+ * vigilancia. Mientras un fragmento ya registrado siga creciendo, el lote se
+ * pospone: sin el, la actualizacion lo tomaria como borrado.</p>
+ */
+public class VigilanteDirectorio {
+
+    private static final long INTERVALO_SONDEO_MS = 500;
+
+    private final ConfiguracionProceso configuracion;
+    private final Path directorio;
+    private final Path archivoSalida;
+    private final long ventanaMillis;
+    private final ValidadorArchivos validador = new ValidadorArchivos();
+    private final ExploradorFragmentos explorador = ExploradorFragmentos.getInstancia();
+    private final Map<Path, EstadoPendiente> pendientes = new HashMap<>();
+    private int lotesProcesados = 0;
+
+    public VigilanteDirectorio(ConfiguracionProceso configuracion) {
+        this.configuracion = configuracion;
+        this.directorio = configuracion.getDirectorioVigilado();
+        this.archivoSalida = new EscritorArchivos(configuracion).ajustarNombre(configuracion.getArchivoSalida());
+        this.ventanaMillis = configuracion.getVentanaVigilancia() * 1000L;
+    }
+
+    /**
+     * Procesa lo que ya hay en el directorio y luego vigila cambios hasta que
+     * el hilo sea interrumpido.
+     *
+     * @throws IOException Si el directorio no es valido o deja de ser accesible
+     * @throws InterruptedException Si se interrumpe la espera de eventos
+     */
+    public void ejecutar() throws IOException, InterruptedException {
+        if (!Files.isDirectory(directorio)) {
+            throw new IOException("El directorio a vigilar no existe o no es valido: " + directorio);
+        }
+
+        Registro.resumen("VIGILANDO DIRECTORIO: " + directorio.toAbsolutePath());
+        Registro.resumen("Archivo maestro: " + archivoSalida.toAbsolutePath());
+        Registro.resumen("Ventana de lote: " + ventanaMillis / 1000 + " s (Ctrl+C para terminar)");
+
+        ActualizadorIncremental actualizador = new ActualizadorIncremental(configuracion);
+        boolean loteAtrasado = !procesarLote(actualizador);
+
+        try (WatchService vigilante = FileSystems.getDefault().newWatchService()) {
+            directorio.register(vigilante, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            long inicioLote = loteAtrasado ? System.currentTimeMillis() : -1;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey clave = vigilante.poll(INTERVALO_SONDEO_MS, TimeUnit.MILLISECONDS);
+                long ahora = System.currentTimeMillis();
+
+                if (clave != null) {
+                    boolean hayCambios = registrarEventos(clave, ahora);
+                    if (!clave.reset()) {
+                        throw new IOException("El directorio vigilado ya no es accesible: " + directorio);
+                    }
+                    if (hayCambios && inicioLote < 0) {
+                        inicioLote = ahora;
+                    }
+                }
+
+                if (inicioLote >= 0 && ahora - inicioLote >= ventanaMillis
+                        && (hayFragmentosListos(ahora) || loteAtrasado)) {
+                    loteAtrasado = !procesarLote(actualizador);
+                    inicioLote = pendientes.isEmpty() && !loteAtrasado ? -1 : ahora;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            Registro.resumen("Vigilancia finalizada.");
+        }
+    }
+
+    /**
+     * Anota los fragmentos afectados por los eventos recibidos.
+     *
+     * @return true si algun evento afecta a fragmentos
+     */
+    private boolean registrarEventos(WatchKey clave, long ahora) {
+        boolean hayCambios = false;
+
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Se perdieron eventos: se revisa todo el directorio en el siguiente lote.
+                try {
+                    for (Path archivo : explorador.explorarDeNuevo(directorio, false).getRutas()) {
+                        pendientes.put(archivo, new EstadoPendiente(archivo, ahora));
+                    }
+                } catch (IOException e) {
+                    Registro.error("ERROR AL REVISAR EL DIRECTORIO VIGILADO: " + e.getMessage());
+                }
+                hayCambios = true;
+                continue;
+            }
+
+            Path archivo = directorio.resolve((Path) evento.context());
+            if (validador.extraerNombreEntidad(archivo.getFileName().toString()) == null) {
+                continue;
+            }
+            pendientes.put(archivo, new EstadoPendiente(archivo, ahora));
+            hayCambios = true;
+        }
+
+        return hayCambios;
+    }
+
+    /**
+     * Quita de pendientes los fragmentos que terminaron de escribirse o se
+     * borraron, y dice si hay alguno para procesar.
+     */
+    private boolean hayFragmentosListos(long ahora) {
+        boolean hayListos = false;
+        Iterator<Map.Entry<Path, EstadoPendiente>> iterador = pendientes.entrySet().iterator();
+
+        while (iterador.hasNext()) {
+            Map.Entry<Path, EstadoPendiente> entrada = iterador.next();
+            EstadoPendiente estado = entrada.getValue();
+            EstadoPendiente actual = new EstadoPendiente(entrada.getKey(), estado.ultimoEvento);
+
+            if (!actual.existe) {
+                iterador.remove();
+                hayListos = true;
+            } else if (ahora - estado.ultimoEvento >= ventanaMillis) {
+                if (actual.tamano == estado.tamano && actual.modificado == estado.modificado) {
+                    iterador.remove();
+                    hayListos = true;
+                } else {
+                    entrada.setValue(new EstadoPendiente(entrada.getKey(), ahora));
+                }
+            }
+        }
+
+        return hayListos;
+    }
+
+    /**
+     * Actualiza el maestro con los fragmentos terminados del directorio.
+     *
+     * @return false si el lote fallo o se pospuso y hay que reintentarlo
+     */
+    private boolean procesarLote(ActualizadorIncremental actualizador) {
+        try {
+            // Un fragmento registrado que sigue creciendo faltaria en la lista
+            // y forzaria una reconstruccion sin sus lineas: se espera a que termine.
+            ManifiestoFragmentos manifiesto = ManifiestoFragmentos.cargar(archivoSalida);
+            for (Path archivo : pendientes.keySet()) {
+                if (manifiesto.contiene(archivo)) {
+                    Registro.normal("Lote pospuesto: " + archivo.getFileName() + " sigue cambiando.");
+                    return false;
+                }
+            }
+
+            // Se recorre de nuevo en cada lote: un fragmento reescrito en su lugar
+            // no cambia la fecha del directorio que valida el catalogo guardado.
+            List<Path> fragmentos = explorador.explorarDeNuevo(directorio, false).getRutasConEntidad().stream()
+                    .filter(archivo -> !pendientes.containsKey(archivo))
+                    .filter(archivo -> !archivo.toAbsolutePath().equals(archivoSalida.toAbsolutePath()))
+                    .collect(Collectors.toList());
+
+            lotesProcesados++;
+            long inicio = System.nanoTime();
+            Registro.normal("\nLOTE " + lotesProcesados + ": " + fragmentos.size() + " fragmentos en el directorio");
+
+            ActualizadorIncremental.ResumenActualizacion resumen = actualizador.actualizar(fragmentos, archivoSalida);
+
+            Registro.formatoResumen("LOTE %d COMPLETADO: %d fragmentos leidos, %d lineas finales, %d ms%n",
+                    lotesProcesados, resumen.getFragmentosLeidos(), resumen.getLineasFinales(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            Registro.error("ERROR EN EL LOTE, SE REINTENTARA EN LA SIGUIENTE VENTANA: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Tamano y fecha observados de un fragmento pendiente. Si el archivo
+     * desaparece entre el evento y la lectura se toma como borrado; si no se
+     * pueden leer sus atributos queda pendiente y el lote lo reintentara.
+     */
+    private static class EstadoPendiente {
+        private final boolean existe;
+        private final long tamano;
+        private final long modificado;
+        private final long ultimoEvento;
+
+        EstadoPendiente(Path archivo, long ultimoEvento) {
+            boolean encontrado = true;
+            long leidoTamano = -1;
+            long leidoModificado = -1;
+            try {
+                BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+                leidoTamano = atributos.size();
+                leidoModificado = atributos.lastModifiedTime().toMillis();
+            } catch (NoSuchFileException e) {
+                encontrado = false;
+            } catch (IOException e) {
+                // Sin atributos: se compara como -1 hasta que vuelvan a leerse.
+            }
+            this.existe = encontrado;
+            this.tamano = leidoTamano;
+            this.modificado = leidoModificado;
+            this.ultimoEvento = ultimoEvento;
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package archivosfragmentados.service;
 
 import archivosfragmentados.model.Entidad;
+import archivosfragmentados.monitoreo.EtapaProceso;
+import archivosfragmentados.monitoreo.MetricasProceso;
+import archivosfragmentados.util.ArchivosGzip;
+import archivosfragmentados.util.Registro;
+import archivosfragmentados.util.TopFrecuentes;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -10,23 +18,25 @@ import java.util.Map;
  */
 public class VisualizadorResultados {
     
+    private static final int LINEAS_VISTA_PREVIA = 15;
+    
     /**
      * Muestra el encabezado del programa.
      */
     public void mostrarEncabezado() {
-        System.out.println("================================================================");
-        System.out.println("           PROCESADOR DE ARCHIVOS FRAGMENTADOS v1.0           ");
-        System.out.println("================================================================");
-        System.out.println("Este programa reconstruye archivos fragmentados eliminando");
-        System.out.println("duplicados y unificando el contenido en un archivo maestro.");
-        System.out.println("================================================================");
+        Registro.resumen("================================================================");
+        Registro.resumen("           PROCESADOR DE ARCHIVOS FRAGMENTADOS v1.0           ");
+        Registro.resumen("================================================================");
+        Registro.resumen("Este programa reconstruye archivos fragmentados eliminando");
+        Registro.resumen("duplicados y unificando el contenido en un archivo maestro.");
+        Registro.resumen("================================================================");
     }
     
     /**
      * Muestra un separador visual.
      */
     public void mostrarSeparador() {
-        System.out.println("\n" + "=".repeat(64));
+        Registro.resumen("\n" + "=".repeat(64));
     }
     
     /**
@@ -36,21 +46,21 @@ public class VisualizadorResultados {
      */
     public void mostrarResumenDetallado(Map<String, Entidad> entidades) {
         mostrarSeparador();
-        System.out.println("RESUMEN DE ENTIDADES ENCONTRADAS");
+        Registro.resumen("RESUMEN DE ENTIDADES ENCONTRADAS");
         mostrarSeparador();
         
-        System.out.printf("%-20s %-15s %-20s%n", "ENTIDAD", "ARCHIVOS", "LINEAS TOTALES");
-        System.out.println("-".repeat(64));
+        Registro.formatoResumen("%-20s %-15s %-20s%n", "ENTIDAD", "ARCHIVOS", "LINEAS TOTALES");
+        Registro.resumen("-".repeat(64));
         
         int totalLineas = 0;
         for (Entidad entidad : entidades.values()) {
-            int lineasEntidad = entidad.getLineasDatos().size();
+            int lineasEntidad = entidad.getCantidadLineas();
             totalLineas += lineasEntidad;
-            System.out.printf("%-20s %-15s %-20d%n", 
+            Registro.formatoResumen("%-20s %-15s %-20d%n", 
                 entidad.getNombre(), "Multiples", lineasEntidad);
         }
         
-        System.out.println("-".repeat(64));
+        Registro.resumen("-".repeat(64));
     }
     
     /**
@@ -60,28 +70,103 @@ public class VisualizadorResultados {
      */
     public void mostrarAnalisisDuplicados(AnalizadorDatos.ResultadoAnalisis resultado) {
         mostrarSeparador();
-        System.out.println("ANALISIS DE DUPLICADOS");
+        Registro.resumen("ANALISIS DE DUPLICADOS");
         mostrarSeparador();
         
-        if (resultado.getDuplicados().isEmpty()) {
-            System.out.println("EXCELENTE: No se encontraron lineas duplicadas.");
+        if (resultado.getTotalDuplicados() == 0) {
+            Registro.resumen("EXCELENTE: No se encontraron lineas duplicadas.");
         } else {
-            System.out.println("Se encontraron " + resultado.getDuplicados().size() + " lineas duplicadas:");
-            System.out.println();
+            Registro.resumen("Se encontraron " + resultado.getTotalDuplicados() + " lineas duplicadas:");
+            Registro.resumen("");
             
             int contador = 1;
             for (String duplicado : resultado.getDuplicados()) {
                 int repeticiones = resultado.getConteoLineas().get(duplicado);
-                System.out.printf("%d. [%d repeticiones] %s%n", 
+                Registro.formatoResumen("%d. [%d repeticiones] %s%n", 
                     contador++, repeticiones, 
                     duplicado.length() > 60 ? duplicado.substring(0, 60) + "..." : duplicado);
                 
-                if (contador > 10) {
-                    int restantes = resultado.getDuplicados().size() - 10;
-                    System.out.println("... y " + restantes + " duplicados mas.");
+                if (contador > AnalizadorDatos.MUESTRA_DUPLICADOS) {
                     break;
                 }
             }
+            
+            if (resultado.getTotalDuplicados() > AnalizadorDatos.MUESTRA_DUPLICADOS) {
+                long restantes = resultado.getTotalDuplicados() - AnalizadorDatos.MUESTRA_DUPLICADOS;
+                Registro.resumen("... y " + restantes + " duplicados mas.");
+            }
+        }
+    }
+    
+    /**
+     * Muestra las estadisticas de duplicados estimadas en modo aproximado.
+     * 
+     * @param estimacion Estimacion obtenida al recorrer los fragmentos
+     */
+    public void mostrarAnalisisAproximado(EstimadorDuplicados.Estimacion estimacion) {
+        mostrarSeparador();
+        Registro.resumen("ANALISIS APROXIMADO DE DUPLICADOS");
+        mostrarSeparador();
+        
+        long total = estimacion.getTotalLineas();
+        Registro.formatoResumen("Lineas procesadas:          %d%n", total);
+        Registro.formatoResumen("Lineas distintas (aprox.):  %d (+/- %.1f%%)%n", 
+            estimacion.getLineasDistintas(), estimacion.getErrorRelativo() * 100);
+        Registro.formatoResumen("Lineas repetidas (aprox.):  %d%n", estimacion.getLineasRepetidas());
+        Registro.formatoResumen("Reduccion estimada:         %.1f%%%n", 
+            total > 0 ? estimacion.getLineasRepetidas() * 100.0 / total : 0.0);
+        Registro.formatoResumen("Memoria de las estructuras: %d KB%n", estimacion.getBytesUsados() / 1024);
+        
+        if (estimacion.getMasRepetidas().isEmpty()) {
+            Registro.resumen("No se detectaron lineas repetidas frecuentes.");
+            return;
+        }
+        
+        Registro.resumen("");
+        Registro.resumen("LINEAS MAS REPETIDAS (conteo estimado, minimo garantizado):");
+        int contador = 1;
+        for (TopFrecuentes.LineaFrecuente frecuente : estimacion.getMasRepetidas()) {
+            String linea = frecuente.getLinea();
+            Registro.formatoResumen("%d. [~%d repeticiones, min. %d] %s%n", 
+                contador++, frecuente.getConteo(), frecuente.getMinimo(),
+                linea.length() > 60 ? linea.substring(0, 60) + "..." : linea);
+        }
+    }
+    
+    /**
+     * Muestra el tamano y el rendimiento de la escritura del archivo final.
+     * Si se comprimio, muestra tambien el tamano en disco.
+     * 
+     * @param escritura Resultado de la escritura
+     */
+    public void mostrarEscritura(EscritorArchivos.ResultadoEscritura escritura) {
+        Registro.formatoResumen("Escritura:              %.1f MB en %d ms (%.1f MB/s)%n", 
+            escritura.getBytes() / (1024.0 * 1024.0), escritura.getMilisegundos(), 
+            escritura.getMegabytesPorSegundo());
+        if (ArchivosGzip.esGzip(escritura.getArchivo())) {
+            Registro.formatoResumen("Comprimido (gzip):      %.1f MB (%.1f%% del original)%n", 
+                escritura.getBytesArchivo() / (1024.0 * 1024.0), 
+                escritura.getBytes() > 0 ? escritura.getBytesArchivo() * 100.0 / escritura.getBytes() : 0.0);
+        }
+    }
+    
+    /**
+     * Muestra que fragmentos se leyeron en una actualizacion incremental.
+     * 
+     * @param resumen Resumen de la actualizacion
+     */
+    public void mostrarResumenIncremental(ActualizadorIncremental.ResumenActualizacion resumen) {
+        mostrarSeparador();
+        Registro.resumen("ACTUALIZACION INCREMENTAL");
+        mostrarSeparador();
+        
+        Registro.resumen("Tipo:                   " 
+            + (resumen.isReconstruccionCompleta() ? "Reconstruccion completa" : "Fusion con el maestro"));
+        Registro.formatoResumen("Fragmentos leidos:      %d%n", resumen.getFragmentosLeidos());
+        Registro.formatoResumen("Fragmentos sin cambios: %d%n", resumen.getFragmentosOmitidos());
+        
+        if (resumen.getFragmentosLeidos() == 0) {
+            Registro.resumen("El archivo maestro ya estaba al dia.");
         }
     }
     
@@ -94,23 +179,23 @@ public class VisualizadorResultados {
      * @param duplicadosEliminados Numero de duplicados eliminados
      */
 
-public void mostrarResultadoFinal(Path archivoSalida, int lineasOriginales, 
-                                 int lineasFinales, int duplicadosEliminados) {
+public void mostrarResultadoFinal(Path archivoSalida, long lineasOriginales, 
+                                 long lineasFinales, long duplicadosEliminados) {
     mostrarSeparador();
-    System.out.println("PROCESAMIENTO COMPLETADO EXITOSAMENTE");
+    Registro.resumen("PROCESAMIENTO COMPLETADO EXITOSAMENTE");
     mostrarSeparador();
     
-    System.out.printf("Lineas procesadas:      %d%n", lineasOriginales);
-    System.out.printf("Duplicados eliminados:  %d%n", duplicadosEliminados);
-    System.out.printf("Lineas finales:         %d%n", lineasFinales);
+    Registro.formatoResumen("Lineas procesadas:      %d%n", lineasOriginales);
+    Registro.formatoResumen("Duplicados eliminados:  %d%n", duplicadosEliminados);
+    Registro.formatoResumen("Lineas finales:         %d%n", lineasFinales);
     
     double porcentajeReduccion = duplicadosEliminados > 0 ? 
         (duplicadosEliminados * 100.0 / lineasOriginales) : 0.0;
-    System.out.printf("Reduccion de datos:     %.1f%%%n", porcentajeReduccion);
+    Registro.formatoResumen("Reduccion de datos:     %.1f%%%n", porcentajeReduccion);
     
-    System.out.println();
-    System.out.println("Archivo generado: " + archivoSalida.getFileName());
-    System.out.println("Ubicacion: " + archivoSalida.toAbsolutePath());
+    Registro.resumen("");
+    Registro.resumen("Archivo generado: " + archivoSalida.getFileName());
+    Registro.resumen("Ubicacion: " + archivoSalida.toAbsolutePath());
 }
     
     /**
@@ -119,24 +204,165 @@ public void mostrarResultadoFinal(Path archivoSalida, int lineasOriginales,
      * @param contenido Lista con el contenido del archivo
      */
     public void mostrarContenidoArchivo(List<String> contenido) {
+        mostrarPrimerasLineas(contenido, contenido.size());
+    }
+    
+    /**
+     * Muestra el contenido del archivo final a partir de su cabecera y datos,
+     * sin armar la lista completa del archivo.
+     * 
+     * @param cabecera Cabecera del archivo o null si no tiene
+     * @param datos Lineas de datos escritas despues de la cabecera
+     */
+    public void mostrarContenidoArchivo(String cabecera, List<String> datos) {
+        List<String> primeras = new ArrayList<>();
+        if (cabecera != null) {
+            primeras.add(cabecera);
+        }
+        for (int i = 0; i < datos.size() && primeras.size() < LINEAS_VISTA_PREVIA; i++) {
+            primeras.add(datos.get(i));
+        }
+        
+        mostrarPrimerasLineas(primeras, datos.size() + (cabecera != null ? 1 : 0));
+    }
+    
+    /**
+     * Muestra el contenido del archivo final leyendo solo sus primeras lineas
+     * desde disco, para salidas que no se conservaron en memoria.
+     * 
+     * @param archivo Archivo generado
+     * @param totalLineas Cantidad total de lineas del archivo, cabecera incluida
+     * @throws IOException Si ocurre un error al leer el archivo
+     */
+    public void mostrarContenidoArchivo(Path archivo, long totalLineas) throws IOException {
+        List<String> primeras = new ArrayList<>();
+        try (BufferedReader reader = ArchivosGzip.abrirLector(archivo, ArchivosGzip.TAMANO_BUFFER_DEFECTO)) {
+            String linea;
+            while (primeras.size() < LINEAS_VISTA_PREVIA && (linea = reader.readLine()) != null) {
+                primeras.add(linea);
+            }
+        }
+        
+        mostrarPrimerasLineas(primeras, totalLineas);
+    }
+    
+    /**
+     * Imprime la vista previa del archivo generado.
+     * 
+     * @param primeras Primeras lineas del archivo
+     * @param totalLineas Cantidad total de lineas del archivo
+     */
+    private void mostrarPrimerasLineas(List<String> primeras, long totalLineas) {
         mostrarSeparador();
-        System.out.println("CONTENIDO DEL ARCHIVO GENERADO");
+        Registro.resumen("CONTENIDO DEL ARCHIVO GENERADO");
         mostrarSeparador();
         
-        if (contenido.isEmpty()) {
-            System.out.println("El archivo esta vacio.");
+        if (totalLineas == 0) {
+            Registro.resumen("El archivo esta vacio.");
             return;
         }
         
-        System.out.printf("Mostrando las primeras %d lineas:%n%n", 
-            Math.min(15, contenido.size()));
+        int mostradas = (int) Math.min(LINEAS_VISTA_PREVIA, totalLineas);
+        Registro.formatoResumen("Mostrando las primeras %d lineas:%n%n", mostradas);
+        
+        for (int i = 0; i < mostradas; i++) {
+            Registro.formatoResumen("%3d: %s%n", i + 1, primeras.get(i));
+        }
+        
+        if (totalLineas > LINEAS_VISTA_PREVIA) {
+            Registro.formatoResumen("%n... y %d lineas adicionales.%n", totalLineas - LINEAS_VISTA_PREVIA);
+        }
+    }
+    
+    /**
+     * Muestra una tabla con el resultado de cada trabajo del modo por lotes.
+     * 
+     * @param resultados Resultados de los trabajos, en orden
+     */
+    public void mostrarResumenLotes(List<EjecutorLotes.ResultadoTrabajo> resultados) {
+        mostrarSeparador();
+        Registro.resumen("RESUMEN DE TRABAJOS POR LOTES");
+        mostrarSeparador();
+        
+        Registro.formatoResumen("%-30s %-11s %10s %12s %10s%n", "ENTRADA", "ESTADO", "FRAGMENTOS", "LINEAS FIN.", "MS");
+        Registro.resumen("-".repeat(77));
+        
+        int fallidos = 0;
+        for (EjecutorLotes.ResultadoTrabajo resultado : resultados) {
+            String entrada = resultado.getTrabajo().getEntrada().toString();
+            if (entrada.length() > 30) {
+                entrada = "..." + entrada.substring(entrada.length() - 27);
+            }
+            Registro.formatoResumen("%-30s %-11s %10d %12d %10d%n", entrada,
+                    resultado.isExitoso() ? "COMPLETADO" : "FALLIDO", resultado.getFragmentos(),
+                    resultado.getLineasFinales(), resultado.getMilisegundos());
+            if (!resultado.isExitoso()) {
+                fallidos++;
+                Registro.resumen("    Error: " + resultado.getError());
+            }
+        }
+        
+        Registro.resumen("-".repeat(77));
+        Registro.formatoResumen("Trabajos: %d, completados: %d, fallidos: %d%n", 
+                resultados.size(), resultados.size() - fallidos, fallidos);
+    }
+    
+    /**
+     * Muestra la duracion y el volumen de cada etapa del proceso, la latencia
+     * de lectura de los fragmentos y el pico de heap.
+     * 
+     * @param metricas Metricas acumuladas del proceso
+     */
+    public void mostrarMetricasEtapas(MetricasProceso metricas) {
+        mostrarSeparador();
+        Registro.resumen("METRICAS POR ETAPA");
+        mostrarSeparador();
+        
+        Registro.formatoResumen("%-14s %8s %12s %14s %10s%n", "ETAPA", "VECES", "MS", "LINEAS", "MB/S");
+        Registro.resumen("-".repeat(62));
+        for (EtapaProceso etapa : EtapaProceso.values()) {
+            MetricasProceso.ResumenEtapa resumen = metricas.getResumen(etapa);
+            Registro.formatoResumen("%-14s %8d %12.1f %14d %10s%n", etapa, resumen.getEjecuciones(),
+                    resumen.getMilisegundos(), resumen.getLineas(),
+                    resumen.getBytes() > 0 ? String.format("%.1f", resumen.getMegabytesPorSegundo()) : "-");
+        }
+        Registro.resumen("-".repeat(62));
+        Registro.formatoResumen("Fragmentos leidos:      %d (p50 %.1f ms, p95 %.1f ms, max. %.1f ms)%n",
+                metricas.getFragmentosLeidos(), metricas.getLatenciaFragmentoP50Ms(),
+                metricas.getLatenciaFragmentoP95Ms(), metricas.getLatenciaFragmentoMaximaMs());
+        Registro.formatoResumen("Pico de heap:           %d MB%n", metricas.getHeapPicoBytes() / (1024 * 1024));
+    }
+    
+    /**
+     * Muestra el resultado de la reconstruccion por entidad.
+     * 
+     * @param resultados Resultado de cada entidad
+     */
+    public void mostrarResultadoPorEntidad(List<ReconstructorEntidades.ResultadoEntidad> resultados) {
+        mostrarSeparador();
+        Registro.resumen("RECONSTRUCCION POR ENTIDAD COMPLETADA");
+        mostrarSeparador();
+        
+        Registro.formatoResumen("%-20s %12s %12s %12s %8s%n", "ENTIDAD", "LINEAS", "DUPLICADOS", "FINALES", "MS");
+        Registro.resumen("-".repeat(68));
         
-        for (int i = 0; i < Math.min(15, contenido.size()); i++) {
-            System.out.printf("%3d: %s%n", i + 1, contenido.get(i));
+        long totalLineas = 0;
+        long totalFinales = 0;
+        for (ReconstructorEntidades.ResultadoEntidad entidad : resultados) {
+            AnalizadorDatos.ResultadoAnalisis resultado = entidad.getResultado();
+            totalLineas += resultado.getTotalLineas();
+            totalFinales += resultado.getTotalSinDuplicados();
+            Registro.formatoResumen("%-20s %12d %12d %12d %8d%n", entidad.getNombreEntidad(),
+                    resultado.getTotalLineas(), resultado.getTotalDuplicados(),
+                    resultado.getTotalSinDuplicados(), entidad.getMilisegundos());
         }
         
-        if (contenido.size() > 15) {
-            System.out.printf("%n... y %d lineas adicionales.%n", contenido.size() - 15);
+        Registro.resumen("-".repeat(68));
+        Registro.formatoResumen("Entidades: %d, lineas procesadas: %d, lineas finales: %d%n",
+                resultados.size(), totalLineas, totalFinales);
+        
+        for (ReconstructorEntidades.ResultadoEntidad entidad : resultados) {
+            Registro.resumen("Archivo generado: " + entidad.getArchivoSalida().toAbsolutePath());
         }
     }
-}
\ No newline at end of file
+}
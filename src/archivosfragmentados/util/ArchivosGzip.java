@@ -0,0 +1,106 @@
+package archivosfragmentados.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Apertura transparente de archivos comprimidos con gzip: un archivo cuyo
+ * nombre termina en {@code .gz} se descomprime al leerlo, sin pasar por un
+ * archivo intermedio en disco.
+ */
+public final class ArchivosGzip {
+
+    public static final String EXTENSION = ".gz";
+
+    /** Tamano por defecto del buffer de compresion y descompresion. */
+    public static final int TAMANO_BUFFER_DEFECTO = 64 * 1024;
+
+    private ArchivosGzip() {
+    }
+
+    /**
+     * Indica si el archivo esta comprimido segun su extension.
+     *
+     * @param archivo Archivo a evaluar
+     * @return true si su nombre termina en .gz
+     */
+    public static boolean esGzip(Path archivo) {
+        return archivo.getFileName().toString().toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * Agrega la extension .gz si el nombre no la tiene.
+     *
+     * @param archivo Archivo de salida
+     * @return El mismo archivo o uno con la extension agregada
+     */
+    public static Path conExtension(Path archivo) {
+        return esGzip(archivo) ? archivo : archivo.resolveSibling(archivo.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Abre un lector de texto UTF-8, descomprimiendo si el archivo es gzip.
+     * Como {@code Files.newBufferedReader}, falla ante bytes UTF-8 invalidos.
+     *
+     * @param archivo Archivo a leer
+     * @param tamanoBuffer Bytes del buffer de descompresion
+     * @return Lector del contenido descomprimido
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public static BufferedReader abrirLector(Path archivo, int tamanoBuffer) throws IOException {
+        if (!esGzip(archivo)) {
+            return Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+        }
+        return abrirLector(Files.newInputStream(archivo), true, tamanoBuffer);
+    }
+
+    /**
+     * Abre un lector de texto UTF-8 sobre los bytes de un archivo ya
+     * abierto, por ejemplo para calcular su hash mientras se lee. Si no se
+     * puede abrir, la entrada se cierra.
+     *
+     * @param entrada Bytes del archivo tal como estan en disco
+     * @param comprimido true si la entrada es gzip
+     * @param tamanoBuffer Bytes del buffer de descompresion
+     * @return Lector del contenido, descomprimido si hace falta
+     * @throws IOException Si la entrada no es un gzip valido
+     */
+    public static BufferedReader abrirLector(InputStream entrada, boolean comprimido, int tamanoBuffer)
+            throws IOException {
+        if (!comprimido) {
+            return new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8.newDecoder()));
+        }
+        try {
+            GZIPInputStream descompresor = new GZIPInputStream(entrada, tamanoBuffer);
+            return new BufferedReader(new InputStreamReader(descompresor, StandardCharsets.UTF_8.newDecoder()),
+                                      tamanoBuffer);
+        } catch (IOException e) {
+            entrada.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Abre el contenido descomprimido de un archivo gzip como bytes.
+     *
+     * @param archivo Archivo comprimido
+     * @param tamanoBuffer Bytes del buffer de descompresion
+     * @return Flujo de bytes descomprimidos
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public static InputStream abrirDescomprimido(Path archivo, int tamanoBuffer) throws IOException {
+        InputStream entrada = Files.newInputStream(archivo);
+        try {
+            return new GZIPInputStream(entrada, tamanoBuffer);
+        } catch (IOException e) {
+            entrada.close();
+            throw e;
+        }
+    }
+}
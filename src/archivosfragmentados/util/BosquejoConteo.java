@@ -0,0 +1,72 @@
+package archivosfragmentados.util;
+
+/**
+ * Bosquejo Count-Min: estima la frecuencia de cada huella con una matriz fija
+ * de contadores. Cada fila usa una funcion de indice distinta y la estimacion
+ * es el minimo entre filas, por lo que nunca es menor que la frecuencia real.
+ *
+ * <p>Usa actualizacion conservadora: al incrementar solo sube los contadores
+ * que estan por debajo de la nueva estimacion, lo que reduce el sobreconteo
+ * por colisiones sin perder la garantia de cota superior.</p>
+ */
+public class BosquejoConteo {
+
+    private final int profundidad;
+    private final int mascara;
+    private final long[][] contadores;
+
+    /**
+     * @param profundidad Cantidad de filas (funciones de indice)
+     * @param bitsAncho Logaritmo en base 2 del ancho de cada fila
+     */
+    public BosquejoConteo(int profundidad, int bitsAncho) {
+        this.profundidad = profundidad;
+        this.mascara = (1 << bitsAncho) - 1;
+        this.contadores = new long[profundidad][1 << bitsAncho];
+    }
+
+    /**
+     * Incrementa la frecuencia de una huella.
+     *
+     * @param huella Huella de 64 bits de la linea
+     * @return Frecuencia estimada despues de incrementar
+     */
+    public long incrementar(long huella) {
+        long nueva = estimar(huella) + 1;
+        int h1 = (int) huella;
+        int h2 = (int) (huella >>> 32) | 1;
+        for (int fila = 0; fila < profundidad; fila++) {
+            long[] contadoresFila = contadores[fila];
+            int columna = (h1 + fila * h2) & mascara;
+            if (contadoresFila[columna] < nueva) {
+                contadoresFila[columna] = nueva;
+            }
+        }
+        return nueva;
+    }
+
+    /**
+     * Estima la frecuencia de una huella sin modificar el bosquejo.
+     *
+     * @param huella Huella de 64 bits de la linea
+     * @return Frecuencia estimada, mayor o igual a la real
+     */
+    public long estimar(long huella) {
+        int h1 = (int) huella;
+        int h2 = (int) (huella >>> 32) | 1;
+        long minimo = Long.MAX_VALUE;
+        for (int fila = 0; fila < profundidad; fila++) {
+            minimo = Math.min(minimo, contadores[fila][(h1 + fila * h2) & mascara]);
+        }
+        return minimo;
+    }
+
+    /**
+     * Obtiene la memoria que ocupan los contadores.
+     *
+     * @return Bytes usados
+     */
+    public long getBytesUsados() {
+        return (long) profundidad * (mascara + 1) * Long.BYTES;
+    }
+}
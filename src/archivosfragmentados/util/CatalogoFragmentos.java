@@ -0,0 +1,101 @@
+package archivosfragmentados.util;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fragmentos CSV encontrados en un directorio por {@link ExploradorFragmentos},
+ * ordenados por ruta. No cambia despues de creado, asi que los servicios
+ * pueden compartirlo sin copiarlo.
+ */
+public final class CatalogoFragmentos {
+
+    private final Path directorio;
+    private final boolean recursivo;
+    private final List<Fragmento> fragmentos;
+    private final List<Path> rutas;
+
+    /**
+     * @param directorio Directorio explorado
+     * @param recursivo true si se incluyeron los subdirectorios
+     * @param fragmentos Fragmentos encontrados, ordenados por ruta
+     */
+    CatalogoFragmentos(Path directorio, boolean recursivo, List<Fragmento> fragmentos) {
+        this.directorio = directorio;
+        this.recursivo = recursivo;
+        this.fragmentos = Collections.unmodifiableList(fragmentos);
+
+        List<Path> listaRutas = new ArrayList<>(fragmentos.size());
+        for (Fragmento fragmento : fragmentos) {
+            listaRutas.add(fragmento.getRuta());
+        }
+        this.rutas = Collections.unmodifiableList(listaRutas);
+    }
+
+    public Path getDirectorio() { return directorio; }
+    public boolean isRecursivo() { return recursivo; }
+    public List<Fragmento> getFragmentos() { return fragmentos; }
+    /** Rutas de todos los archivos CSV, en el mismo orden que los fragmentos. */
+    public List<Path> getRutas() { return rutas; }
+    public int getCantidad() { return fragmentos.size(); }
+    public boolean isVacio() { return fragmentos.isEmpty(); }
+
+    /**
+     * Obtiene las rutas de los archivos cuyo nombre sigue el formato
+     * {@code entidad_numero.csv}; los demas CSV no son fragmentos de una
+     * entidad.
+     *
+     * @return Rutas en orden
+     */
+    public List<Path> getRutasConEntidad() {
+        List<Path> resultado = new ArrayList<>(fragmentos.size());
+        for (Fragmento fragmento : fragmentos) {
+            if (fragmento.getEntidad() != null) {
+                resultado.add(fragmento.getRuta());
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Busca un fragmento por su ruta con una busqueda binaria, sin un mapa
+     * aparte que duplique el catalogo en memoria.
+     *
+     * @param ruta Ruta del archivo, tal como aparece en el catalogo
+     * @return Fragmento, o null si no esta en el catalogo
+     */
+    public Fragmento buscar(Path ruta) {
+        int posicion = Collections.binarySearch(rutas, ruta);
+        return posicion >= 0 ? fragmentos.get(posicion) : null;
+    }
+
+    /**
+     * Datos de un archivo CSV leidos al explorar el directorio.
+     */
+    public static final class Fragmento {
+        private final Path ruta;
+        private final String entidad;
+        private final long secuencia;
+        private final long tamano;
+        private final long modificado;
+
+        public Fragmento(Path ruta, String entidad, long secuencia, long tamano, long modificado) {
+            this.ruta = ruta;
+            this.entidad = entidad;
+            this.secuencia = secuencia;
+            this.tamano = tamano;
+            this.modificado = modificado;
+        }
+
+        public Path getRuta() { return ruta; }
+        /** Entidad del nombre {@code entidad_numero.csv}, o null si el nombre no sigue ese formato. */
+        public String getEntidad() { return entidad; }
+        /** Numero del nombre {@code entidad_numero.csv}, o -1 si no lo tiene. */
+        public long getSecuencia() { return secuencia; }
+        public long getTamano() { return tamano; }
+        /** Fecha de modificacion en milisegundos. */
+        public long getModificado() { return modificado; }
+    }
+}
@@ -0,0 +1,120 @@
+package archivosfragmentados.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cuenta las lineas de un archivo recorriendo sus bytes mapeados en memoria,
+ * sin decodificar el texto ni crear cadenas. Los fines de linea {@code \n},
+ * {@code \r} y {@code \r\n} cuentan igual que en {@code Files.lines}.
+ * Los archivos gzip se cuentan sobre el flujo descomprimido.
+ */
+public final class ContadorLineas {
+
+    /** Tamano de cada ventana mapeada; un mapeo no puede superar 2 GB. */
+    private static final int VENTANA = 1 << 26;
+
+    private static final long UNOS = 0x0101010101010101L;
+    private static final long ALTOS = 0x8080808080808080L;
+    private static final long SALTOS = UNOS * '\n';
+    private static final long RETORNOS = UNOS * '\r';
+
+    private ContadorLineas() {
+    }
+
+    /**
+     * Cuenta las lineas de un archivo. La ultima linea cuenta aunque no
+     * termine en salto de linea.
+     *
+     * @param archivo Archivo a contar
+     * @return Numero de lineas
+     * @throws IOException Si no se puede leer el archivo
+     */
+    public static long contarLineas(Path archivo) throws IOException {
+        if (ArchivosGzip.esGzip(archivo)) {
+            return contarComprimido(archivo);
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            long terminadores = 0;
+            byte anterior = 0;
+
+            for (long inicio = 0; inicio < tamano; inicio += VENTANA) {
+                int longitud = (int) Math.min(VENTANA, tamano - inicio);
+                MappedByteBuffer zona = canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud);
+                int i = 0;
+
+                // De a ocho bytes: las palabras sin fin de linea se saltan enteras.
+                for (; i + Long.BYTES <= longitud; i += Long.BYTES) {
+                    if (!contieneFinDeLinea(zona.getLong(i))) {
+                        anterior = 0;
+                        continue;
+                    }
+                    for (int j = i; j < i + Long.BYTES; j++) {
+                        byte b = zona.get(j);
+                        terminadores += contarTerminador(b, anterior);
+                        anterior = b;
+                    }
+                }
+                for (; i < longitud; i++) {
+                    byte b = zona.get(i);
+                    terminadores += contarTerminador(b, anterior);
+                    anterior = b;
+                }
+            }
+
+            boolean ultimaAbierta = tamano > 0 && anterior != '\n' && anterior != '\r';
+            return ultimaAbierta ? terminadores + 1 : terminadores;
+        }
+    }
+
+    /**
+     * Cuenta las lineas de un archivo gzip sin guardar el texto descomprimido.
+     */
+    private static long contarComprimido(Path archivo) throws IOException {
+        byte[] bloque = new byte[ArchivosGzip.TAMANO_BUFFER_DEFECTO];
+        long terminadores = 0;
+        long total = 0;
+        byte anterior = 0;
+
+        try (InputStream entrada = ArchivosGzip.abrirDescomprimido(archivo, ArchivosGzip.TAMANO_BUFFER_DEFECTO)) {
+            int leidos;
+            while ((leidos = entrada.read(bloque)) > 0) {
+                for (int i = 0; i < leidos; i++) {
+                    byte b = bloque[i];
+                    terminadores += contarTerminador(b, anterior);
+                    anterior = b;
+                }
+                total += leidos;
+            }
+        }
+
+        boolean ultimaAbierta = total > 0 && anterior != '\n' && anterior != '\r';
+        return ultimaAbierta ? terminadores + 1 : terminadores;
+    }
+
+    /**
+     * Un {@code \n} precedido de {@code \r} ya se conto con el {@code \r}.
+     */
+    private static int contarTerminador(byte b, byte anterior) {
+        if (b == '\r') {
+            return 1;
+        }
+        return b == '\n' && anterior != '\r' ? 1 : 0;
+    }
+
+    /**
+     * Indica si alguno de los ocho bytes de la palabra es {@code \n} o {@code \r}.
+     */
+    private static boolean contieneFinDeLinea(long palabra) {
+        return tieneByteCero(palabra ^ SALTOS) || tieneByteCero(palabra ^ RETORNOS);
+    }
+
+    private static boolean tieneByteCero(long valor) {
+        return ((valor - UNOS) & ~valor & ALTOS) != 0;
+    }
+}
@@ -0,0 +1,189 @@
+package archivosfragmentados.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Destino que entrega los mensajes a otro destino desde un hilo propio. Los
+ * hilos que registran solo dejan el texto en un anillo de capacidad fija;
+ * el hilo de escritura toma todo lo acumulado de una vez y lo escribe con
+ * una sola llamada, en lugar de una escritura sincronizada por linea.
+ *
+ * <p>Si el anillo se llena, quien registra espera a que haya lugar: los
+ * mensajes nunca se descartan. {@link #vaciar()} espera a que todo lo
+ * registrado hasta ese momento este escrito.</p>
+ *
+ * <p>Un mensaje que llega despues de {@link #close()}, por ejemplo desde un
+ * hilo que sigue trabajando mientras termina el programa, se escribe
+ * directamente en la consola: el destino final ya esta cerrado.</p>
+ */
+public class DestinoAsincrono implements DestinoRegistro {
+
+    /** Mensajes que caben en el anillo por defecto. */
+    public static final int CAPACIDAD_DEFECTO = 16 * 1024;
+
+    /** Marca de fin; se compara por identidad. */
+    private static final String FIN = new String("FIN");
+
+    private final DestinoRegistro destino;
+    private final BlockingQueue<String> pendientes;
+    private final AtomicLong registrados = new AtomicLong();
+    private final Thread hilo;
+    private final DestinoRegistro consola = DestinoRegistro.consola();
+    // Quien registra toma la lectura; close() toma la escritura para que
+    // ningun mensaje quede en el anillo detras de la marca de fin.
+    private final ReadWriteLock cierre = new ReentrantReadWriteLock();
+    private long escritos = 0;
+    private boolean cerrado = false;
+    private volatile IOException error;
+
+    /**
+     * Crea el destino y arranca su hilo de escritura.
+     *
+     * @param destino Destino final de los mensajes
+     * @param capacidad Mensajes que caben en el anillo
+     */
+    public DestinoAsincrono(DestinoRegistro destino, int capacidad) {
+        this.destino = destino;
+        this.pendientes = new ArrayBlockingQueue<>(capacidad);
+        this.hilo = new Thread(this::escribirPendientes, "registro-asincrono");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    @Override
+    public void escribir(String texto) throws IOException {
+        cierre.readLock().lock();
+        try {
+            if (!cerrado) {
+                registrados.incrementAndGet();
+                poner(texto);
+                return;
+            }
+        } finally {
+            cierre.readLock().unlock();
+        }
+        consola.escribir(texto);
+        consola.vaciar();
+    }
+
+    @Override
+    public void vaciar() {
+        long objetivo = registrados.get();
+        synchronized (this) {
+            while (escritos < objetivo && hilo.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe lo pendiente, detiene el hilo y cierra el destino final.
+     *
+     * @throws IOException Si no se puede cerrar el destino final
+     */
+    @Override
+    public void close() throws IOException {
+        cierre.writeLock().lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            poner(FIN);
+        } finally {
+            cierre.writeLock().unlock();
+        }
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        destino.close();
+    }
+
+    /**
+     * Deja un texto en el anillo. Una interrupcion no descarta el mensaje:
+     * se sigue esperando y se restablece la marca de interrupcion al final.
+     */
+    private void poner(String texto) {
+        if (pendientes.offer(texto)) {
+            return;
+        }
+        boolean interrumpido = false;
+        while (true) {
+            try {
+                pendientes.put(texto);
+                break;
+            } catch (InterruptedException e) {
+                interrumpido = true;
+            }
+        }
+        if (interrumpido) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bucle del hilo de escritura: toma todos los mensajes disponibles, los
+     * une y los entrega al destino con una sola escritura.
+     */
+    private void escribirPendientes() {
+        List<String> lote = new ArrayList<>();
+        StringBuilder texto = new StringBuilder();
+        while (true) {
+            try {
+                lote.add(pendientes.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pendientes.drainTo(lote);
+
+            boolean fin = false;
+            int mensajes = 0;
+            for (String mensaje : lote) {
+                if (mensaje == FIN) {
+                    fin = true;
+                } else {
+                    texto.append(mensaje);
+                    mensajes++;
+                }
+            }
+            entregar(texto, mensajes);
+            lote.clear();
+            texto.setLength(0);
+            if (fin) {
+                return;
+            }
+        }
+    }
+
+    private void entregar(StringBuilder texto, int mensajes) {
+        try {
+            if (texto.length() > 0) {
+                destino.escribir(texto.toString());
+            }
+            destino.vaciar();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+                System.err.println("ERROR AL ESCRIBIR EL REGISTRO: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            escritos += mensajes;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package archivosfragmentados.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Destino de los mensajes de {@link Registro}. Recibe texto ya formateado,
+ * con sus saltos de linea, y puede acumularlo hasta {@link #vaciar()}.
+ */
+public interface DestinoRegistro extends Closeable {
+
+    /**
+     * Agrega texto al destino.
+     *
+     * @param texto Uno o varios mensajes con sus saltos de linea
+     * @throws IOException Si no se puede escribir
+     */
+    void escribir(String texto) throws IOException;
+
+    /**
+     * Entrega lo acumulado a su destino final.
+     *
+     * @throws IOException Si no se puede escribir
+     */
+    void vaciar() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+        vaciar();
+    }
+
+    /**
+     * Destino que escribe en la salida estandar vigente en cada llamada, para
+     * respetar un {@code System.setOut} posterior.
+     *
+     * @return Destino de consola
+     */
+    static DestinoRegistro consola() {
+        return new DestinoRegistro() {
+            @Override
+            public void escribir(String texto) {
+                System.out.print(texto);
+            }
+
+            @Override
+            public void vaciar() {
+                System.out.flush();
+            }
+        };
+    }
+
+    /**
+     * Destino que escribe en un archivo, reemplazando su contenido.
+     *
+     * @param archivo Archivo de registro
+     * @return Destino de archivo abierto
+     * @throws IOException Si no se puede crear el archivo
+     */
+    static DestinoRegistro archivo(Path archivo) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8);
+        return new DestinoRegistro() {
+            @Override
+            public void escribir(String texto) throws IOException {
+                writer.write(texto);
+            }
+
+            @Override
+            public void vaciar() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,303 @@
+package archivosfragmentados.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+
+/**
+ * Explora un directorio una sola vez y entrega el {@link CatalogoFragmentos}
+ * de sus archivos CSV, con la salida por defecto excluida. Todos los
+ * servicios comparten la misma instancia, asi que elegir el directorio,
+ * contar sus fragmentos y listarlos no vuelve a recorrerlo.
+ *
+ * <p>Cada directorio se lista en una tarea de un {@link ForkJoinPool}; los
+ * subdirectorios (con exploracion recursiva, por ejemplo particiones por
+ * fecha como {@code 2024/05/17}) y los lotes de archivos de un directorio
+ * grande se reparten como tareas nuevas. Los atributos de cada archivo se
+ * leen con una sola llamada que trae tipo, tamano y fecha. Los enlaces
+ * simbolicos a directorios no se siguen, para no entrar en ciclos.</p>
+ *
+ * <p>Un catalogo guardado se reutiliza mientras la fecha de modificacion de
+ * cada directorio explorado siga igual, que cambia cuando se agrega, borra o
+ * renombra un archivo. Si un fragmento se reescribe en su lugar la fecha del
+ * directorio no cambia: quien necesite tamanos al dia debe usar
+ * {@link #explorarDeNuevo}.</p>
+ */
+public final class ExploradorFragmentos {
+
+    /** Archivos cuyos atributos se leen en una misma tarea. */
+    private static final int ARCHIVOS_POR_TAREA = 2048;
+
+    /** Catalogos recordados; los mas viejos se descartan para no retener memoria. */
+    private static final int CATALOGOS_EN_CACHE = 4;
+
+    // Leer atributos bloquea en el disco, asi que se usan mas hilos que nucleos.
+    private static final int HILOS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final ExploradorFragmentos INSTANCIA = new ExploradorFragmentos();
+
+    private final Map<String, EntradaCache> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EntradaCache> mayor) {
+            return size() > CATALOGOS_EN_CACHE;
+        }
+    };
+
+    private ExploradorFragmentos() {
+    }
+
+    public static ExploradorFragmentos getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Obtiene el catalogo de un directorio, reutilizando la ultima
+     * exploracion si ningun directorio recorrido cambio desde entonces.
+     *
+     * @param directorio Directorio a explorar
+     * @param recursivo true para incluir los subdirectorios
+     * @return Catalogo de los archivos CSV
+     * @throws IOException Si no se puede listar el directorio
+     */
+    public CatalogoFragmentos explorar(Path directorio, boolean recursivo) throws IOException {
+        String clave = clave(directorio, recursivo);
+        EntradaCache entrada;
+        synchronized (cache) {
+            entrada = cache.get(clave);
+        }
+        if (entrada != null && entrada.sigueVigente()) {
+            return entrada.catalogo;
+        }
+        return explorarDeNuevo(directorio, recursivo);
+    }
+
+    /**
+     * Recorre el directorio aunque haya un catalogo guardado, y lo reemplaza.
+     *
+     * @param directorio Directorio a explorar
+     * @param recursivo true para incluir los subdirectorios
+     * @return Catalogo de los archivos CSV
+     * @throws IOException Si no se puede listar el directorio
+     */
+    public CatalogoFragmentos explorarDeNuevo(Path directorio, boolean recursivo) throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            throw new IOException("El directorio especificado no existe o no es valido: " + directorio);
+        }
+
+        Exploracion exploracion = new Exploracion(recursivo);
+        try (ForkJoinPool grupo = new ForkJoinPool(HILOS)) {
+            grupo.invoke(new TareaDirectorio(exploracion, directorio, true));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        CatalogoFragmentos.Fragmento[] fragmentos =
+            exploracion.fragmentos.toArray(new CatalogoFragmentos.Fragmento[0]);
+        Arrays.parallelSort(fragmentos, (a, b) -> a.getRuta().compareTo(b.getRuta()));
+        CatalogoFragmentos catalogo = new CatalogoFragmentos(directorio, recursivo, Arrays.asList(fragmentos));
+
+        synchronized (cache) {
+            cache.put(clave(directorio, recursivo), new EntradaCache(catalogo, exploracion.directorios));
+        }
+        return catalogo;
+    }
+
+    /**
+     * Olvida los catalogos guardados de un directorio.
+     *
+     * @param directorio Directorio explorado
+     */
+    public void invalidar(Path directorio) {
+        synchronized (cache) {
+            cache.remove(clave(directorio, false));
+            cache.remove(clave(directorio, true));
+        }
+    }
+
+    private static String clave(Path directorio, boolean recursivo) {
+        return directorio.toAbsolutePath().normalize() + (recursivo ? "|recursivo" : "|plano");
+    }
+
+    /**
+     * Estado compartido por las tareas de una exploracion.
+     */
+    private static class Exploracion {
+        private final boolean recursivo;
+        private final ConcurrentLinkedQueue<CatalogoFragmentos.Fragmento> fragmentos = new ConcurrentLinkedQueue<>();
+        private final Map<Path, FileTime> directorios = new ConcurrentHashMap<>();
+        // Muchos fragmentos comparten entidad: se guarda una sola copia del nombre.
+        private final Map<String, String> entidades = new ConcurrentHashMap<>();
+
+        Exploracion(boolean recursivo) {
+            this.recursivo = recursivo;
+        }
+
+        String compartirEntidad(String entidad) {
+            String existente = entidades.putIfAbsent(entidad, entidad);
+            return existente != null ? existente : entidad;
+        }
+    }
+
+    /**
+     * Lista un directorio, reparte sus archivos CSV en lotes para leer sus
+     * atributos y, si la exploracion es recursiva, lanza una tarea por
+     * subdirectorio.
+     *
+     * <p>Las tareas solo viven dentro de una exploracion y nunca se
+     * serializan, aunque {@link RecursiveAction} lo permita.</p>
+     */
+    private static class TareaDirectorio extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Exploracion exploracion;
+        private final transient Path directorio;
+        private final boolean raiz;
+
+        TareaDirectorio(Exploracion exploracion, Path directorio, boolean raiz) {
+            this.exploracion = exploracion;
+            this.directorio = directorio;
+            this.raiz = raiz;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> subtareas = new ArrayList<>();
+            List<Path> lote = new ArrayList<>();
+
+            try {
+                // La fecha se toma antes de listar: si cambia mientras tanto,
+                // el catalogo deja de ser vigente.
+                exploracion.directorios.put(directorio, Files.getLastModifiedTime(directorio));
+
+                try (DirectoryStream<Path> entradas = Files.newDirectoryStream(directorio)) {
+                    for (Path entrada : entradas) {
+                        if (ValidadorArchivos.esArchivoCsv(entrada)) {
+                            if (ValidadorArchivos.esSalidaPorDefecto(entrada)) {
+                                continue;
+                            }
+                            lote.add(entrada);
+                            if (lote.size() == ARCHIVOS_POR_TAREA) {
+                                subtareas.add(new TareaAtributos(exploracion, lote));
+                                lote = new ArrayList<>();
+                            }
+                        } else if (exploracion.recursivo && !esOculto(entrada)
+                                   && Files.isDirectory(entrada, LinkOption.NOFOLLOW_LINKS)) {
+                            subtareas.add(new TareaDirectorio(exploracion, entrada, false));
+                        }
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                if (raiz) {
+                    throw new UncheckedIOException(e);
+                }
+                // Un subdirectorio borrado durante la exploracion se omite.
+                return;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (!lote.isEmpty()) {
+                subtareas.add(new TareaAtributos(exploracion, lote));
+            }
+            invokeAll(subtareas);
+        }
+
+        private static boolean esOculto(Path entrada) {
+            return entrada.getFileName().toString().startsWith(".");
+        }
+    }
+
+    /**
+     * Lee tipo, tamano y fecha de un lote de archivos y los agrega al catalogo.
+     */
+    private static class TareaAtributos extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Exploracion exploracion;
+        private final transient List<Path> archivos;
+
+        TareaAtributos(Exploracion exploracion, List<Path> archivos) {
+            this.exploracion = exploracion;
+            this.archivos = archivos;
+        }
+
+        @Override
+        protected void compute() {
+            for (Path archivo : archivos) {
+                BasicFileAttributes atributos;
+                try {
+                    atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Se borro despues de listar el directorio.
+                    continue;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (!atributos.isRegularFile()) {
+                    continue;
+                }
+
+                String entidad = null;
+                long secuencia = -1;
+                Matcher matcher = ValidadorArchivos.PATRON_ARCHIVO_FRAGMENTADO.matcher(archivo.getFileName().toString());
+                if (matcher.matches()) {
+                    entidad = exploracion.compartirEntidad(matcher.group(1));
+                    secuencia = leerSecuencia(matcher.group(2));
+                }
+                exploracion.fragmentos.add(new CatalogoFragmentos.Fragmento(archivo, entidad, secuencia,
+                        atributos.size(), atributos.lastModifiedTime().toMillis()));
+            }
+        }
+
+        private static long leerSecuencia(String digitos) {
+            try {
+                return Long.parseLong(digitos);
+            } catch (NumberFormatException e) {
+                // Mas digitos de los que caben en un long.
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Catalogo guardado junto con la fecha de cada directorio recorrido.
+     */
+    private static class EntradaCache {
+        private final CatalogoFragmentos catalogo;
+        private final Map<Path, FileTime> directorios;
+
+        EntradaCache(CatalogoFragmentos catalogo, Map<Path, FileTime> directorios) {
+            this.catalogo = catalogo;
+            this.directorios = directorios;
+        }
+
+        boolean sigueVigente() {
+            for (Map.Entry<Path, FileTime> directorio : directorios.entrySet()) {
+                try {
+                    if (!Files.getLastModifiedTime(directorio.getKey()).equals(directorio.getValue())) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package archivosfragmentados.util;
+
+/**
+ * Estimador de cardinalidad HyperLogLog. Con {@code 2^precision} registros de
+ * un byte estima cuantas huellas distintas se agregaron, con un error
+ * relativo tipico de {@code 1.04 / sqrt(2^precision)}, sin importar cuantas
+ * lineas se procesen.
+ *
+ * <p>Recibe huellas de 64 bits ya mezcladas (por ejemplo las de
+ * {@link TablaHuellas#calcularHuella(String)}), asi que no necesita la
+ * correccion de rango alto de la version de 32 bits.</p>
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION_MINIMA = 4;
+    public static final int PRECISION_MAXIMA = 18;
+
+    private final int precision;
+    private final byte[] registros;
+
+    /**
+     * @param precision Bits del indice de registro, entre 4 y 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < PRECISION_MINIMA || precision > PRECISION_MAXIMA) {
+            throw new IllegalArgumentException("La precision debe estar entre " + PRECISION_MINIMA
+                    + " y " + PRECISION_MAXIMA + ": " + precision);
+        }
+        this.precision = precision;
+        this.registros = new byte[1 << precision];
+    }
+
+    /**
+     * Agrega una huella. Los bits altos eligen el registro y el resto define
+     * el rango (posicion del primer bit en uno) que se guarda si es mayor.
+     *
+     * @param huella Huella de 64 bits de la linea
+     */
+    public void agregar(long huella) {
+        int indice = (int) (huella >>> (64 - precision));
+        // El bit centinela limita el rango cuando los bits restantes son cero.
+        long resto = (huella << precision) | (1L << (precision - 1));
+        byte rango = (byte) (Long.numberOfLeadingZeros(resto) + 1);
+        if (rango > registros[indice]) {
+            registros[indice] = rango;
+        }
+    }
+
+    /**
+     * Estima la cantidad de huellas distintas agregadas.
+     *
+     * @return Cardinalidad estimada
+     */
+    public long estimar() {
+        int m = registros.length;
+        double suma = 0;
+        int vacios = 0;
+        for (byte registro : registros) {
+            suma += 1.0 / (1L << registro);
+            if (registro == 0) {
+                vacios++;
+            }
+        }
+
+        double estimacion = alfa(m) * m * m / suma;
+        if (estimacion <= 2.5 * m && vacios > 0) {
+            // Con pocos elementos el conteo lineal de registros vacios es mas preciso.
+            estimacion = m * Math.log((double) m / vacios);
+        }
+        return Math.round(estimacion);
+    }
+
+    /**
+     * Obtiene el error relativo tipico (una desviacion estandar) de la estimacion.
+     *
+     * @return Error relativo, por ejemplo 0.008 para 0.8%
+     */
+    public double getErrorRelativo() {
+        return 1.04 / Math.sqrt(registros.length);
+    }
+
+    /**
+     * Obtiene la memoria que ocupan los registros.
+     *
+     * @return Bytes usados
+     */
+    public long getBytesUsados() {
+        return registros.length;
+    }
+
+    private static double alfa(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package archivosfragmentados.util;
+
+/**
+ * Niveles de detalle de los mensajes del programa, de menor a mayor. Cada
+ * nivel incluye los mensajes de los anteriores.
+ */
+public enum NivelRegistro {
+    /** Solo errores y preguntas al usuario. */
+    SILENCIO,
+    /** Resultados, resumenes y advertencias. */
+    RESUMEN,
+    /** Ademas, el avance de cada etapa. */
+    NORMAL,
+    /** Ademas, un mensaje por cada fragmento leido (por defecto). */
+    DETALLE
+}
@@ -0,0 +1,218 @@
+package archivosfragmentados.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ordena lineas con un ordenamiento por mezcla de fork-join dentro de un
+ * grupo de hilos propio. Las mitades se ordenan y se fusionan en tareas del
+ * grupo, y el tamano a partir del cual una tarea ya no se divide sale del
+ * paralelismo del grupo, asi que se usan los hilos configurados aunque el
+ * grupo comun de la JVM tenga uno solo ({@link Arrays#parallelSort(Object[])}
+ * ordena en secuencia en ese caso). Es estable y compara con
+ * {@code compareTo}, asi que el resultado es identico al de
+ * {@code Collections.sort}.
+ */
+public class OrdenadorParalelo {
+
+    /** Por debajo de este tamano dividir cuesta mas de lo que se gana. */
+    private static final int UMBRAL_MINIMO = 8192;
+
+    /** Tareas por hilo, para repartir mejor cuando las partes tardan distinto. */
+    private static final int TAREAS_POR_HILO = 4;
+
+    private final int paralelismo;
+
+    public OrdenadorParalelo(int paralelismo) {
+        this.paralelismo = paralelismo;
+    }
+
+    /**
+     * Ordena la lista en el lugar.
+     *
+     * @param lineas Lineas a ordenar
+     */
+    public void ordenar(List<String> lineas) {
+        String[] arreglo = lineas.toArray(new String[0]);
+        ForkJoinPool grupo = new ForkJoinPool(paralelismo);
+        try {
+            ordenar(arreglo, grupo);
+        } finally {
+            grupo.shutdown();
+        }
+
+        ListIterator<String> iterador = lineas.listIterator();
+        for (String linea : arreglo) {
+            iterador.next();
+            iterador.set(linea);
+        }
+    }
+
+    /**
+     * Ordena un arreglo en el lugar usando un grupo de hilos existente.
+     *
+     * @param lineas Lineas a ordenar
+     * @param grupo Grupo donde se ejecutan las subtareas del ordenamiento
+     */
+    public static void ordenar(String[] lineas, ForkJoinPool grupo) {
+        int umbral = Math.max(UMBRAL_MINIMO, lineas.length / (grupo.getParallelism() * TAREAS_POR_HILO));
+        if (lineas.length <= umbral) {
+            Arrays.sort(lineas);
+            return;
+        }
+        grupo.invoke(new TareaOrden(lineas, new String[lineas.length], 0, lineas.length, umbral));
+    }
+
+    /**
+     * Ejecuta una tarea en el grupo y espera a que termine.
+     *
+     * @param grupo Grupo de hilos
+     * @param tarea Tarea a ejecutar
+     */
+    public static void ejecutar(ForkJoinPool grupo, Runnable tarea) {
+        try {
+            grupo.submit(tarea).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ordenamiento paralelo interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Error en el ordenamiento paralelo", e.getCause());
+        }
+    }
+
+    /**
+     * Ordena un tramo del arreglo: los tramos chicos con {@link Arrays#sort},
+     * los grandes ordenando sus mitades en paralelo y fusionandolas.
+     */
+    private static class TareaOrden extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient String[] lineas;
+        private final transient String[] auxiliar;
+        private final int desde;
+        private final int hasta;
+        private final int umbral;
+
+        TareaOrden(String[] lineas, String[] auxiliar, int desde, int hasta, int umbral) {
+            this.lineas = lineas;
+            this.auxiliar = auxiliar;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.umbral = umbral;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde <= umbral) {
+                Arrays.sort(lineas, desde, hasta);
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new TareaOrden(lineas, auxiliar, desde, medio, umbral),
+                      new TareaOrden(lineas, auxiliar, medio, hasta, umbral));
+
+            System.arraycopy(lineas, desde, auxiliar, desde, hasta - desde);
+            new TareaFusion(auxiliar, desde, medio, medio, hasta, lineas, desde, umbral).invoke();
+        }
+    }
+
+    /**
+     * Fusiona dos tramos ordenados de {@code origen} en {@code destino}. Si
+     * son grandes, parte el mas largo por la mitad, busca el punto de corte
+     * del otro y fusiona las dos partes en paralelo. Ante lineas iguales van
+     * primero las del tramo izquierdo, como en una fusion estable.
+     */
+    private static class TareaFusion extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient String[] origen;
+        private final int inicioA;
+        private final int finA;
+        private final int inicioB;
+        private final int finB;
+        private final transient String[] destino;
+        private final int inicioDestino;
+        private final int umbral;
+
+        TareaFusion(String[] origen, int inicioA, int finA, int inicioB, int finB,
+                    String[] destino, int inicioDestino, int umbral) {
+            this.origen = origen;
+            this.inicioA = inicioA;
+            this.finA = finA;
+            this.inicioB = inicioB;
+            this.finB = finB;
+            this.destino = destino;
+            this.inicioDestino = inicioDestino;
+            this.umbral = umbral;
+        }
+
+        @Override
+        protected void compute() {
+            int largoA = finA - inicioA;
+            int largoB = finB - inicioB;
+            if (largoA + largoB <= umbral) {
+                fusionarSecuencial();
+                return;
+            }
+
+            int corteA;
+            int corteB;
+            if (largoA >= largoB) {
+                // Las lineas de B iguales al pivote quedan a la derecha, despues de las de A.
+                corteA = (inicioA + finA) >>> 1;
+                corteB = primeraNoMenor(origen, inicioB, finB, origen[corteA]);
+            } else {
+                // Las lineas de A iguales al pivote quedan a la izquierda, antes de las de B.
+                corteB = (inicioB + finB) >>> 1;
+                corteA = primeraMayor(origen, inicioA, finA, origen[corteB]);
+            }
+            int corteDestino = inicioDestino + (corteA - inicioA) + (corteB - inicioB);
+            invokeAll(new TareaFusion(origen, inicioA, corteA, inicioB, corteB, destino, inicioDestino, umbral),
+                      new TareaFusion(origen, corteA, finA, corteB, finB, destino, corteDestino, umbral));
+        }
+
+        private void fusionarSecuencial() {
+            int a = inicioA;
+            int b = inicioB;
+            int d = inicioDestino;
+            while (a < finA && b < finB) {
+                destino[d++] = origen[b].compareTo(origen[a]) < 0 ? origen[b++] : origen[a++];
+            }
+            System.arraycopy(origen, a, destino, d, finA - a);
+            System.arraycopy(origen, b, destino, d + (finA - a), finB - b);
+        }
+
+        /** Posicion de la primera linea no menor que el pivote en un tramo ordenado. */
+        private static int primeraNoMenor(String[] lineas, int desde, int hasta, String pivote) {
+            while (desde < hasta) {
+                int medio = (desde + hasta) >>> 1;
+                if (lineas[medio].compareTo(pivote) < 0) {
+                    desde = medio + 1;
+                } else {
+                    hasta = medio;
+                }
+            }
+            return desde;
+        }
+
+        /** Posicion de la primera linea mayor que el pivote en un tramo ordenado. */
+        private static int primeraMayor(String[] lineas, int desde, int hasta, String pivote) {
+            while (desde < hasta) {
+                int medio = (desde + hasta) >>> 1;
+                if (lineas[medio].compareTo(pivote) <= 0) {
+                    desde = medio + 1;
+                } else {
+                    hasta = medio;
+                }
+            }
+            return desde;
+        }
+    }
+}
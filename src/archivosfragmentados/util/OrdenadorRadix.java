@@ -0,0 +1,137 @@
+package archivosfragmentados.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Ordenamiento radix MSD (American flag sort) sobre los bytes UTF-8 de las
+ * lineas. Evita las comparaciones de {@link String#compareTo(String)}: cada
+ * byte de cada linea se examina una sola vez por nivel.
+ *
+ * <p>El orden resultante es el de los bytes UTF-8 sin signo, que equivale al
+ * orden por punto de codigo Unicode. Para texto ASCII, y en general para
+ * caracteres del plano basico, coincide con el orden de {@code compareTo}.
+ * Solo difiere cuando se comparan caracteres suplementarios (emoji, por
+ * ejemplo) con caracteres entre U+E000 y U+FFFF: aqui los suplementarios van
+ * despues, mientras que {@code compareTo} los pone antes por comparar
+ * unidades UTF-16.</p>
+ */
+public class OrdenadorRadix {
+
+    /** Por debajo de este tamano un rango se ordena por insercion. */
+    private static final int UMBRAL_INSERCION = 32;
+
+    /** Cubetas por nivel: una para "fin de linea" y una por cada valor de byte. */
+    private static final int CUBETAS = 257;
+
+    /**
+     * Ordena la lista en el lugar segun los bytes UTF-8 de cada linea.
+     *
+     * @param lineas Lista a ordenar
+     */
+    public void ordenar(List<String> lineas) {
+        int cantidad = lineas.size();
+        String[] textos = lineas.toArray(new String[0]);
+        byte[][] claves = new byte[cantidad][];
+        for (int i = 0; i < cantidad; i++) {
+            claves[i] = textos[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        ordenar(claves, textos);
+
+        for (int i = 0; i < cantidad; i++) {
+            lineas.set(i, textos[i]);
+        }
+    }
+
+    /**
+     * Ordena las claves y aplica la misma permutacion a los valores asociados.
+     *
+     * @param claves Bytes de cada linea
+     * @param valores Valores que acompanan a cada clave, o null
+     */
+    public void ordenar(byte[][] claves, Object[] valores) {
+        int[] conteos = new int[CUBETAS + 1];
+        int[] siguientes = new int[CUBETAS];
+        Deque<int[]> pendientes = new ArrayDeque<>();
+        pendientes.push(new int[] {0, claves.length, 0});
+
+        while (!pendientes.isEmpty()) {
+            int[] rango = pendientes.pop();
+            int inicio = rango[0];
+            int fin = rango[1];
+            int profundidad = rango[2];
+
+            if (fin - inicio < UMBRAL_INSERCION) {
+                ordenarPorInsercion(claves, valores, inicio, fin, profundidad);
+                continue;
+            }
+
+            Arrays.fill(conteos, 0);
+            for (int i = inicio; i < fin; i++) {
+                conteos[cubeta(claves[i], profundidad) + 1]++;
+            }
+            conteos[0] = inicio;
+            for (int c = 0; c < CUBETAS; c++) {
+                conteos[c + 1] += conteos[c];
+                siguientes[c] = conteos[c];
+            }
+
+            // Permutacion en el lugar: cada elemento se lleva a su cubeta.
+            for (int c = 0; c < CUBETAS; c++) {
+                while (siguientes[c] < conteos[c + 1]) {
+                    int i = siguientes[c];
+                    int destino = cubeta(claves[i], profundidad);
+                    while (destino != c) {
+                        int j = siguientes[destino]++;
+                        intercambiar(claves, valores, i, j);
+                        destino = cubeta(claves[i], profundidad);
+                    }
+                    siguientes[c]++;
+                }
+            }
+
+            // La cubeta 0 contiene lineas que ya terminaron: estan en su lugar.
+            for (int c = 1; c < CUBETAS; c++) {
+                if (conteos[c + 1] - conteos[c] > 1) {
+                    pendientes.push(new int[] {conteos[c], conteos[c + 1], profundidad + 1});
+                }
+            }
+        }
+    }
+
+    /**
+     * Compara dos secuencias de bytes sin signo desde una posicion.
+     *
+     * @return Negativo, cero o positivo como en {@link java.util.Comparator}
+     */
+    private static int comparar(byte[] a, byte[] b, int desde) {
+        return Arrays.compareUnsigned(a, desde, a.length, b, desde, b.length);
+    }
+
+    private static void ordenarPorInsercion(byte[][] claves, Object[] valores, int inicio, int fin, int profundidad) {
+        for (int i = inicio + 1; i < fin; i++) {
+            for (int j = i; j > inicio && comparar(claves[j - 1], claves[j], profundidad) > 0; j--) {
+                intercambiar(claves, valores, j - 1, j);
+            }
+        }
+    }
+
+    private static int cubeta(byte[] clave, int profundidad) {
+        return profundidad < clave.length ? (clave[profundidad] & 0xFF) + 1 : 0;
+    }
+
+    private static void intercambiar(byte[][] claves, Object[] valores, int i, int j) {
+        byte[] clave = claves[i];
+        claves[i] = claves[j];
+        claves[j] = clave;
+        if (valores != null) {
+            Object valor = valores[i];
+            valores[i] = valores[j];
+            valores[j] = valor;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package archivosfragmentados.util;
+
+import java.io.IOException;
+
+/**
+ * Punto unico por donde los servicios muestran sus mensajes. Cada mensaje
+ * tiene un {@link NivelRegistro} y solo se escribe si el nivel configurado lo
+ * incluye; el destino es intercambiable (consola, archivo, o cualquiera de
+ * ellos detras de un {@link DestinoAsincrono}).
+ *
+ * <p>En los recorridos por fragmento conviene consultar {@link #isActivo}
+ * antes de armar el texto, para que con un nivel menor no cueste nada.</p>
+ *
+ * <p>Las preguntas al usuario y los errores no pasan por el destino: se
+ * escriben de inmediato en la consola, despues de vaciar lo pendiente para
+ * que aparezcan en orden.</p>
+ */
+public final class Registro {
+
+    private static final String SALTO = System.lineSeparator();
+
+    private static volatile NivelRegistro nivel = NivelRegistro.DETALLE;
+    private static volatile DestinoRegistro destino = DestinoRegistro.consola();
+    private static boolean cierreRegistrado = false;
+
+    private Registro() {
+    }
+
+    /**
+     * Cambia el nivel y el destino de los mensajes. El destino anterior se
+     * vacia y se cierra. El destino nuevo se cierra al terminar la JVM si
+     * antes no se llamo a {@link #cerrar()}.
+     *
+     * @param nuevoNivel Nivel de los mensajes que se escriben
+     * @param nuevoDestino Destino de los mensajes
+     */
+    public static synchronized void configurar(NivelRegistro nuevoNivel, DestinoRegistro nuevoDestino) {
+        DestinoRegistro anterior = destino;
+        nivel = nuevoNivel;
+        destino = nuevoDestino;
+        cerrarDestino(anterior);
+        if (!cierreRegistrado) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Registro::cerrar, "registro-cierre"));
+            cierreRegistrado = true;
+        }
+    }
+
+    /**
+     * Vacia y cierra el destino actual; los mensajes siguientes van
+     * directamente a la consola.
+     */
+    public static synchronized void cerrar() {
+        DestinoRegistro anterior = destino;
+        destino = DestinoRegistro.consola();
+        cerrarDestino(anterior);
+    }
+
+    /**
+     * Indica si se escriben los mensajes de un nivel.
+     *
+     * @param nivelMensaje Nivel del mensaje
+     * @return true si el nivel configurado lo incluye
+     */
+    public static boolean isActivo(NivelRegistro nivelMensaje) {
+        return nivelMensaje.compareTo(nivel) <= 0;
+    }
+
+    /**
+     * Registra un resultado, resumen o advertencia.
+     *
+     * @param linea Texto del mensaje, sin salto de linea
+     */
+    public static void resumen(String linea) {
+        escribir(NivelRegistro.RESUMEN, linea + SALTO);
+    }
+
+    /**
+     * Registra el avance de una etapa.
+     *
+     * @param linea Texto del mensaje, sin salto de linea
+     */
+    public static void normal(String linea) {
+        escribir(NivelRegistro.NORMAL, linea + SALTO);
+    }
+
+    /**
+     * Registra un mensaje por fragmento u otro detalle.
+     *
+     * @param linea Texto del mensaje, sin salto de linea
+     */
+    public static void detalle(String linea) {
+        escribir(NivelRegistro.DETALLE, linea + SALTO);
+    }
+
+    /**
+     * Registra un resumen con formato, como {@code printf}.
+     *
+     * @param formato Formato de {@link String#format}
+     * @param argumentos Argumentos del formato
+     */
+    public static void formatoResumen(String formato, Object... argumentos) {
+        if (isActivo(NivelRegistro.RESUMEN)) {
+            escribir(NivelRegistro.RESUMEN, String.format(formato, argumentos));
+        }
+    }
+
+    /**
+     * Registra el avance de una etapa con formato, como {@code printf}.
+     *
+     * @param formato Formato de {@link String#format}
+     * @param argumentos Argumentos del formato
+     */
+    public static void formatoNormal(String formato, Object... argumentos) {
+        if (isActivo(NivelRegistro.NORMAL)) {
+            escribir(NivelRegistro.NORMAL, String.format(formato, argumentos));
+        }
+    }
+
+    /**
+     * Muestra una linea del dialogo con el usuario, sin importar el nivel.
+     *
+     * @param linea Texto de la linea
+     */
+    public static void dialogo(String linea) {
+        vaciar();
+        System.out.println(linea);
+    }
+
+    /**
+     * Muestra una linea del dialogo con formato, como {@code printf}.
+     *
+     * @param formato Formato de {@link String#format}
+     * @param argumentos Argumentos del formato
+     */
+    public static void formatoDialogo(String formato, Object... argumentos) {
+        vaciar();
+        System.out.printf(formato, argumentos);
+    }
+
+    /**
+     * Muestra una pregunta sin salto de linea, antes de leer la respuesta.
+     *
+     * @param texto Texto de la pregunta
+     */
+    public static void pregunta(String texto) {
+        vaciar();
+        System.out.print(texto);
+        System.out.flush();
+    }
+
+    /**
+     * Muestra un error en la salida de errores, sin importar el nivel.
+     *
+     * @param linea Texto del error
+     */
+    public static void error(String linea) {
+        vaciar();
+        System.err.println(linea);
+    }
+
+    /**
+     * Espera a que se escriba todo lo registrado hasta ahora.
+     */
+    public static void vaciar() {
+        try {
+            destino.vaciar();
+        } catch (IOException e) {
+            System.err.println("ERROR AL ESCRIBIR EL REGISTRO: " + e.getMessage());
+        }
+    }
+
+    private static void escribir(NivelRegistro nivelMensaje, String texto) {
+        if (!isActivo(nivelMensaje)) {
+            return;
+        }
+        try {
+            destino.escribir(texto);
+        } catch (IOException e) {
+            System.err.println("ERROR AL ESCRIBIR EL REGISTRO: " + e.getMessage());
+        }
+    }
+
+    private static void cerrarDestino(DestinoRegistro anterior) {
+        try {
+            anterior.close();
+        } catch (IOException e) {
+            System.err.println("ERROR AL CERRAR EL REGISTRO: " + e.getMessage());
+        }
+    }
+}
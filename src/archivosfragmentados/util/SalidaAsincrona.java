@@ -0,0 +1,334 @@
+package archivosfragmentados.util;
+
+import archivosfragmentados.monitoreo.EventoVolcadoSalida;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Salida de lineas con doble buffer: el hilo que llama codifica las lineas en
+ * UTF-8 dentro de un arreglo de bytes mientras un hilo propio escribe el otro
+ * arreglo en un {@link FileChannel}, de modo que la codificacion y la E/S se
+ * solapan. Los dos arreglos se reutilizan durante toda la escritura.
+ *
+ * <p>Cada linea termina con el separador del sistema, igual que
+ * {@code BufferedWriter.newLine()}. {@link #close()} espera a que se escriba
+ * todo y sincroniza el archivo con el disco; {@link #cancelar()} descarta lo
+ * pendiente.</p>
+ *
+ * <p>Con compresion, el mismo hilo de escritura pasa cada buffer por el
+ * compresor gzip, asi que comprimir tambien se solapa con la codificacion.</p>
+ *
+ * <p>Cada volcado y la sincronizacion final se registran como
+ * {@link EventoVolcadoSalida} si hay una grabacion de Flight Recorder activa.</p>
+ */
+public class SalidaAsincrona implements Closeable {
+
+    private static final int BUFFERS = 2;
+    private static final int TAMANO_MINIMO = 4096;
+    /** Nivel que indica escribir sin comprimir. */
+    public static final int SIN_COMPRESION = -1;
+
+    private static final byte[] SEPARADOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final String nombreArchivo;
+    private final FileChannel canal;
+    private final CompresorGzip compresor;
+    private final BlockingQueue<Bloque> libres = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Bloque> llenos = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Thread hilo;
+    private volatile IOException error;
+    private volatile boolean cancelada = false;
+    private Bloque actual;
+    private long bytesEscritos = 0;
+    private boolean cerrada = false;
+
+    /**
+     * Crea (o trunca) el archivo y arranca el hilo de escritura.
+     *
+     * @param archivo Archivo de destino
+     * @param tamanoBuffer Bytes de cada uno de los dos buffers
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public SalidaAsincrona(Path archivo, int tamanoBuffer) throws IOException {
+        this(archivo, tamanoBuffer, SIN_COMPRESION, 0);
+    }
+
+    /**
+     * Crea (o trunca) el archivo y arranca el hilo de escritura, comprimiendo
+     * con gzip si se indica un nivel.
+     *
+     * @param archivo Archivo de destino
+     * @param tamanoBuffer Bytes de cada uno de los dos buffers
+     * @param nivelGzip Nivel de compresion de 1 a 9, o {@link #SIN_COMPRESION}
+     * @param bufferGzip Bytes del buffer de salida del compresor
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public SalidaAsincrona(Path archivo, int tamanoBuffer, int nivelGzip, int bufferGzip) throws IOException {
+        this.nombreArchivo = archivo.toString();
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                      StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.compresor = nivelGzip == SIN_COMPRESION ? null
+                    : new CompresorGzip(Channels.newOutputStream(canal), Math.max(TAMANO_MINIMO, bufferGzip), nivelGzip);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        int tamano = Math.max(TAMANO_MINIMO, tamanoBuffer);
+        this.actual = new Bloque(tamano);
+        for (int i = 1; i < BUFFERS; i++) {
+            libres.add(new Bloque(tamano));
+        }
+        this.hilo = new Thread(this::escribirBloques, "salida-" + archivo.getFileName());
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    /**
+     * Agrega una linea seguida del separador del sistema.
+     *
+     * @param linea Texto de la linea
+     * @throws IOException Si el hilo de escritura fallo
+     */
+    public void escribirLinea(String linea) throws IOException {
+        codificar(linea);
+        if (actual.cantidad + SEPARADOR.length > actual.datos.length) {
+            entregar();
+        }
+        System.arraycopy(SEPARADOR, 0, actual.datos, actual.cantidad, SEPARADOR.length);
+        actual.cantidad += SEPARADOR.length;
+    }
+
+    /**
+     * Obtiene los bytes entregados hasta el momento, antes de comprimir.
+     *
+     * @return Bytes escritos o pendientes de escribir
+     */
+    public long getBytesEscritos() {
+        // Al cerrar, el buffer actual ya se sumo y paso al hilo de escritura.
+        return cerrada ? bytesEscritos : bytesEscritos + actual.cantidad;
+    }
+
+    /**
+     * Escribe lo pendiente, espera al hilo y sincroniza el archivo con el disco.
+     *
+     * @throws IOException Si alguna escritura fallo
+     */
+    @Override
+    public void close() throws IOException {
+        if (cerrada) {
+            return;
+        }
+        cerrada = true;
+        try {
+            if (actual.cantidad > 0) {
+                bytesEscritos += actual.cantidad;
+                poner(actual);
+            }
+            poner(Bloque.FIN);
+            esperarHilo();
+            if (error == null && compresor != null) {
+                compresor.finish();
+            }
+            if (error == null) {
+                EventoVolcadoSalida evento = new EventoVolcadoSalida();
+                evento.begin();
+                canal.force(true);
+                evento.finalizar(nombreArchivo, EventoVolcadoSalida.SINCRONIZACION, 0, compresor != null);
+            }
+        } finally {
+            liberarCompresor();
+            canal.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Detiene la escritura descartando lo pendiente. No lanza excepciones,
+     * para poder usarse al manejar otro error.
+     */
+    public void cancelar() {
+        if (cerrada) {
+            return;
+        }
+        cerrada = true;
+        cancelada = true;
+        try {
+            poner(Bloque.FIN);
+            esperarHilo();
+        } catch (IOException e) {
+            hilo.interrupt();
+        } finally {
+            liberarCompresor();
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // Ya se esta abandonando el archivo.
+            }
+        }
+    }
+
+    /**
+     * Codifica el texto en UTF-8 sobre el buffer actual, cambiando de buffer
+     * cuando no queda espacio para el caracter mas largo (4 bytes).
+     */
+    private void codificar(String texto) throws IOException {
+        byte[] datos = actual.datos;
+        int posicion = actual.cantidad;
+        int longitud = texto.length();
+
+        for (int i = 0; i < longitud; i++) {
+            if (posicion + 4 > datos.length) {
+                actual.cantidad = posicion;
+                entregar();
+                datos = actual.datos;
+                posicion = 0;
+            }
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                datos[posicion++] = (byte) c;
+            } else if (c < 0x800) {
+                datos[posicion++] = (byte) (0xC0 | (c >> 6));
+                datos[posicion++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < longitud
+                       && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int codigo = Character.toCodePoint(c, texto.charAt(++i));
+                datos[posicion++] = (byte) (0xF0 | (codigo >> 18));
+                datos[posicion++] = (byte) (0x80 | ((codigo >> 12) & 0x3F));
+                datos[posicion++] = (byte) (0x80 | ((codigo >> 6) & 0x3F));
+                datos[posicion++] = (byte) (0x80 | (codigo & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Igual que String.getBytes: un sustituto suelto se reemplaza.
+                datos[posicion++] = '?';
+            } else {
+                datos[posicion++] = (byte) (0xE0 | (c >> 12));
+                datos[posicion++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                datos[posicion++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        actual.cantidad = posicion;
+    }
+
+    /**
+     * Pasa el buffer lleno al hilo de escritura y toma el otro, esperando si
+     * todavia se esta escribiendo.
+     */
+    private void entregar() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        bytesEscritos += actual.cantidad;
+        poner(actual);
+        try {
+            actual = libres.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Escritura interrumpida");
+        }
+        actual.cantidad = 0;
+    }
+
+    /**
+     * Bucle del hilo de escritura. Tras un error sigue devolviendo los
+     * buffers sin escribirlos, para que el otro hilo no quede bloqueado.
+     */
+    private void escribirBloques() {
+        while (true) {
+            Bloque bloque;
+            try {
+                bloque = llenos.take();
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException("Hilo de escritura interrumpido");
+                return;
+            }
+            if (bloque == Bloque.FIN) {
+                return;
+            }
+            if (error == null && !cancelada) {
+                EventoVolcadoSalida evento = new EventoVolcadoSalida();
+                evento.begin();
+                try {
+                    if (compresor != null) {
+                        compresor.write(bloque.datos, 0, bloque.cantidad);
+                    } else {
+                        ByteBuffer buffer = ByteBuffer.wrap(bloque.datos, 0, bloque.cantidad);
+                        while (buffer.hasRemaining()) {
+                            canal.write(buffer);
+                        }
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+                evento.finalizar(nombreArchivo, EventoVolcadoSalida.ESCRITURA, bloque.cantidad, compresor != null);
+            }
+            libres.add(bloque);
+        }
+    }
+
+    private void liberarCompresor() {
+        if (compresor != null) {
+            compresor.liberar();
+        }
+    }
+
+    private void poner(Bloque bloque) throws IOException {
+        try {
+            llenos.put(bloque);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Escritura interrumpida");
+        }
+    }
+
+    private void esperarHilo() throws IOException {
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Escritura interrumpida");
+        }
+    }
+
+    /**
+     * Compresor gzip con nivel configurable. No se cierra con {@code close()}
+     * porque eso cerraria el canal antes de sincronizarlo.
+     */
+    private static final class CompresorGzip extends GZIPOutputStream {
+        CompresorGzip(OutputStream salida, int tamano, int nivel) throws IOException {
+            super(salida, tamano);
+            def.setLevel(nivel);
+        }
+
+        /** Libera la memoria nativa del compresor; se puede llamar mas de una vez. */
+        void liberar() {
+            def.end();
+        }
+    }
+
+    /**
+     * Arreglo de bytes reutilizable y cuantos de sus bytes tienen datos.
+     */
+    private static final class Bloque {
+        static final Bloque FIN = new Bloque(0);
+
+        final byte[] datos;
+        int cantidad = 0;
+
+        Bloque(int tamano) {
+            this.datos = new byte[tamano];
+        }
+    }
+}
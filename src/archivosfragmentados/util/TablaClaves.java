@@ -0,0 +1,162 @@
+package archivosfragmentados.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tabla de conteo de filas por columnas clave. Igual que {@link TablaHuellas}
+ * usa direccionamiento abierto sobre huellas de 64 bits, pero la huella se
+ * calcula solo con los campos clave, que se localizan con un
+ * {@link TokenizadorCSV} sin crear objetos por campo.
+ *
+ * <p>Por cada clave distinta se conserva la primera fila vista o la ultima,
+ * segun la politica indicada.</p>
+ */
+public class TablaClaves {
+
+    private static final int CAPACIDAD_INICIAL = 1 << 10;
+    private static final double CARGA_MAXIMA = 0.6;
+
+    private final int[] columnas;
+    private final boolean conservarUltima;
+    private final TokenizadorCSV tokenizador = new TokenizadorCSV();
+    private final TokenizadorCSV auxiliar = new TokenizadorCSV();
+
+    private long[] huellas;
+    private int[] posiciones;
+    private final List<String> lineas = new ArrayList<>();
+    private final List<String> primeras;
+    private int[] conteos = new int[CAPACIDAD_INICIAL];
+    private int limiteCrecimiento;
+    private long colisiones = 0;
+
+    /**
+     * @param columnas Indices de las columnas clave, empezando en 0
+     * @param conservarUltima true para quedarse con la ultima fila de cada clave
+     */
+    public TablaClaves(int[] columnas, boolean conservarUltima) {
+        this.columnas = columnas.clone();
+        this.conservarUltima = conservarUltima;
+        // Con la politica de primera fila, la fila conservada ya es la primera.
+        this.primeras = conservarUltima ? new ArrayList<>() : lineas;
+        crearTabla(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Registra una fila.
+     *
+     * @param linea Fila a registrar
+     * @return Posicion de su clave en {@link #getLineasConservadas()}
+     */
+    public int registrar(String linea) {
+        tokenizador.dividir(linea);
+        long huella = tokenizador.calcularHuella(linea, columnas);
+        int mascara = huellas.length - 1;
+        int ranura = (int) huella & mascara;
+
+        while (huellas[ranura] != 0) {
+            if (huellas[ranura] == huella) {
+                int posicion = posiciones[ranura];
+                String conservada = lineas.get(posicion);
+                auxiliar.dividir(conservada);
+                if (tokenizador.camposIguales(linea, auxiliar, conservada, columnas)) {
+                    conteos[posicion]++;
+                    if (conservarUltima) {
+                        lineas.set(posicion, linea);
+                    }
+                    return posicion;
+                }
+                colisiones++;
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+
+        int posicion = lineas.size();
+        lineas.add(linea);
+        if (conservarUltima) {
+            primeras.add(linea);
+        }
+        if (posicion == conteos.length) {
+            conteos = Arrays.copyOf(conteos, conteos.length * 2);
+        }
+        conteos[posicion] = 1;
+        huellas[ranura] = huella;
+        posiciones[ranura] = posicion;
+
+        if (lineas.size() > limiteCrecimiento) {
+            crearTabla(huellas.length * 2);
+        }
+        return posicion;
+    }
+
+    /**
+     * Obtiene la fila conservada de cada clave, en orden de primera aparicion
+     * de la clave. La lista es la usada internamente, no una copia.
+     *
+     * @return Filas conservadas
+     */
+    public List<String> getLineasConservadas() {
+        return lineas;
+    }
+
+    /**
+     * Obtiene la primera fila vista con la clave de la posicion indicada.
+     *
+     * @param posicion Posicion de la clave
+     * @return Primera fila con esa clave
+     */
+    public String getPrimeraLinea(int posicion) {
+        return primeras.get(posicion);
+    }
+
+    /**
+     * Obtiene cuantas filas tenian la clave de la posicion indicada.
+     *
+     * @param posicion Posicion de la clave
+     * @return Cantidad de filas
+     */
+    public int getConteo(int posicion) {
+        return conteos[posicion];
+    }
+
+    /**
+     * Obtiene cuantas veces coincidio la huella de dos claves distintas.
+     *
+     * @return Numero de colisiones resueltas comparando los campos
+     */
+    public long getColisiones() {
+        return colisiones;
+    }
+
+    /**
+     * Crea (o agranda) la tabla y reubica las huellas existentes.
+     *
+     * @param capacidad Nueva capacidad, potencia de dos
+     */
+    private void crearTabla(int capacidad) {
+        long[] huellasAnteriores = huellas;
+        int[] posicionesAnteriores = posiciones;
+
+        huellas = new long[capacidad];
+        posiciones = new int[capacidad];
+        limiteCrecimiento = (int) (capacidad * CARGA_MAXIMA);
+
+        if (huellasAnteriores == null) {
+            return;
+        }
+
+        int mascara = capacidad - 1;
+        for (int i = 0; i < huellasAnteriores.length; i++) {
+            long huella = huellasAnteriores[i];
+            if (huella != 0) {
+                int ranura = (int) huella & mascara;
+                while (huellas[ranura] != 0) {
+                    ranura = (ranura + 1) & mascara;
+                }
+                huellas[ranura] = huella;
+                posiciones[ranura] = posicionesAnteriores[i];
+            }
+        }
+    }
+}
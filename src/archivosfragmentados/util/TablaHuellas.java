@@ -0,0 +1,146 @@
+package archivosfragmentados.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tabla de conteo de lineas indexada por huellas de 64 bits. Usa
+ * direccionamiento abierto sobre arreglos primitivos, de modo que cada linea
+ * distinta cuesta su texto mas unos pocos bytes, sin objetos por entrada.
+ * El texto solo se compara cuando dos huellas coinciden.
+ */
+public class TablaHuellas {
+
+    private static final int CAPACIDAD_INICIAL = 1 << 10;
+    private static final double CARGA_MAXIMA = 0.6;
+
+    private long[] huellas;
+    private int[] posiciones;
+    private final List<String> lineas = new ArrayList<>();
+    private int[] conteos = new int[CAPACIDAD_INICIAL];
+    private int limiteCrecimiento;
+    private long colisiones = 0;
+
+    public TablaHuellas() {
+        crearTabla(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Registra una aparicion de la linea.
+     *
+     * @param linea Linea a registrar
+     * @return Cantidad de veces que se ha visto la linea, incluida esta
+     */
+    public int registrar(String linea) {
+        long huella = calcularHuella(linea);
+        int mascara = huellas.length - 1;
+        int ranura = (int) huella & mascara;
+
+        while (huellas[ranura] != 0) {
+            if (huellas[ranura] == huella) {
+                int posicion = posiciones[ranura];
+                if (lineas.get(posicion).equals(linea)) {
+                    return ++conteos[posicion];
+                }
+                colisiones++;
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+
+        int posicion = lineas.size();
+        lineas.add(linea);
+        if (posicion == conteos.length) {
+            conteos = Arrays.copyOf(conteos, conteos.length * 2);
+        }
+        conteos[posicion] = 1;
+        huellas[ranura] = huella;
+        posiciones[ranura] = posicion;
+
+        if (lineas.size() > limiteCrecimiento) {
+            crearTabla(huellas.length * 2);
+        }
+        return 1;
+    }
+
+    /**
+     * Obtiene las lineas distintas en orden de primera aparicion. La lista es
+     * la usada internamente por la tabla, no una copia.
+     *
+     * @return Lineas unicas registradas
+     */
+    public List<String> getLineasUnicas() {
+        return lineas;
+    }
+
+    /**
+     * Obtiene las apariciones de la linea en la posicion indicada.
+     *
+     * @param posicion Posicion en {@link #getLineasUnicas()}
+     * @return Cantidad de apariciones
+     */
+    public int getConteo(int posicion) {
+        return conteos[posicion];
+    }
+
+    /**
+     * Obtiene cuantas veces coincidio la huella de dos lineas distintas.
+     *
+     * @return Numero de colisiones resueltas comparando el texto
+     */
+    public long getColisiones() {
+        return colisiones;
+    }
+
+    /**
+     * Calcula la huella de 64 bits de una linea (FNV-1a con mezcla final).
+     * El valor 0 se reserva para marcar ranuras vacias.
+     *
+     * @param linea Linea de texto
+     * @return Huella distinta de cero
+     */
+    public static long calcularHuella(String linea) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < linea.length(); i++) {
+            h ^= linea.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Crea (o agranda) la tabla y reubica las huellas existentes.
+     *
+     * @param capacidad Nueva capacidad, potencia de dos
+     */
+    private void crearTabla(int capacidad) {
+        long[] huellasAnteriores = huellas;
+        int[] posicionesAnteriores = posiciones;
+
+        huellas = new long[capacidad];
+        posiciones = new int[capacidad];
+        limiteCrecimiento = (int) (capacidad * CARGA_MAXIMA);
+
+        if (huellasAnteriores == null) {
+            return;
+        }
+
+        int mascara = capacidad - 1;
+        for (int i = 0; i < huellasAnteriores.length; i++) {
+            long huella = huellasAnteriores[i];
+            if (huella != 0) {
+                int ranura = (int) huella & mascara;
+                while (huellas[ranura] != 0) {
+                    ranura = (ranura + 1) & mascara;
+                }
+                huellas[ranura] = huella;
+                posiciones[ranura] = posicionesAnteriores[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package archivosfragmentados.util;
+
+import java.util.Arrays;
+
+/**
+ * Divide lineas CSV en campos guardando solo el inicio y el fin de cada uno,
+ * sin crear un {@code String} por campo. Respeta campos entre comillas (con
+ * separadores y comillas dobles {@code ""} dentro) y descarta los espacios
+ * alrededor de cada campo.
+ *
+ * <p>Reutiliza sus arreglos entre llamadas, por lo que una instancia no debe
+ * compartirse entre hilos.</p>
+ */
+public class TokenizadorCSV {
+
+    private static final int CAMPOS_INICIALES = 16;
+
+    private final char separador;
+    private int[] inicios = new int[CAMPOS_INICIALES];
+    private int[] fines = new int[CAMPOS_INICIALES];
+    private int cantidad = 0;
+
+    public TokenizadorCSV() {
+        this(',');
+    }
+
+    public TokenizadorCSV(char separador) {
+        this.separador = separador;
+    }
+
+    /**
+     * Divide una linea en campos. Los limites de un campo entre comillas no
+     * incluyen las comillas.
+     *
+     * @param linea Linea a dividir
+     * @return Cantidad de campos encontrados
+     */
+    public int dividir(CharSequence linea) {
+        cantidad = 0;
+        int longitud = linea.length();
+        int i = 0;
+
+        while (true) {
+            while (i < longitud && esEspacio(linea.charAt(i))) {
+                i++;
+            }
+
+            int inicio;
+            int fin;
+            if (i < longitud && linea.charAt(i) == '"') {
+                inicio = ++i;
+                while (i < longitud) {
+                    if (linea.charAt(i) == '"') {
+                        if (i + 1 < longitud && linea.charAt(i + 1) == '"') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                fin = i;
+                // Lo que haya entre la comilla de cierre y el separador se ignora.
+                while (i < longitud && linea.charAt(i) != separador) {
+                    i++;
+                }
+            } else {
+                inicio = i;
+                while (i < longitud && linea.charAt(i) != separador) {
+                    i++;
+                }
+                fin = i;
+                while (fin > inicio && esEspacio(linea.charAt(fin - 1))) {
+                    fin--;
+                }
+            }
+
+            agregarCampo(inicio, fin);
+            if (i >= longitud) {
+                return cantidad;
+            }
+            i++;
+        }
+    }
+
+    public int getCantidadCampos() { return cantidad; }
+    public int getInicio(int campo) { return inicios[campo]; }
+    public int getFin(int campo) { return fines[campo]; }
+
+    /**
+     * Obtiene el texto de un campo de la ultima linea dividida. Crea un
+     * {@code String}, por lo que esta pensado para la cabecera y no para los datos.
+     *
+     * @param linea La misma linea pasada a {@link #dividir(CharSequence)}
+     * @param campo Indice del campo
+     * @return Texto del campo
+     */
+    public String obtenerCampo(CharSequence linea, int campo) {
+        return linea.subSequence(inicios[campo], fines[campo]).toString();
+    }
+
+    /**
+     * Calcula una huella de 64 bits de los campos indicados de la ultima linea
+     * dividida. Los campos que no existen en la linea cuentan como vacios.
+     *
+     * @param linea La misma linea pasada a {@link #dividir(CharSequence)}
+     * @param columnas Indices de los campos, empezando en 0
+     * @return Huella distinta de cero
+     */
+    public long calcularHuella(CharSequence linea, int[] columnas) {
+        long h = 0xcbf29ce484222325L;
+        for (int columna : columnas) {
+            if (columna < cantidad) {
+                for (int i = inicios[columna]; i < fines[columna]; i++) {
+                    h ^= linea.charAt(i);
+                    h *= 0x100000001b3L;
+                }
+            }
+            // Separa los campos para que "ab","c" y "a","bc" no coincidan.
+            h ^= 0x1f;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Compara los campos indicados de la ultima linea dividida por este
+     * tokenizador con los de la ultima linea dividida por otro.
+     *
+     * @param linea Linea dividida por este tokenizador
+     * @param otro Tokenizador que dividio la otra linea
+     * @param otraLinea Linea dividida por el otro tokenizador
+     * @param columnas Indices de los campos a comparar
+     * @return true si todos los campos son iguales
+     */
+    public boolean camposIguales(String linea, TokenizadorCSV otro, String otraLinea, int[] columnas) {
+        for (int columna : columnas) {
+            int longitud = columna < cantidad ? fines[columna] - inicios[columna] : 0;
+            int otraLongitud = columna < otro.cantidad ? otro.fines[columna] - otro.inicios[columna] : 0;
+            if (longitud != otraLongitud) {
+                return false;
+            }
+            if (longitud > 0 && !linea.regionMatches(inicios[columna], otraLinea, otro.inicios[columna], longitud)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void agregarCampo(int inicio, int fin) {
+        if (cantidad == inicios.length) {
+            inicios = Arrays.copyOf(inicios, cantidad * 2);
+            fines = Arrays.copyOf(fines, cantidad * 2);
+        }
+        inicios[cantidad] = inicio;
+        fines[cantidad] = fin;
+        cantidad++;
+    }
+
+    private static boolean esEspacio(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
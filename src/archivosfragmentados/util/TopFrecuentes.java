@@ -0,0 +1,173 @@
+package archivosfragmentados.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lista de las lineas mas frecuentes con el algoritmo Space-Saving: se siguen
+ * como maximo {@code capacidad} candidatas en un monticulo de minimos por
+ * conteo, asi que la memoria no depende de cuantas lineas distintas haya.
+ *
+ * <p>Una linea nueva solo reemplaza a la candidata de menor conteo si su
+ * frecuencia estimada (por ejemplo con un {@link BosquejoConteo}) es mayor.
+ * El conteo de cada candidata es una cota superior de su frecuencia real y
+ * {@code conteo - error} una cota inferior.</p>
+ */
+public class TopFrecuentes {
+
+    private final int capacidad;
+    private final String[] lineas;
+    private final long[] huellas;
+    private final long[] conteos;
+    private final long[] errores;
+    private final Map<String, Integer> posiciones;
+    private int cantidad = 0;
+
+    /**
+     * @param capacidad Cantidad maxima de candidatas seguidas
+     */
+    public TopFrecuentes(int capacidad) {
+        this.capacidad = capacidad;
+        this.lineas = new String[capacidad];
+        this.huellas = new long[capacidad];
+        this.conteos = new long[capacidad];
+        this.errores = new long[capacidad];
+        this.posiciones = HashMap.newHashMap(capacidad);
+    }
+
+    /**
+     * Registra una aparicion de una linea.
+     *
+     * @param linea Linea leida
+     * @param huella Huella de 64 bits de la linea
+     * @param frecuenciaEstimada Cota superior de las apariciones de la linea, incluida esta
+     */
+    public void registrar(String linea, long huella, long frecuenciaEstimada) {
+        Integer posicion = posiciones.get(linea);
+        if (posicion != null) {
+            conteos[posicion]++;
+            bajar(posicion);
+            return;
+        }
+
+        if (cantidad < capacidad) {
+            colocar(cantidad, linea, huella, frecuenciaEstimada);
+            subir(cantidad++);
+        } else if (frecuenciaEstimada > conteos[0]) {
+            posiciones.remove(lineas[0]);
+            colocar(0, linea, huella, frecuenciaEstimada);
+            bajar(0);
+        }
+    }
+
+    /**
+     * Obtiene las candidatas de mayor conteo, de mayor a menor.
+     *
+     * @param limite Cantidad maxima de lineas a devolver
+     * @param bosquejo Bosquejo con el que se acota el conteo, o null
+     * @return Lineas frecuentes con sus cotas
+     */
+    public List<LineaFrecuente> obtenerMayores(int limite, BosquejoConteo bosquejo) {
+        List<LineaFrecuente> mayores = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            long conteo = conteos[i];
+            if (bosquejo != null) {
+                // Ambas son cotas superiores, la menor es la mas ajustada.
+                conteo = Math.min(conteo, bosquejo.estimar(huellas[i]));
+            }
+            long minimo = Math.min(conteo, conteos[i] - errores[i]);
+            mayores.add(new LineaFrecuente(lineas[i], conteo, minimo));
+        }
+        mayores.sort((a, b) -> Long.compare(b.getConteo(), a.getConteo()));
+        return mayores.size() > limite ? new ArrayList<>(mayores.subList(0, limite)) : mayores;
+    }
+
+    /**
+     * Obtiene una estimacion de la memoria usada por las candidatas, sin
+     * contar el texto de las lineas.
+     *
+     * @return Bytes aproximados
+     */
+    public long getBytesUsados() {
+        // Tres arreglos de long, uno de referencias y una entrada de mapa por candidata.
+        return (long) capacidad * (3 * Long.BYTES + 8 + 48);
+    }
+
+    private void colocar(int posicion, String linea, long huella, long conteo) {
+        lineas[posicion] = linea;
+        huellas[posicion] = huella;
+        conteos[posicion] = conteo;
+        errores[posicion] = conteo - 1;
+        posiciones.put(linea, posicion);
+    }
+
+    private void subir(int posicion) {
+        while (posicion > 0) {
+            int padre = (posicion - 1) / 2;
+            if (conteos[padre] <= conteos[posicion]) {
+                return;
+            }
+            intercambiar(posicion, padre);
+            posicion = padre;
+        }
+    }
+
+    private void bajar(int posicion) {
+        while (true) {
+            int menor = posicion;
+            int izquierdo = 2 * posicion + 1;
+            int derecho = izquierdo + 1;
+            if (izquierdo < cantidad && conteos[izquierdo] < conteos[menor]) {
+                menor = izquierdo;
+            }
+            if (derecho < cantidad && conteos[derecho] < conteos[menor]) {
+                menor = derecho;
+            }
+            if (menor == posicion) {
+                return;
+            }
+            intercambiar(posicion, menor);
+            posicion = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        String linea = lineas[a];
+        lineas[a] = lineas[b];
+        lineas[b] = linea;
+        long huella = huellas[a];
+        huellas[a] = huellas[b];
+        huellas[b] = huella;
+        long conteo = conteos[a];
+        conteos[a] = conteos[b];
+        conteos[b] = conteo;
+        long error = errores[a];
+        errores[a] = errores[b];
+        errores[b] = error;
+        posiciones.put(lineas[a], a);
+        posiciones.put(lineas[b], b);
+    }
+
+    /**
+     * Linea frecuente con su conteo estimado y la cantidad minima garantizada.
+     */
+    public static class LineaFrecuente {
+        private final String linea;
+        private final long conteo;
+        private final long minimo;
+
+        public LineaFrecuente(String linea, long conteo, long minimo) {
+            this.linea = linea;
+            this.conteo = conteo;
+            this.minimo = minimo;
+        }
+
+        public String getLinea() { return linea; }
+        /** Cota superior de las apariciones de la linea. */
+        public long getConteo() { return conteo; }
+        /** Apariciones contadas mientras la linea estaba entre las candidatas. */
+        public long getMinimo() { return minimo; }
+    }
+}
@@ -1,39 +1,74 @@
 package archivosfragmentados.util;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Utilidad para validar y procesar nombres de archivos fragmentados.
  */
 public class ValidadorArchivos {
     
-    private static final Pattern PATRON_ARCHIVO_FRAGMENTADO = Pattern.compile("^(.+)_\\d+\\.csv$");
+    /** Nombre {@code entidad_numero.csv}: el grupo 1 es la entidad y el 2 el numero. */
+    static final Pattern PATRON_ARCHIVO_FRAGMENTADO = Pattern.compile("^(.+)_(\\d+)\\.csv(?:\\.gz)?$");
+    
+    private static final String SALIDA_POR_DEFECTO = "entidad_rec.csv";
+    
+    /**
+     * Indica si el archivo es un CSV, plano o comprimido con gzip.
+     * 
+     * @param archivo Archivo a evaluar
+     * @return true si su nombre termina en .csv o .csv.gz
+     */
+    public static boolean esArchivoCsv(Path archivo) {
+        String nombre = archivo.getFileName().toString().toLowerCase();
+        return nombre.endsWith(".csv") || nombre.endsWith(".csv" + ArchivosGzip.EXTENSION);
+    }
     
     /**
-     * Obtiene todos los archivos CSV de un directorio.
+     * Indica si el archivo es la salida por defecto del programa, que no
+     * debe leerse como fragmento.
+     * 
+     * @param archivo Archivo a evaluar
+     * @return true si se llama entidad_rec.csv o entidad_rec.csv.gz
+     */
+    public static boolean esSalidaPorDefecto(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return nombre.equalsIgnoreCase(SALIDA_POR_DEFECTO)
+                || nombre.equalsIgnoreCase(SALIDA_POR_DEFECTO + ArchivosGzip.EXTENSION);
+    }
+    
+    /**
+     * Obtiene todos los archivos CSV de un directorio, en orden de nombre.
      * 
      * @param directorio Directorio a examinar
      * @return Lista de archivos CSV encontrados
      * @throws IOException Si ocurre un error al acceder al directorio
      */
     public List<Path> obtenerArchivosCsv(Path directorio) throws IOException {
-    return Files.list(directorio)
-            .filter(Files::isRegularFile)
-            .filter(archivo -> archivo.toString().toLowerCase().endsWith(".csv"))
-            .filter(archivo -> !archivo.getFileName().toString().equalsIgnoreCase("entidad_rec.csv"))
-            .collect(Collectors.toList());
-}
+        return obtenerArchivosCsv(directorio, false);
+    }
+    
+    /**
+     * Obtiene los archivos CSV de un directorio y, si se pide, de sus
+     * subdirectorios. Sale del catalogo compartido de
+     * {@link ExploradorFragmentos}.
+     * 
+     * @param directorio Directorio a examinar
+     * @param recursivo true para incluir los subdirectorios
+     * @return Lista de archivos CSV encontrados, en orden de ruta
+     * @throws IOException Si ocurre un error al acceder al directorio
+     */
+    public List<Path> obtenerArchivosCsv(Path directorio, boolean recursivo) throws IOException {
+        return ExploradorFragmentos.getInstancia().explorar(directorio, recursivo).getRutas();
+    }
     
     /**
      * Extrae el nombre de la entidad de un nombre de archivo fragmentado.
      * 
-     * @param nombreArchivo Nombre del archivo (ej: "entidad_1.csv")
+     * @param nombreArchivo Nombre del archivo (ej: "entidad_1.csv" o "entidad_1.csv.gz")
      * @return Nombre de la entidad o null si el formato no es válido
      */
     public String extraerNombreEntidad(String nombreArchivo) {